@@ -0,0 +1,49 @@
+#!/bin/sh
+#
+# Benchmark of Pax Runner startup with and without the class data sharing archive of the runner itself.
+#
+# Usage: runner-startup.sh <pax-run.sh of an unpacked distribution> [runs] [runner options]
+# Runner options default to --executor=noop, that resolves the framework and bundles without starting it.
+# Run it once before measuring so downloads are already in the working directory. Needs GNU date.
+#
+
+if [ $# -lt 1 ]
+then
+  echo "Usage: $0 <pax-run.sh> [runs] [runner options]"
+  exit 1
+fi
+PAX_RUN=$1
+RUNS=${2:-10}
+shift
+[ $# -gt 0 ] && shift
+[ $# -eq 0 ] && set -- --executor=noop
+
+PAX_RUNNER_CDS_DIR=`mktemp -d`
+export PAX_RUNNER_CDS_DIR
+trap 'rm -rf "$PAX_RUNNER_CDS_DIR"' EXIT
+
+# average wall time of RUNS runs in milliseconds
+measure()
+{
+  TOTAL=0
+  i=0
+  while [ $i -lt $RUNS ]
+  do
+    START=`date +%s%N`
+    sh "$PAX_RUN" "$@" > /dev/null 2>&1 || { echo "Pax Runner failed: $PAX_RUN $*"; exit 1; }
+    END=`date +%s%N`
+    TOTAL=`expr $TOTAL + \( $END - $START \) / 1000000`
+    i=`expr $i + 1`
+  done
+  expr $TOTAL / $RUNS
+}
+
+WITHOUT=`PAX_RUNNER_CDS=false measure "$@"` || { echo "$WITHOUT"; exit 1; }
+# first run records the archive
+sh "$PAX_RUN" "$@" > /dev/null 2>&1
+WITH=`measure "$@"` || { echo "$WITH"; exit 1; }
+
+echo "Runs:                  $RUNS ($*)"
+echo "Without CDS archive:   $WITHOUT ms"
+echo "With CDS archive:      $WITH ms"
+ls "$PAX_RUNNER_CDS_DIR"/*.jsa > /dev/null 2>&1 || echo "No archive was recorded (java older than 13?)"
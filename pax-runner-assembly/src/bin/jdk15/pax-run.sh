@@ -2,6 +2,15 @@
 #
 # Script to run Pax Runner, which starts OSGi frameworks with applications.
 #
+# Classpath is the current directory, the scripts directory and then the runner jar, so resources dropped in those
+# directories (as META-INF/runner.properties or logging configuration) override the ones from the runner jar.
+#
+# Set PAX_RUNNER_CDS=true to keep the classes loaded by Pax Runner itself in a class data sharing archive (java 13 or
+# newer), that is recorded by the first run and mapped by the following runs instead of loading and verifying the
+# classes again. There is one archive for each java, kept in $HOME/.pax/runner/cds or in PAX_RUNNER_CDS_DIR if set.
+# As archived classes cannot come after non empty directories on classpath, the runner jar goes first while class
+# data sharing is used, so resources dropped in the current or scripts directory no longer override the runner jar
+# ones.
 #
 
 SCRIPTS=`readlink $0`
@@ -12,4 +21,48 @@ else
   SCRIPTS=`dirname $0`
 fi
 
-java $JAVA_OPTS -cp .:$SCRIPTS:$SCRIPTS/pax-runner-${project.version}.jar org.ops4j.pax.runner.Run "$@"
+RUNNER_JAR=$SCRIPTS/pax-runner-${project.version}.jar
+RUNNER_CP=.:$SCRIPTS:$RUNNER_JAR
+
+CDS_OPTS=
+CDS_TMP=
+if [ "${PAX_RUNNER_CDS}" = "true" ]
+then
+  CDS_DIR=${PAX_RUNNER_CDS_DIR:-$HOME/.pax/runner/cds}
+  # archive is only valid for the java and runner jar it was recorded with
+  JAVA_CMD=`command -v java`
+  JDK_KEY=`{ echo "$JAVA_CMD"; ls -lL "$JAVA_CMD"; } 2>/dev/null | cksum | cut -d' ' -f1`
+  JAR_KEY=`ls -lL "$RUNNER_JAR" 2>/dev/null | cksum | cut -d' ' -f1`
+  CDS_ARCHIVE=$CDS_DIR/pax-runner-$JDK_KEY-${project.version}-$JAR_KEY.jsa
+  if [ -f "$CDS_ARCHIVE" ]
+  then
+    CDS_OPTS="-XX:SharedArchiveFile=$CDS_ARCHIVE"
+  elif [ ! -f "$CDS_DIR/pax-runner-$JDK_KEY.unsupported" ] && mkdir -p "$CDS_DIR" 2>/dev/null
+  then
+    # recording archives needs java 13 or newer
+    JAVA_MAJOR=`java -version 2>&1 | sed -n 's/.*version "\([0-9]*\).*/\1/p' | head -1`
+    if [ "${JAVA_MAJOR:-0}" -ge 13 ]
+    then
+      # recorded to a temporary file so concurrent runs never map a partial archive
+      CDS_TMP=$CDS_ARCHIVE.$$
+      CDS_OPTS="-XX:ArchiveClassesAtExit=$CDS_TMP"
+    else
+      touch "$CDS_DIR/pax-runner-$JDK_KEY.unsupported"
+    fi
+  fi
+  if [ -n "$CDS_OPTS" ]
+  then
+    RUNNER_CP=$RUNNER_JAR:.:$SCRIPTS
+  fi
+fi
+
+java $JAVA_OPTS ${CDS_OPTS:+"$CDS_OPTS"} -cp $RUNNER_CP org.ops4j.pax.runner.Run "$@"
+STATUS=$?
+
+if [ -n "$CDS_TMP" ] && [ -f "$CDS_TMP" ]
+then
+  # archives of other runner jars recorded with the same java are stale
+  rm -f "$CDS_DIR"/pax-runner-$JDK_KEY-*.jsa
+  mv -f "$CDS_TMP" "$CDS_ARCHIVE"
+fi
+exit $STATUS
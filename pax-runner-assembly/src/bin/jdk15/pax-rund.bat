@@ -1,5 +1,65 @@
 @echo off
 SETLOCAL
 set _SCRIPTS_=%~dp0
+set _RUNNER_JAR_=%_SCRIPTS_%\pax-runner-${project.version}.jar
 
-java -cp ".;%_SCRIPTS_%;%_SCRIPTS_%\pax-runner-${project.version}.jar" org.ops4j.pax.runner.daemon.DaemonLauncher %*
+rem Classpath is the current directory, the scripts directory and then the runner jar, so resources dropped in those
+rem directories (as META-INF\runner.properties or logging configuration) override the ones from the runner jar.
+rem
+rem Set PAX_RUNNER_CDS=true to keep the classes loaded by Pax Runner itself in a class data sharing archive (java 13
+rem or newer), that is recorded by the first run and mapped by the following runs. There is one archive for each java,
+rem kept in %USERPROFILE%\.pax\runner\cds or in PAX_RUNNER_CDS_DIR if set. As archived classes cannot come after non
+rem empty directories on classpath, the runner jar goes first while class data sharing is used, so resources dropped
+rem in the current or scripts directory no longer override the runner jar ones.
+set _CP_=".;%_SCRIPTS_%;%_RUNNER_JAR_%"
+set _CDS_OPTS_=
+set _CDS_TMP_=
+if not "%PAX_RUNNER_CDS%"=="true" goto run
+set _CDS_DIR_=%PAX_RUNNER_CDS_DIR%
+if "%_CDS_DIR_%"=="" set _CDS_DIR_=%USERPROFILE%\.pax\runner\cds
+rem archive is only valid for the java and runner jar it was recorded with
+for %%J in (java.exe) do set _JAVA_=%%~$PATH:J
+for %%F in ("%_JAVA_%") do set _JDK_KEY_=%%~zF-%%~tF
+for %%F in ("%_RUNNER_JAR_%") do set _JAR_KEY_=%%~zF-%%~tF
+set _JDK_KEY_=%_JDK_KEY_:/=%
+set _JDK_KEY_=%_JDK_KEY_::=%
+set _JDK_KEY_=%_JDK_KEY_: =%
+set _JAR_KEY_=%_JAR_KEY_:/=%
+set _JAR_KEY_=%_JAR_KEY_::=%
+set _JAR_KEY_=%_JAR_KEY_: =%
+set _CDS_ARCHIVE_=%_CDS_DIR_%\pax-rund-%_JDK_KEY_%-${project.version}-%_JAR_KEY_%.jsa
+if exist "%_CDS_ARCHIVE_%" (
+  set _CDS_OPTS_="-XX:SharedArchiveFile=%_CDS_ARCHIVE_%"
+  goto cds
+)
+if exist "%_CDS_DIR_%\pax-rund-%_JDK_KEY_%.unsupported" goto run
+if not exist "%_CDS_DIR_%" mkdir "%_CDS_DIR_%" 2>nul
+if not exist "%_CDS_DIR_%" goto run
+rem recording archives needs java 13 or newer
+set _JAVA_MAJOR_=0
+for /f "tokens=3" %%V in ('java -version 2^>^&1 ^| findstr /i "version"') do (
+  for /f "delims=.-" %%M in ("%%~V") do set _JAVA_MAJOR_=%%M
+)
+if %_JAVA_MAJOR_% LSS 13 (
+  type nul > "%_CDS_DIR_%\pax-rund-%_JDK_KEY_%.unsupported"
+  goto run
+)
+rem recorded to a temporary file so concurrent runs never map a partial archive
+set _CDS_TMP_=%_CDS_ARCHIVE_%.%RANDOM%
+set _CDS_OPTS_="-XX:ArchiveClassesAtExit=%_CDS_TMP_%"
+
+:cds
+rem runner jar goes first as archived classes cannot come after non empty directories on classpath
+set _CP_="%_RUNNER_JAR_%;.;%_SCRIPTS_%."
+
+:run
+java %JAVA_OPTS% %_CDS_OPTS_% -cp %_CP_% org.ops4j.pax.runner.daemon.DaemonLauncher %*
+set _STATUS_=%ERRORLEVEL%
+
+if "%_CDS_TMP_%"=="" exit /b %_STATUS_%
+if exist "%_CDS_TMP_%" (
+  rem archives of other runner jars recorded with the same java are stale
+  del /q "%_CDS_DIR_%\pax-rund-%_JDK_KEY_%-*.jsa" 2>nul
+  move /y "%_CDS_TMP_%" "%_CDS_ARCHIVE_%" >nul
+)
+exit /b %_STATUS_%
@@ -0,0 +1,311 @@
+/*
+ * Copyright 2026 OPS4J.
+ *
+ * Licensed  under the  Apache License,  Version 2.0  (the "License");
+ * you may not use  this file  except in  compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed  under the  License is distributed on an "AS IS" BASIS,
+ * WITHOUT  WARRANTIES OR CONDITIONS  OF ANY KIND, either  express  or
+ * implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.runner.commons.metadata;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.URL;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Calendar;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.ops4j.net.URLUtils;
+
+/**
+ * On disk cache of remote metadata (e.g. maven-metadata.xml or snapshot platform definitions), shared by all runs of
+ * the same user. A cached content is used as long as it is up to date according to the update policy, modelled after
+ * the Maven repository update policies:
+ * <ul>
+ * <li>always - checked on every use;</li>
+ * <li>daily - checked on first use of the day (default);</li>
+ * <li>interval:X - checked if older than X minutes;</li>
+ * <li>never - checked only if not cached.</li>
+ * </ul>
+ * If the remote content cannot be retrieved (e.g. offline) the cached content is used even if not up to date. Local
+ * (file) urls are never cached.
+ *
+ * @since 1.9.1, October 18, 2026
+ */
+public class MetadataCache
+{
+
+    /**
+     * Logger.
+     */
+    private static final Log LOGGER = LogFactory.getLog( MetadataCache.class );
+    /**
+     * Update policy: check on every use.
+     */
+    public static final String UPDATE_POLICY_ALWAYS = "always";
+    /**
+     * Update policy: check on first use of the day.
+     */
+    public static final String UPDATE_POLICY_DAILY = "daily";
+    /**
+     * Update policy: check if older then an interval in minutes (interval:X).
+     */
+    public static final String UPDATE_POLICY_INTERVAL = "interval";
+    /**
+     * Update policy: check only if not cached.
+     */
+    public static final String UPDATE_POLICY_NEVER = "never";
+    /**
+     * Default cache directory, relative to user home.
+     */
+    public static final String DEFAULT_DIRECTORY = ".pax/runner/metadata";
+
+    /**
+     * Cache directory. Cannot be null.
+     */
+    private final File m_directory;
+    /**
+     * Update policy. One of UPDATE_POLICY_* constants.
+     */
+    private final String m_updatePolicy;
+    /**
+     * Update interval in milliseconds, if update policy is interval.
+     */
+    private final long m_interval;
+
+    /**
+     * Creates a cache in the default directory (${user.home}/.pax/runner/metadata).
+     *
+     * @param updatePolicy update policy; if null or invalid the daily update policy is used
+     */
+    public MetadataCache( final String updatePolicy )
+    {
+        this( new File( System.getProperty( "user.home" ), DEFAULT_DIRECTORY ), updatePolicy );
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param directory    cache directory
+     * @param updatePolicy update policy; if null or invalid the daily update policy is used
+     */
+    public MetadataCache( final File directory, final String updatePolicy )
+    {
+        m_directory = directory;
+        String policy = updatePolicy == null ? UPDATE_POLICY_DAILY : updatePolicy.trim().toLowerCase();
+        long interval = 0;
+        if( policy.startsWith( UPDATE_POLICY_INTERVAL + ":" ) )
+        {
+            try
+            {
+                interval = Long.parseLong( policy.substring( UPDATE_POLICY_INTERVAL.length() + 1 ).trim() ) * 60000;
+                policy = UPDATE_POLICY_INTERVAL;
+            }
+            catch( NumberFormatException e )
+            {
+                policy = null;
+            }
+        }
+        else if( policy.length() == 0 )
+        {
+            policy = UPDATE_POLICY_DAILY;
+        }
+        if( !UPDATE_POLICY_ALWAYS.equals( policy )
+            && !UPDATE_POLICY_DAILY.equals( policy )
+            && !UPDATE_POLICY_INTERVAL.equals( policy )
+            && !UPDATE_POLICY_NEVER.equals( policy ) )
+        {
+            LOGGER.warn( "Invalid metadata update policy [" + updatePolicy + "]. Using " + UPDATE_POLICY_DAILY );
+            policy = UPDATE_POLICY_DAILY;
+        }
+        m_updatePolicy = policy;
+        m_interval = interval;
+    }
+
+    /**
+     * Opens the content of an url, from cache if cached content is up to date, from the url otherwise.
+     *
+     * @param url url to open
+     *
+     * @return content
+     *
+     * @throws IOException if the content cannot be retrieved and it is not cached
+     */
+    public InputStream openStream( final URL url )
+        throws IOException
+    {
+        if( "file".equals( url.getProtocol() ) )
+        {
+            return url.openStream();
+        }
+        return new FileInputStream( getFile( url ) );
+    }
+
+    /**
+     * Returns the cached file of an url content, retrieving the content first if the cached content is not up to
+     * date.
+     *
+     * @param url remote url
+     *
+     * @return cached file
+     *
+     * @throws IOException if the content cannot be retrieved and it is not cached
+     */
+    public File getFile( final URL url )
+        throws IOException
+    {
+        final File file = new File( m_directory, digest( url.toExternalForm() ) );
+        if( file.isFile() && isUpToDate( file.lastModified(), System.currentTimeMillis() ) )
+        {
+            LOGGER.debug( "Using cached metadata of [" + url + "]" );
+            return file;
+        }
+        try
+        {
+            download( url, file );
+        }
+        catch( IOException e )
+        {
+            if( !file.isFile() )
+            {
+                throw e;
+            }
+            LOGGER.warn( "Cannot update metadata of [" + url + "] due to: " + e.getMessage() + ". Using cached one." );
+        }
+        return file;
+    }
+
+    /**
+     * Checks if a content cached (or last checked) at a time is up to date according to update policy.
+     *
+     * @param lastChecked time when content was cached
+     * @param now         current time
+     *
+     * @return true if up to date
+     */
+    boolean isUpToDate( final long lastChecked, final long now )
+    {
+        if( UPDATE_POLICY_NEVER.equals( m_updatePolicy ) )
+        {
+            return true;
+        }
+        if( UPDATE_POLICY_INTERVAL.equals( m_updatePolicy ) )
+        {
+            return now - lastChecked < m_interval;
+        }
+        if( UPDATE_POLICY_DAILY.equals( m_updatePolicy ) )
+        {
+            final Calendar midnight = Calendar.getInstance();
+            midnight.setTimeInMillis( now );
+            midnight.set( Calendar.HOUR_OF_DAY, 0 );
+            midnight.set( Calendar.MINUTE, 0 );
+            midnight.set( Calendar.SECOND, 0 );
+            midnight.set( Calendar.MILLISECOND, 0 );
+            return lastChecked >= midnight.getTimeInMillis();
+        }
+        return false;
+    }
+
+    /**
+     * Downloads the content of an url to a temporary file that is then renamed, so a partial content is never used.
+     *
+     * @param url  url to download
+     * @param file cache file
+     *
+     * @throws IOException if the content cannot be retrieved
+     */
+    private static void download( final URL url, final File file )
+        throws IOException
+    {
+        LOGGER.debug( "Downloading metadata of [" + url + "]" );
+        file.getParentFile().mkdirs();
+        final File tmp = new File( file.getPath() + "." + System.nanoTime() + ".tmp" );
+        InputStream in = null;
+        OutputStream out = null;
+        try
+        {
+            // same certificate / authentication handling as when content is not cached
+            in = URLUtils.prepareInputStream( url, true );
+            out = new FileOutputStream( tmp );
+            final byte[] buffer = new byte[8192];
+            int read;
+            while( ( read = in.read( buffer ) ) != -1 )
+            {
+                out.write( buffer, 0, read );
+            }
+            out.close();
+            out = null;
+            file.delete();
+            if( !tmp.renameTo( file ) )
+            {
+                throw new IOException( "Cannot rename " + tmp + " to " + file );
+            }
+        }
+        finally
+        {
+            if( in != null )
+            {
+                try
+                {
+                    in.close();
+                }
+                catch( IOException ignore )
+                {
+                    // just ignore
+                }
+            }
+            if( out != null )
+            {
+                try
+                {
+                    out.close();
+                }
+                catch( IOException ignore )
+                {
+                    // just ignore
+                }
+            }
+            tmp.delete();
+        }
+    }
+
+    private static String digest( final String value )
+    {
+        try
+        {
+            final byte[] digest = MessageDigest.getInstance( "SHA-1" ).digest( value.getBytes( "UTF-8" ) );
+            final StringBuilder hex = new StringBuilder();
+            for( byte b : digest )
+            {
+                hex.append( Character.forDigit( ( b >> 4 ) & 0xF, 16 ) ).append( Character.forDigit( b & 0xF, 16 ) );
+            }
+            return hex.toString();
+        }
+        catch( NoSuchAlgorithmException e )
+        {
+            // SHA-1 is always supported
+            throw new IllegalStateException( e );
+        }
+        catch( UnsupportedEncodingException e )
+        {
+            // UTF-8 is always supported
+            throw new IllegalStateException( e );
+        }
+    }
+
+}
@@ -19,13 +19,18 @@ package org.ops4j.pax.runner.handler.internal;
 
 import java.net.URLStreamHandler;
 import java.net.URLStreamHandlerFactory;
-import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
 import org.ops4j.lang.NullArgumentException;
 
 /**
  * An composite URLStreamHandlerFactory that used it's internal list of registred URLStreamHandlerFactories to find out
  * if they can handle the requestd protocol. First one that canhandle (does not return null) will be returned.
+ * Protocols that none of the factories can handle are remembered, so they are not probed again on each new URL, till
+ * the registered factories change or an URLStreamHandlerExtender between them registers / unregisters protocols.
  *
  * @author Alin Dreghiciu
  * @see java.net.URLStreamHandlerFactory
@@ -35,17 +40,43 @@ public class CompositeURLStreamHandlerFactory
     implements URLStreamHandlerFactory
 {
 
+    /**
+     * Maximum number of remembered unknown protocols.
+     */
+    private static final int MAX_UNKNOWN_PROTOCOLS = 1000;
+
     /**
      * List of URLStreamHandlerFactories to delegate to.
      */
     private final List<URLStreamHandlerFactory> m_factories;
+    /**
+     * Protocols that none of the factories could handle, mapped to the cache generation they were probed in.
+     */
+    private final ConcurrentMap<String, Integer> m_unknownProtocols;
+    /**
+     * Cache generation. Increased on each change, so protocols probed before a change are not used anymore.
+     */
+    private final AtomicInteger m_generation;
+    /**
+     * Clears the cache when an URLStreamHandlerExtender changes its protocols.
+     */
+    private final Runnable m_cacheCleaner;
 
     /**
      * Creates a new composite url stream handler factory.
      */
     public CompositeURLStreamHandlerFactory()
     {
-        m_factories = new ArrayList<URLStreamHandlerFactory>();
+        m_factories = new CopyOnWriteArrayList<URLStreamHandlerFactory>();
+        m_unknownProtocols = new ConcurrentHashMap<String, Integer>();
+        m_generation = new AtomicInteger();
+        m_cacheCleaner = new Runnable()
+        {
+            public void run()
+            {
+                clearCache();
+            }
+        };
     }
 
     /**
@@ -56,6 +87,12 @@ public class CompositeURLStreamHandlerFactory
      */
     public URLStreamHandler createURLStreamHandler( final String protocol )
     {
+        // generation is read before probing so a change while probing invalidates the result
+        final Integer generation = m_generation.get();
+        if( protocol != null && generation.equals( m_unknownProtocols.get( protocol ) ) )
+        {
+            return null;
+        }
         for( URLStreamHandlerFactory factory : m_factories )
         {
             final URLStreamHandler handler = factory.createURLStreamHandler( protocol );
@@ -64,9 +101,27 @@ public class CompositeURLStreamHandlerFactory
                 return handler;
             }
         }
+        if( protocol != null )
+        {
+            if( m_unknownProtocols.size() >= MAX_UNKNOWN_PROTOCOLS )
+            {
+                m_unknownProtocols.clear();
+            }
+            m_unknownProtocols.put( protocol, generation );
+        }
         return null;
     }
 
+    /**
+     * Forgets the protocols that none of the factories could handle, so they are probed again. To be used when a
+     * registered factory can handle new protocols.
+     */
+    public void clearCache()
+    {
+        m_generation.incrementAndGet();
+        m_unknownProtocols.clear();
+    }
+
     /**
      * Registeres a factory with the composite.
      *
@@ -78,6 +133,11 @@ public class CompositeURLStreamHandlerFactory
     {
         NullArgumentException.validateNotNull( factory, "Registered factory" );
         m_factories.add( factory );
+        if( factory instanceof URLStreamHandlerExtender )
+        {
+            ( (URLStreamHandlerExtender) factory ).addChangeListener( m_cacheCleaner );
+        }
+        clearCache();
         return this;
     }
 
@@ -93,6 +153,11 @@ public class CompositeURLStreamHandlerFactory
     {
         NullArgumentException.validateNotNull( factory, "Unregistered factory" );
         m_factories.remove( factory );
+        if( factory instanceof URLStreamHandlerExtender )
+        {
+            ( (URLStreamHandlerExtender) factory ).removeChangeListener( m_cacheCleaner );
+        }
+        clearCache();
         return this;
     }
 
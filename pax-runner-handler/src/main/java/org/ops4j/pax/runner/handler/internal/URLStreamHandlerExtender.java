@@ -20,8 +20,11 @@ package org.ops4j.pax.runner.handler.internal;
 import java.net.URLStreamHandler;
 import java.net.URLStreamHandlerFactory;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.osgi.service.url.URLStreamHandlerService;
@@ -31,6 +34,8 @@ import org.ops4j.lang.NullArgumentException;
  * An extender that implements URLStreamHandlerFactory.
  * Registers/unregisters URLStreamHandlerService as URLStreamHandler's.
  * Note that this is not full proven URL Handler Service implementation. It does just enough to be used in runner.
+ * The protocol table is copy on write: lookups (from any thread) read an immutable snapshot without locking, while
+ * registrations and unregistrations (from service tracker) publish a new snapshot.
  *
  * @author Alin Dreghiciu
  * @see java.net.URLStreamHandlerFactory
@@ -45,16 +50,21 @@ public class URLStreamHandlerExtender
      */
     private static final Log LOGGER = LogFactory.getLog( Activator.class );
     /**
-     * Map between protocol and URLStreamHandlerService proxy.
+     * Map between protocol and URLStreamHandlerService proxy. Immutable snapshot, replaced on each change.
      */
-    private final Map<String, URLStreamHandlerProxy> m_proxies;
+    private volatile Map<String, URLStreamHandlerProxy> m_proxies;
+    /**
+     * Listeners notified after protocols were registered or unregistered.
+     */
+    private final List<Runnable> m_listeners;
 
     /**
      * Creates a new extender.
      */
     public URLStreamHandlerExtender()
     {
-        m_proxies = new HashMap<String, URLStreamHandlerProxy>();
+        m_proxies = Collections.emptyMap();
+        m_listeners = new CopyOnWriteArrayList<Runnable>();
     }
 
     /**
@@ -79,11 +89,25 @@ public class URLStreamHandlerExtender
         );
         NullArgumentException.validateNotEmptyContent( protocols, true, "Protocol" );
         NullArgumentException.validateNotNull( urlStreamHandlerService, "URL stream handler service" );
-        for( String protocol : protocols )
+        synchronized( this )
         {
-            m_proxies.put( protocol, createProxy( urlStreamHandlerService ) );
+            final Map<String, URLStreamHandlerProxy> proxies = new HashMap<String, URLStreamHandlerProxy>( m_proxies );
+            for( String protocol : protocols )
+            {
+                final URLStreamHandlerProxy proxy = proxies.get( protocol );
+                if( proxy != null )
+                {
+                    // JVM could have already cached the proxy so just change where it delegates to
+                    proxy.setHandler( urlStreamHandlerService );
+                }
+                else
+                {
+                    proxies.put( protocol, createProxy( urlStreamHandlerService ) );
+                }
+            }
+            m_proxies = Collections.unmodifiableMap( proxies );
         }
-
+        fireChanged();
     }
 
     /**
@@ -95,9 +119,46 @@ public class URLStreamHandlerExtender
     {
         LOGGER.debug( "Unregistering protocols [" + Arrays.toString( protocols ) + "]" );
         NullArgumentException.validateNotEmptyContent( protocols, true, "Protocols" );
-        for( String protocol : protocols )
+        synchronized( this )
+        {
+            final Map<String, URLStreamHandlerProxy> proxies = new HashMap<String, URLStreamHandlerProxy>( m_proxies );
+            for( String protocol : protocols )
+            {
+                proxies.remove( protocol );
+            }
+            m_proxies = Collections.unmodifiableMap( proxies );
+        }
+        fireChanged();
+    }
+
+    /**
+     * Adds a listener to be notified after protocols were registered or unregistered.
+     *
+     * @param listener listener to add
+     */
+    void addChangeListener( final Runnable listener )
+    {
+        m_listeners.add( listener );
+    }
+
+    /**
+     * Removes a listener added via addChangeListener.
+     *
+     * @param listener listener to remove
+     */
+    void removeChangeListener( final Runnable listener )
+    {
+        m_listeners.remove( listener );
+    }
+
+    /**
+     * Notifies the listeners that protocols changed.
+     */
+    private void fireChanged()
+    {
+        for( Runnable listener : m_listeners )
         {
-            m_proxies.remove( protocol );
+            listener.run();
         }
     }
 
@@ -29,6 +29,9 @@ import org.ops4j.lang.NullArgumentException;
 /**
  * A proxy that get's registred with the JVM as URLStreamhandler but actualy delegates to the URLStreamHandlerService
  * OSGi style.
+ * The proxy does not lock: url parsing, hashing and comparing (called all the time from hash maps) run concurrently
+ * for the same protocol. The handler can be replaced at any time (as the JVM caches the proxy per protocol) and each
+ * call delegates to the handler set at the moment of the call.
  */
 public class URLStreamHandlerProxy
     extends URLStreamHandler
@@ -38,7 +41,7 @@ public class URLStreamHandlerProxy
     /**
      * The handler to delegate to.
      */
-    private final URLStreamHandlerService m_handler;
+    private volatile URLStreamHandlerService m_handler;
 
     /**
      * Creates a new proxy for the protocol.
@@ -51,13 +54,24 @@ public class URLStreamHandlerProxy
         m_handler = handler;
     }
 
+    /**
+     * Replaces the handler to delegate to.
+     *
+     * @param handler the handler to delegate to
+     */
+    public void setHandler( final URLStreamHandlerService handler )
+    {
+        NullArgumentException.validateNotNull( handler, "URL stream handler service" );
+        m_handler = handler;
+    }
+
     /**
      * Delegates to handler.
      *
      * @see URLStreamHandler#equals(java.net.URL,java.net.URL)
      */
     @Override
-    protected synchronized boolean equals( final URL first, final URL second )
+    protected boolean equals( final URL first, final URL second )
     {
         return m_handler.equals( first, second );
     }
@@ -68,7 +82,7 @@ public class URLStreamHandlerProxy
      * @see URLStreamHandler#getDefaultPort()
      */
     @Override
-    protected synchronized int getDefaultPort()
+    protected int getDefaultPort()
     {
         return m_handler.getDefaultPort();
     }
@@ -79,7 +93,7 @@ public class URLStreamHandlerProxy
      * @see URLStreamHandler#getHostAddress(java.net.URL)
      */
     @Override
-    protected synchronized InetAddress getHostAddress( final URL url )
+    protected InetAddress getHostAddress( final URL url )
     {
         return m_handler.getHostAddress( url );
     }
@@ -90,7 +104,7 @@ public class URLStreamHandlerProxy
      * @see URLStreamHandler#hashCode(java.net.URL)
      */
     @Override
-    protected synchronized int hashCode( final URL url )
+    protected int hashCode( final URL url )
     {
         return m_handler.hashCode( url );
     }
@@ -101,7 +115,7 @@ public class URLStreamHandlerProxy
      * @see URLStreamHandler#hostsEqual(java.net.URL,java.net.URL)
      */
     @Override
-    protected synchronized boolean hostsEqual( URL first, URL second )
+    protected boolean hostsEqual( URL first, URL second )
     {
         return m_handler.hostsEqual( first, second );
     }
@@ -112,7 +126,7 @@ public class URLStreamHandlerProxy
      * @see URLStreamHandler#openConnection(java.net.URL)
      */
     @Override
-    protected synchronized URLConnection openConnection( final URL url )
+    protected URLConnection openConnection( final URL url )
         throws IOException
     {
         return m_handler.openConnection( url );
@@ -124,7 +138,7 @@ public class URLStreamHandlerProxy
      * @see URLStreamHandler#parseURL(java.net.URL,String,int,int)
      */
     @Override
-    protected synchronized void parseURL( final URL url, final String spec, final int start, final int limit )
+    protected void parseURL( final URL url, final String spec, final int start, final int limit )
     {
         m_handler.parseURL( this, url, spec, start, limit );
     }
@@ -135,7 +149,7 @@ public class URLStreamHandlerProxy
      * @see URLStreamHandler#sameFile(java.net.URL,java.net.URL)
      */
     @Override
-    protected synchronized boolean sameFile( URL first, URL second )
+    protected boolean sameFile( URL first, URL second )
     {
         return m_handler.sameFile( first, second );
     }
@@ -166,7 +180,7 @@ public class URLStreamHandlerProxy
      * @see URLStreamHandler#toExternalForm(java.net.URL)
      */
     @Override
-    protected synchronized String toExternalForm( final URL url )
+    protected String toExternalForm( final URL url )
     {
         return m_handler.toExternalForm( url );
     }
@@ -0,0 +1,90 @@
+/*
+ * Copyright 2026 OPS4J.
+ *
+ * Licensed  under the  Apache License,  Version 2.0  (the "License");
+ * you may not use  this file  except in  compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed  under the  License is distributed on an "AS IS" BASIS,
+ * WITHOUT  WARRANTIES OR CONDITIONS  OF ANY KIND, either  express  or
+ * implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.runner.handler.internal;
+
+import java.net.URLStreamHandler;
+import java.net.URLStreamHandlerFactory;
+import static org.easymock.EasyMock.*;
+import static org.junit.Assert.*;
+import org.junit.Test;
+import org.osgi.service.url.URLStreamHandlerService;
+
+public class CompositeURLStreamHandlerFactoryTest
+{
+
+    // unknown protocols should not be probed again
+    @Test
+    public void unknownProtocolIsCached()
+    {
+        final CountingFactory factory = new CountingFactory();
+        final CompositeURLStreamHandlerFactory composite = new CompositeURLStreamHandlerFactory();
+        composite.registerFactory( factory );
+        assertNull( "Handler", composite.createURLStreamHandler( "unknown" ) );
+        assertNull( "Handler", composite.createURLStreamHandler( "unknown" ) );
+        assertEquals( "Probes", 1, factory.m_probes );
+
+        composite.clearCache();
+        assertNull( "Handler", composite.createURLStreamHandler( "unknown" ) );
+        assertEquals( "Probes after clear", 2, factory.m_probes );
+    }
+
+    // a protocol registered later with an extender should be found
+    @Test
+    public void protocolRegisteredAfterLookup()
+    {
+        final URLStreamHandlerExtender extender = new URLStreamHandlerExtender();
+        final CompositeURLStreamHandlerFactory composite = new CompositeURLStreamHandlerFactory();
+        composite.registerFactory( extender );
+        assertNull( "Handler before register", composite.createURLStreamHandler( "protocol" ) );
+
+        extender.register( new String[]{ "protocol" }, createMock( URLStreamHandlerService.class ) );
+        assertNotNull( "Handler after register", composite.createURLStreamHandler( "protocol" ) );
+
+        extender.unregister( new String[]{ "protocol" } );
+        assertNull( "Handler after unregister", composite.createURLStreamHandler( "protocol" ) );
+    }
+
+    // a factory registered later should be asked
+    @Test
+    public void factoryRegisteredAfterLookup()
+    {
+        final CompositeURLStreamHandlerFactory composite = new CompositeURLStreamHandlerFactory();
+        composite.registerFactory( new CountingFactory() );
+        assertNull( "Handler before register", composite.createURLStreamHandler( "protocol" ) );
+
+        final URLStreamHandlerExtender extender = new URLStreamHandlerExtender();
+        extender.register( new String[]{ "protocol" }, createMock( URLStreamHandlerService.class ) );
+        composite.registerFactory( extender );
+        assertNotNull( "Handler after register", composite.createURLStreamHandler( "protocol" ) );
+    }
+
+    private static class CountingFactory
+        implements URLStreamHandlerFactory
+    {
+
+        private int m_probes;
+
+        public URLStreamHandler createURLStreamHandler( final String protocol )
+        {
+            m_probes++;
+            return null;
+        }
+
+    }
+
+}
@@ -122,4 +122,21 @@ public class URLStreamHandlerExtenderTest
         assertEquals( "URL stream handler ", proxy, extender.createURLStreamHandler( "protocol" ) );
     }
 
+    // registering a protocol again should keep the proxy (that JVM could have cached) but delegate to the new service
+    @Test
+    public void registerAgain()
+    {
+        URLStreamHandlerService first = createMock( URLStreamHandlerService.class );
+        URLStreamHandlerService second = createMock( URLStreamHandlerService.class );
+        expect( second.getDefaultPort() ).andReturn( 42 );
+        replay( first, second );
+        URLStreamHandlerExtender extender = new URLStreamHandlerExtender();
+        extender.register( new String[]{ "protocol" }, first );
+        final URLStreamHandlerProxy proxy = (URLStreamHandlerProxy) extender.createURLStreamHandler( "protocol" );
+        extender.register( new String[]{ "protocol" }, second );
+        assertSame( "URL stream handler", proxy, extender.createURLStreamHandler( "protocol" ) );
+        assertEquals( "Default port", 42, proxy.getDefaultPort() );
+        verify( first, second );
+    }
+
 }
@@ -0,0 +1,201 @@
+/*
+ * Copyright 2026 OPS4J.
+ *
+ * Licensed  under the  Apache License,  Version 2.0  (the "License");
+ * you may not use  this file  except in  compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed  under the  License is distributed on an "AS IS" BASIS,
+ * WITHOUT  WARRANTIES OR CONDITIONS  OF ANY KIND, either  express  or
+ * implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.runner.handler.internal;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.net.URLConnection;
+import java.util.concurrent.CountDownLatch;
+import org.osgi.service.url.URLStreamHandlerService;
+import org.osgi.service.url.URLStreamHandlerSetter;
+
+/**
+ * Contention benchmark of URLStreamHandlerProxy: threads parse, compare and format urls of the same protocol, as
+ * concurrent scanning and downloading does. Compares the proxy with one that synchronizes every call (as the proxy
+ * used to). Not a unit test; run it with the test classpath:
+ * java org.ops4j.pax.runner.handler.internal.URLStreamHandlerProxyBenchmark [max threads] [operations per thread]
+ *
+ * @since 1.9.1, October 18, 2026
+ */
+public class URLStreamHandlerProxyBenchmark
+{
+
+    public static void main( final String[] args )
+        throws Exception
+    {
+        final int maxThreads = args.length > 0
+                               ? Integer.parseInt( args[ 0 ] )
+                               : Runtime.getRuntime().availableProcessors();
+        final int operations = args.length > 1 ? Integer.parseInt( args[ 1 ] ) : 200000;
+        // warm up
+        run( new URLStreamHandlerProxy( new Handler() ), maxThreads, operations );
+        run( new SynchronizedProxy( new Handler() ), maxThreads, operations );
+        System.out.println( "threads  synchronized (ops/ms)  lock free (ops/ms)" );
+        for( int threads = 1; threads <= maxThreads; threads *= 2 )
+        {
+            final long locked = run( new SynchronizedProxy( new Handler() ), threads, operations );
+            final long lockFree = run( new URLStreamHandlerProxy( new Handler() ), threads, operations );
+            System.out.println( String.format( "%7d  %21d  %18d", threads, locked, lockFree ) );
+        }
+    }
+
+    /**
+     * Runs the operations on a number of threads.
+     *
+     * @return throughput in operations per millisecond
+     */
+    private static long run( final URLStreamHandlerProxy proxy, final int threads, final int operations )
+        throws Exception
+    {
+        final CountDownLatch start = new CountDownLatch( 1 );
+        final CountDownLatch done = new CountDownLatch( threads );
+        for( int i = 0; i < threads; i++ )
+        {
+            new Thread()
+            {
+                @Override
+                public void run()
+                {
+                    try
+                    {
+                        final URL first = new URL( null, "bench:org.ops4j/artifact/1.0", proxy );
+                        start.await();
+                        for( int j = 0; j < operations; j++ )
+                        {
+                            final URL second = new URL( null, "bench:org.ops4j/artifact/1.0", proxy );
+                            if( !first.equals( second ) || second.toExternalForm().length() == 0 )
+                            {
+                                throw new IllegalStateException( "Unexpected url " + second );
+                            }
+                        }
+                    }
+                    catch( Exception e )
+                    {
+                        e.printStackTrace();
+                    }
+                    finally
+                    {
+                        done.countDown();
+                    }
+                }
+            }.start();
+        }
+        final long startTime = System.nanoTime();
+        start.countDown();
+        done.await();
+        final long millis = Math.max( 1, ( System.nanoTime() - startTime ) / 1000000 );
+        return (long) threads * operations / millis;
+    }
+
+    /**
+     * Proxy that synchronizes every call.
+     */
+    private static class SynchronizedProxy
+        extends URLStreamHandlerProxy
+    {
+
+        SynchronizedProxy( final URLStreamHandlerService handler )
+        {
+            super( handler );
+        }
+
+        @Override
+        protected synchronized boolean equals( final URL first, final URL second )
+        {
+            return super.equals( first, second );
+        }
+
+        @Override
+        protected synchronized int hashCode( final URL url )
+        {
+            return super.hashCode( url );
+        }
+
+        @Override
+        protected synchronized void parseURL( final URL url, final String spec, final int start, final int limit )
+        {
+            super.parseURL( url, spec, start, limit );
+        }
+
+        @Override
+        protected synchronized String toExternalForm( final URL url )
+        {
+            return super.toExternalForm( url );
+        }
+
+    }
+
+    /**
+     * Handler service doing a bit of work on each call, as real handlers do.
+     */
+    private static class Handler
+        implements URLStreamHandlerService
+    {
+
+        public URLConnection openConnection( final URL url )
+            throws IOException
+        {
+            throw new MalformedURLException( "Not supported" );
+        }
+
+        public void parseURL( final URLStreamHandlerSetter setter, final URL url, final String spec, final int start,
+                              final int limit )
+        {
+            setter.setURL( url, url.getProtocol(), null, -1, null, null, spec.substring( start, limit ), null, null );
+        }
+
+        public String toExternalForm( final URL url )
+        {
+            return url.getProtocol() + ":" + url.getPath();
+        }
+
+        public boolean equals( final URL first, final URL second )
+        {
+            return toExternalForm( first ).equals( toExternalForm( second ) );
+        }
+
+        public int getDefaultPort()
+        {
+            return -1;
+        }
+
+        public InetAddress getHostAddress( final URL url )
+        {
+            return null;
+        }
+
+        public int hashCode( final URL url )
+        {
+            return toExternalForm( url ).hashCode();
+        }
+
+        public boolean hostsEqual( final URL first, final URL second )
+        {
+            return true;
+        }
+
+        public boolean sameFile( final URL first, final URL second )
+        {
+            return equals( first, second );
+        }
+
+    }
+
+}
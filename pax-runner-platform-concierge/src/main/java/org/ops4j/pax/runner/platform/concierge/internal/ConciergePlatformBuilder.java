@@ -141,7 +141,7 @@ public class ConciergePlatformBuilder
                     context.getFilePathStrategy().normalizeAsPath( configDirectory )
                 );
             // clean start ?
-            final Boolean usePersistedState = configuration.usePersistedState();
+            final Boolean usePersistedState = context.usePersistedState();
             if( usePersistedState != null && !usePersistedState )
             {
                 writer.appendRaw( "-init" );
@@ -190,7 +190,7 @@ public class EquinoxPlatformBuilderF321T372
             }
             // use persisted state
             {
-                final Boolean usePersistedState = configuration.usePersistedState();
+                final Boolean usePersistedState = context.usePersistedState();
                 if( usePersistedState != null && !usePersistedState )
                 {
                     writer.append( "osgi.clean", "true" );
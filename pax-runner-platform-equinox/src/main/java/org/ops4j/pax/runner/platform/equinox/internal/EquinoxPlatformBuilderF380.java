@@ -194,7 +194,7 @@ public class EquinoxPlatformBuilderF380
             }
             // use persisted state
             {
-                final Boolean usePersistedState = configuration.usePersistedState();
+                final Boolean usePersistedState = context.usePersistedState();
                 if( usePersistedState != null && !usePersistedState )
                 {
                     writer.append( "osgi.clean", "true" );
@@ -17,7 +17,7 @@
  */
 package org.ops4j.pax.runner.platform.equinox.internal;
 
-import org.ops4j.net.URLUtils;
+import org.ops4j.pax.runner.commons.metadata.MetadataCache;
 import org.ops4j.pax.runner.platform.Configuration;
 import org.osgi.framework.BundleContext;
 
@@ -52,9 +52,9 @@ public class EquinoxPlatformBuilderSnapshot
     public InputStream getDefinition( final Configuration configuration )
         throws IOException
     {
-        return URLUtils.prepareInputStream(
-            new URL( configuration.getProperty( "equinox.snapshot.definition.url" ) ),
-            true
+        // cached, as resolving the snapshot definition url means a remote metadata round trip
+        return new MetadataCache( configuration.getMetadataUpdatePolicy() ).openStream(
+            new URL( configuration.getProperty( "equinox.snapshot.definition.url" ) )
         );
     }
 
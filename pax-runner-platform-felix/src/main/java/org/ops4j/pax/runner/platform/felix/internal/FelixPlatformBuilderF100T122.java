@@ -56,7 +56,7 @@ public class FelixPlatformBuilderF100T122
         if( profile != null )
         {
             writer.append( "felix.cache.profile", profile );
-            final Boolean usePersistedState = configuration.usePersistedState();
+            final Boolean usePersistedState = context.usePersistedState();
             if( usePersistedState != null && !usePersistedState )
             {
                 final File workingDirectory = context.getWorkingDirectory();
@@ -19,7 +19,6 @@ package org.ops4j.pax.runner.platform.felix.internal;
 
 import java.io.File;
 
-import org.ops4j.pax.runner.platform.Configuration;
 import org.ops4j.pax.runner.platform.PlatformContext;
 import org.ops4j.util.collections.PropertiesWriter;
 import org.osgi.framework.BundleContext;
@@ -60,8 +59,7 @@ public class FelixPlatformBuilderF140T141
         }
         // use persisted state
         {
-            Configuration configuration = context.getConfiguration();
-            final Boolean usePersistedState = configuration.usePersistedState();
+            final Boolean usePersistedState = context.usePersistedState();
             if( usePersistedState != null && !usePersistedState )
             {
                 writer.append( "org.osgi.framework.storage.clean", "onFirstInit" );
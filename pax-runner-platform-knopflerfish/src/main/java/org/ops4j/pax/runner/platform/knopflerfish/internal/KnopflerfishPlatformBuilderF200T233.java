@@ -137,7 +137,7 @@ public class KnopflerfishPlatformBuilderF200T233
             final Configuration configuration = context.getConfiguration();
 
             // clean up fwdir folder
-            final Boolean usePersistedState = configuration.usePersistedState();
+            final Boolean usePersistedState = context.usePersistedState();
             if( usePersistedState != null && !usePersistedState )
             {
                 final File fwdir = new File( configDirectory, CACHE_DIRECTORY );
@@ -176,7 +176,7 @@ public class KnopflerfishPlatformBuilderF300
             }
             // use persisted state
             {
-                final Boolean usePersistedState = configuration.usePersistedState();
+                final Boolean usePersistedState = context.usePersistedState();
                 if( usePersistedState != null && !usePersistedState )
                 {
                     writer.append( "-Dorg.osgi.framework.storage.clean", "onFirstInit" );
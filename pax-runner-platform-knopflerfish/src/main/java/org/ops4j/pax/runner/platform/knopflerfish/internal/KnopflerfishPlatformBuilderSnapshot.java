@@ -21,7 +21,7 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.net.URL;
 import org.osgi.framework.BundleContext;
-import org.ops4j.net.URLUtils;
+import org.ops4j.pax.runner.commons.metadata.MetadataCache;
 import org.ops4j.pax.runner.platform.Configuration;
 
 /**
@@ -51,9 +51,9 @@ public class KnopflerfishPlatformBuilderSnapshot
     public InputStream getDefinition( final Configuration configuration )
         throws IOException
     {
-        return URLUtils.prepareInputStream(
-            new URL( configuration.getProperty( "knopflerfish.snapshot.definition.url" ) ),
-            true
+        // cached, as resolving the snapshot definition url means a remote metadata round trip
+        return new MetadataCache( configuration.getMetadataUpdatePolicy() ).openStream(
+            new URL( configuration.getProperty( "knopflerfish.snapshot.definition.url" ) )
         );
     }
 
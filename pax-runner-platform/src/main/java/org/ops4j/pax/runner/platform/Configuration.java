@@ -190,6 +190,23 @@ public interface Configuration
      */
     Boolean isDownloadFeedback();
 
+    /**
+     * Returns the download threads option - optional; number of workers used to download bundles in parallel.
+     * Default value is 1 (bundles are downloaded one after another) or 8 while prefetching.
+     *
+     * @return value of download threads option
+     */
+    Integer getDownloadThreads();
+
+    /**
+     * Returns the bundle store option - optional; directory of a content addressed store, shared between working
+     * directories, where downloaded bundles are kept. If set to "true" the default location
+     * (${user.home}/.pax/runner/store) is used. Default value is null, meaning that no store is used.
+     *
+     * @return value of bundle store option
+     */
+    String getBundleStore();
+
     /**
      * Returns a comma separated list of boot delegation packages according to OSGi core specs 3.2.3 (in 4.0.1). If not
      * set it should return null.
@@ -239,6 +256,72 @@ public interface Configuration
      */
     Boolean useAbsoluteFilePaths();
 
+    /**
+     * Returns true if the system packages that are not imported by any of the provisioned bundles should be removed.
+     * Default value is "false".
+     *
+     * @return value of prune system packages option
+     */
+    Boolean pruneSystemPackages();
+
+    /**
+     * Returns true if the framework storage should be kept as long as the bundles and framework properties do not
+     * change, and cleaned otherwise. When set, overrides the use persisted state option.
+     * Default value is "false".
+     *
+     * @return value of smart clean option
+     */
+    Boolean isSmartClean();
+
+    /**
+     * Returns the golden image option - optional; directory of a working directory snapshot (including framework
+     * persisted state) that new working directories are cloned from. The snapshot is captured when the framework of
+     * the first start exits, so only with executors that wait for framework exit (e.g. the default one).
+     * Default value is null, meaning that no golden image is used.
+     *
+     * @return value of golden image option
+     */
+    String getGoldenImage();
+
+    /**
+     * Returns true if the framework jvm should use an application class data sharing archive of its classpath, that
+     * is recorded on first start and whenever the classpath or the jdk changes. Requires java 13 or newer.
+     * Default value is "false".
+     *
+     * @return value of class data sharing option
+     */
+    Boolean useClassDataSharing();
+
+    /**
+     * Returns the update policy of cached remote metadata as snapshot platform definitions: "always", "daily",
+     * "interval:X" (minutes) or "never". Cached metadata is used whatever the policy if the remote one cannot be
+     * retrieved.
+     * Default value is "daily".
+     *
+     * @return value of metadata update policy option
+     */
+    String getMetadataUpdatePolicy();
+
+    /**
+     * Returns the mirror option - optional; directory where all resolved files (system package, system files, platform
+     * and user bundles) are exported together with a launch descriptor, instead of starting the framework. The mirror
+     * is started without network access by running Pax Runner from the mirror directory.
+     * Default value is null, meaning that the framework is started.
+     *
+     * @return value of mirror option
+     */
+    String getMirror();
+
+    /**
+     * Returns true if all files (system package, system files, platform and user bundles) should be only downloaded,
+     * using the download threads in parallel, instead of starting the framework. A summary of the downloads
+     * (prefetch.properties) is written to the working directory.
+     * Default value is "false".
+     *
+     * @return value of prefetch option
+     */
+    Boolean isPrefetch();
+
     /**
      * Returns a raw configuration property by name.
      *
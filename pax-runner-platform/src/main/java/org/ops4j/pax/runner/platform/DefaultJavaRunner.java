@@ -37,7 +37,7 @@ import org.ops4j.pax.runner.platform.internal.CommandLineBuilder;
  * @since 0.6.1, December 09, 2008
  */
 public class DefaultJavaRunner
-    implements StoppableJavaRunner
+    implements StoppableJavaRunner, WaitingJavaRunner
 {
 
     /**
@@ -76,6 +76,14 @@ public class DefaultJavaRunner
         m_wait = wait;
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    public boolean waitsForExit()
+    {
+        return m_wait;
+    }
+
     public synchronized void exec( final String[] vmOptions,
                                    final String[] classpath,
                                    final String mainClass,
@@ -131,4 +131,20 @@ public interface PlatformContext
      */
     FilePathStrategy getFilePathStrategy();
 
+    /**
+     * Sets if the framework should use the persisted state (framework storage) of a previous run, overriding the
+     * configured value.
+     *
+     * @param usePersistedState true if persisted state should be used; null to use the configured value
+     */
+    void setUsePersistedState( Boolean usePersistedState );
+
+    /**
+     * Returns true if the framework should use the persisted state (framework storage) of a previous run. If not
+     * explicitly set, the configured value is returned.
+     *
+     * @return use persisted state
+     */
+    Boolean usePersistedState();
+
 }
@@ -93,6 +93,14 @@ public interface ServiceConstants
      * Overwrite system bundles configuration property name.
      */
     static final String CONFIG_OVERWRITE_SYSTEM_BUNDLES = PID + ".overwriteSystemBundles";
+    /**
+     * Download threads configuration property name.
+     */
+    static final String CONFIG_DOWNLOAD_THREADS = PID + ".downloadThreads";
+    /**
+     * Bundle store configuration property name.
+     */
+    static final String CONFIG_BUNDLE_STORE = PID + ".bundleStore";
     /**
      * The service property name under which the platform name should be registered.
      */
@@ -121,6 +129,34 @@ public interface ServiceConstants
      * Use absolute file paths property name.
      */
     static final String CONFIG_USE_ABSOLUTE_FILE_PATHS = PID + ".useAbsoluteFilePaths";
+    /**
+     * Prune system packages property name.
+     */
+    static final String CONFIG_PRUNE_SYSTEM_PACKAGES = PID + ".pruneSystemPackages";
+    /**
+     * Smart clean property name.
+     */
+    static final String CONFIG_SMART_CLEAN = PID + ".smartClean";
+    /**
+     * Golden image property name.
+     */
+    static final String CONFIG_GOLDEN_IMAGE = PID + ".goldenImage";
+    /**
+     * Class data sharing property name.
+     */
+    static final String CONFIG_CLASS_DATA_SHARING = PID + ".classDataSharing";
+    /**
+     * Metadata update policy property name.
+     */
+    static final String CONFIG_METADATA_UPDATE_POLICY = PID + ".metadataUpdatePolicy";
+    /**
+     * Mirror property name.
+     */
+    static final String CONFIG_MIRROR = PID + ".mirror";
+    /**
+     * Prefetch property name.
+     */
+    static final String CONFIG_PREFETCH = PID + ".prefetch";
 
     /**
      * Environment Options property name.
@@ -0,0 +1,36 @@
+/*
+ * Copyright 2026 OPS4J.
+ *
+ * Licensed  under the  Apache License,  Version 2.0  (the "License");
+ * you may not use  this file  except in  compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed  under the  License is distributed on an "AS IS" BASIS,
+ * WITHOUT  WARRANTIES OR CONDITIONS  OF ANY KIND, either  express  or
+ * implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.runner.platform;
+
+/**
+ * A {@link JavaRunner} that tells if it returns only after the started program exits.
+ *
+ * @since 1.9.1, October 18, 2026
+ */
+public interface WaitingJavaRunner
+    extends JavaRunner
+{
+
+    /**
+     * Checks if exec returns only after the started program exits.
+     *
+     * @return true if exec waits for the started program to exit
+     */
+    boolean waitsForExit();
+
+}
@@ -0,0 +1,502 @@
+/*
+ * Copyright 2026 OPS4J.
+ *
+ * Licensed  under the  Apache License,  Version 2.0  (the "License");
+ * you may not use  this file  except in  compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed  under the  License is distributed on an "AS IS" BASIS,
+ * WITHOUT  WARRANTIES OR CONDITIONS  OF ANY KIND, either  express  or
+ * implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.runner.platform.internal;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.lang.reflect.Array;
+import java.lang.reflect.Method;
+import java.net.URL;
+import java.nio.channels.FileChannel;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.ops4j.lang.NullArgumentException;
+import org.ops4j.pax.runner.platform.PlatformException;
+
+/**
+ * Content addressed store of downloaded files, shared between working directories.
+ * Files are stored once, by their SHA-256 digest, and working directories get a link to the stored file. As the store
+ * can be used by more runners at the same time all changes are done by writing a temporary file and renaming it.
+ * Layout of the store:<br/>
+ * - objects/&lt;first two chars of digest&gt;/&lt;digest&gt; : stored files;<br/>
+ * - urls/&lt;first two chars of url digest&gt;/&lt;url digest&gt; : digest of the file downloaded from an url.
+ *
+ * @since 1.9.1, October 18, 2026
+ */
+class BundleStore
+{
+
+    /**
+     * Logger.
+     */
+    private static final Log LOGGER = LogFactory.getLog( BundleStore.class );
+    /**
+     * Digest algorithm used to address stored files.
+     */
+    private static final String ALGORITHM = "SHA-256";
+    /**
+     * Hex digits used to encode digests.
+     */
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    /**
+     * Store root directory. Cannot be null.
+     */
+    private final File m_storeDir;
+
+    /**
+     * Creates a new bundle store.
+     *
+     * @param storeDir store root directory; mandatory
+     */
+    BundleStore( final File storeDir )
+    {
+        NullArgumentException.validateNotNull( storeDir, "Store directory" );
+        m_storeDir = storeDir;
+    }
+
+    /**
+     * Looks up the stored file that was downloaded from an url.
+     *
+     * @param url url the file was downloaded from
+     *
+     * @return stored file or null if there is no file stored for the url
+     */
+    File get( final URL url )
+    {
+        final String digest = readUrlDigest( url );
+        if( digest == null )
+        {
+            return null;
+        }
+        final File stored = getObjectFile( digest );
+        if( !stored.isFile() )
+        {
+            return null;
+        }
+        return stored;
+    }
+
+    /**
+     * Adds a file to the store (if a file with the same content is not already there) and remembers that it was
+     * downloaded from the provided url.
+     *
+     * @param url  url the file was downloaded from
+     * @param file file to be stored
+     *
+     * @return stored file
+     *
+     * @throws PlatformException if the file could not be stored
+     */
+    File put( final URL url, final File file )
+        throws PlatformException
+    {
+        return put( url, file, null );
+    }
+
+    /**
+     * Adds a file to the store, as {@link #put(URL, File)}, but using an already known digest of the file content
+     * (e.g. calculated while downloading) so the file does not have to be read again.
+     *
+     * @param url         url the file was downloaded from
+     * @param file        file to be stored
+     * @param knownDigest SHA-256 digest (hex encoded) of the file content; if null the digest is calculated
+     *
+     * @return stored file
+     *
+     * @throws PlatformException if the file could not be stored
+     */
+    File put( final URL url, final File file, final String knownDigest )
+        throws PlatformException
+    {
+        NullArgumentException.validateNotNull( url, "URL" );
+        NullArgumentException.validateNotNull( file, "File" );
+        try
+        {
+            final String digest = knownDigest != null ? knownDigest : digest( file );
+            final File stored = getObjectFile( digest );
+            if( !stored.isFile() )
+            {
+                LOGGER.debug( "Storing [" + url + "] as [" + stored + "]" );
+                final File temp = createTempFile( stored );
+                copy( file, temp );
+                moveInPlace( temp, stored );
+            }
+            writeUrlDigest( url, digest );
+            return stored;
+        }
+        catch( IOException e )
+        {
+            throw new PlatformException( "[" + url + "] could not be added to bundle store " + m_storeDir, e );
+        }
+    }
+
+    /**
+     * Makes a stored file available at destination. First tries to create a hard link, then a symbolic link and if
+     * none is supported by the running jvm or file system the file is copied.
+     *
+     * @param stored      stored file
+     * @param destination where the file should be available
+     *
+     * @throws PlatformException if the file could not be linked nor copied
+     */
+    void link( final File stored, final File destination )
+        throws PlatformException
+    {
+        NullArgumentException.validateNotNull( stored, "Stored file" );
+        linkOrCopy( stored, destination );
+    }
+
+    /**
+     * Makes a file available at destination by linking it (hard link, then symbolic link) or, if links are not
+     * supported, by copying it.
+     *
+     * @param file        file to be linked
+     * @param destination where the file should be available
+     *
+     * @throws PlatformException if the file could not be linked nor copied
+     */
+    static void linkOrCopy( final File file, final File destination )
+        throws PlatformException
+    {
+        NullArgumentException.validateNotNull( file, "File" );
+        NullArgumentException.validateNotNull( destination, "Destination" );
+        if( destination.exists() && !destination.delete() )
+        {
+            throw new PlatformException( "Cannot delete " + destination );
+        }
+        destination.getParentFile().mkdirs();
+        if( createLink( "createLink", destination, file ) )
+        {
+            return;
+        }
+        if( createLink( "createSymbolicLink", destination, file ) )
+        {
+            return;
+        }
+        try
+        {
+            copy( file, destination );
+        }
+        catch( IOException e )
+        {
+            throw new PlatformException( "Cannot copy " + file + " to " + destination, e );
+        }
+    }
+
+    /**
+     * Calculates the SHA-256 digest of a file content.
+     *
+     * @param file file to digest
+     *
+     * @return hex encoded digest
+     *
+     * @throws IOException re-thrown
+     */
+    static String digest( final File file )
+        throws IOException
+    {
+        final MessageDigest messageDigest = createMessageDigest( ALGORITHM );
+        final InputStream in = new FileInputStream( file );
+        try
+        {
+            final byte[] buffer = new byte[8192];
+            int read;
+            while( ( read = in.read( buffer ) ) != -1 )
+            {
+                messageDigest.update( buffer, 0, read );
+            }
+        }
+        finally
+        {
+            in.close();
+        }
+        return toHex( messageDigest.digest() );
+    }
+
+    /**
+     * Creates a message digest for the specified algorithm.
+     *
+     * @param algorithm digest algorithm
+     *
+     * @return message digest
+     */
+    static MessageDigest createMessageDigest( final String algorithm )
+    {
+        try
+        {
+            return MessageDigest.getInstance( algorithm );
+        }
+        catch( NoSuchAlgorithmException e )
+        {
+            // should not happen as jvms must support SHA-1 and SHA-256
+            throw new IllegalStateException( "Digest algorithm " + algorithm + " is not supported", e );
+        }
+    }
+
+    /**
+     * Hex encodes a digest.
+     *
+     * @param bytes digest bytes
+     *
+     * @return hex encoded digest
+     */
+    static String toHex( final byte[] bytes )
+    {
+        final char[] chars = new char[bytes.length * 2];
+        for( int i = 0; i < bytes.length; i++ )
+        {
+            chars[ i * 2 ] = HEX[ ( bytes[ i ] >> 4 ) & 0x0f ];
+            chars[ i * 2 + 1 ] = HEX[ bytes[ i ] & 0x0f ];
+        }
+        return new String( chars );
+    }
+
+    /**
+     * Returns the file under which a digest is stored.
+     *
+     * @param digest file digest
+     *
+     * @return stored file
+     */
+    private File getObjectFile( final String digest )
+    {
+        return new File( m_storeDir, "objects/" + digest.substring( 0, 2 ) + "/" + digest );
+    }
+
+    /**
+     * Returns the file that holds the digest of the file downloaded from an url.
+     *
+     * @param url url
+     *
+     * @return url file
+     */
+    private File getUrlFile( final URL url )
+    {
+        final MessageDigest messageDigest = createMessageDigest( ALGORITHM );
+        try
+        {
+            messageDigest.update( url.toExternalForm().getBytes( "UTF-8" ) );
+        }
+        catch( IOException e )
+        {
+            // should not happen as UTF-8 is always supported
+            throw new IllegalStateException( e );
+        }
+        final String urlDigest = toHex( messageDigest.digest() );
+        return new File( m_storeDir, "urls/" + urlDigest.substring( 0, 2 ) + "/" + urlDigest );
+    }
+
+    /**
+     * Reads the digest of the file downloaded from an url.
+     *
+     * @param url url
+     *
+     * @return digest or null if url was not stored
+     */
+    private String readUrlDigest( final URL url )
+    {
+        final File urlFile = getUrlFile( url );
+        if( !urlFile.isFile() )
+        {
+            return null;
+        }
+        try
+        {
+            final InputStream in = new FileInputStream( urlFile );
+            try
+            {
+                final StringBuilder digest = new StringBuilder();
+                int read;
+                while( ( read = in.read() ) != -1 && read != '\n' )
+                {
+                    digest.append( (char) read );
+                }
+                return digest.length() == 0 ? null : digest.toString();
+            }
+            finally
+            {
+                in.close();
+            }
+        }
+        catch( IOException e )
+        {
+            LOGGER.debug( "Cannot read " + urlFile + " due to: " + e.getMessage() );
+            return null;
+        }
+    }
+
+    /**
+     * Remembers the digest of the file downloaded from an url.
+     *
+     * @param url    url
+     * @param digest digest of downloaded file
+     *
+     * @throws IOException re-thrown
+     */
+    private void writeUrlDigest( final URL url, final String digest )
+        throws IOException
+    {
+        final File urlFile = getUrlFile( url );
+        final File temp = createTempFile( urlFile );
+        final Writer writer = new OutputStreamWriter( new FileOutputStream( temp ), "UTF-8" );
+        try
+        {
+            writer.write( digest );
+            writer.write( '\n' );
+        }
+        finally
+        {
+            writer.close();
+        }
+        moveInPlace( temp, urlFile );
+    }
+
+    /**
+     * Creates a temporary file in the same directory as the target file so it can be renamed to target.
+     *
+     * @param target target file
+     *
+     * @return temporary file
+     *
+     * @throws IOException re-thrown
+     */
+    private static File createTempFile( final File target )
+        throws IOException
+    {
+        final File parent = target.getParentFile();
+        parent.mkdirs();
+        return File.createTempFile( target.getName(), ".tmp", parent );
+    }
+
+    /**
+     * Renames the temporary file to target. If the rename fails because target exists (another runner did the same in
+     * the meantime) the target is replaced.
+     *
+     * @param temp   temporary file
+     * @param target target file
+     *
+     * @throws IOException if temporary file could not be renamed
+     */
+    private static void moveInPlace( final File temp, final File target )
+        throws IOException
+    {
+        if( temp.renameTo( target ) )
+        {
+            return;
+        }
+        // renameTo does not replace existing files on all platforms
+        target.delete();
+        if( !temp.renameTo( target ) )
+        {
+            temp.delete();
+            throw new IOException( "Cannot rename " + temp + " to " + target );
+        }
+    }
+
+    /**
+     * Copies a file.
+     *
+     * @param source      source file
+     * @param destination destination file
+     *
+     * @throws IOException re-thrown
+     */
+    static void copy( final File source, final File destination )
+        throws IOException
+    {
+        final FileInputStream in = new FileInputStream( source );
+        try
+        {
+            final FileOutputStream out = new FileOutputStream( destination );
+            try
+            {
+                final FileChannel inChannel = in.getChannel();
+                final FileChannel outChannel = out.getChannel();
+                final long size = inChannel.size();
+                long position = 0;
+                while( position < size )
+                {
+                    position += inChannel.transferTo( position, size - position, outChannel );
+                }
+            }
+            finally
+            {
+                out.close();
+            }
+        }
+        finally
+        {
+            in.close();
+        }
+    }
+
+    /**
+     * Creates a hard or symbolic link by using java.nio.file.Files (if running on a jvm that supports it).
+     *
+     * @param method Files method to be used (createLink / createSymbolicLink)
+     * @param link   link to create
+     * @param target link target
+     *
+     * @return true if the link was created
+     */
+    private static boolean createLink( final String method, final File link, final File target )
+    {
+        try
+        {
+            final Class<?> filesClass = Class.forName( "java.nio.file.Files" );
+            final Class<?> pathClass = Class.forName( "java.nio.file.Path" );
+            final Method toPath = File.class.getMethod( "toPath" );
+            final Object linkPath = toPath.invoke( link );
+            final Object targetPath = toPath.invoke( target.getAbsoluteFile() );
+            if( "createLink".equals( method ) )
+            {
+                filesClass.getMethod( method, pathClass, pathClass ).invoke( null, linkPath, targetPath );
+            }
+            else
+            {
+                final Class<?> attributeClass = Class.forName( "java.nio.file.attribute.FileAttribute" );
+                filesClass.getMethod( method, pathClass, pathClass, Array.newInstance( attributeClass, 0 ).getClass() )
+                    .invoke( null, linkPath, targetPath, Array.newInstance( attributeClass, 0 ) );
+            }
+            return true;
+        }
+        catch( Exception e )
+        {
+            LOGGER.trace( "Cannot " + method + " " + link + " to " + target + " due to: " + e );
+            return false;
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String toString()
+    {
+        return "BundleStore{" + m_storeDir + "}";
+    }
+
+}
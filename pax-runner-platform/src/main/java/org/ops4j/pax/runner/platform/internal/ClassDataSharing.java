@@ -0,0 +1,235 @@
+/*
+ * Copyright 2026 OPS4J.
+ *
+ * Licensed  under the  Apache License,  Version 2.0  (the "License");
+ * you may not use  this file  except in  compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed  under the  License is distributed on an "AS IS" BASIS,
+ * WITHOUT  WARRANTIES OR CONDITIONS  OF ANY KIND, either  express  or
+ * implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.runner.platform.internal;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UnsupportedEncodingException;
+import java.security.MessageDigest;
+import java.util.Properties;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+/**
+ * Application class data sharing (AppCDS) for the framework jvm. The first start with a given classpath and jdk
+ * records a dynamic archive of the loaded classes when the framework jvm exits (-XX:ArchiveClassesAtExit) and the
+ * following starts map it (-XX:SharedArchiveFile), saving class loading and verification of the framework and boot
+ * classpath. Archives are kept in the cds directory of the working directory and are named after a fingerprint of
+ * the classpath (paths, sizes and modification times) and of the jdk release, so an archive is recorded again only
+ * when one of them changes. Dynamic archives require jdk 13 or newer; for older jdks nothing is added.
+ *
+ * @since 1.9.1, October 18, 2026
+ */
+class ClassDataSharing
+{
+
+    /**
+     * Logger.
+     */
+    private static final Log LOGGER = LogFactory.getLog( ClassDataSharing.class );
+    /**
+     * Directory of archives, relative to working directory.
+     */
+    static final String CDS_DIRECTORY = "cds";
+    /**
+     * Archive file extension.
+     */
+    private static final String ARCHIVE_EXTENSION = ".jsa";
+    /**
+     * First jdk version supporting dynamic archives.
+     */
+    private static final int MIN_JAVA_VERSION = 13;
+
+    /**
+     * Utility class. Ment to be used via static methods.
+     */
+    private ClassDataSharing()
+    {
+        // utility class
+    }
+
+    /**
+     * Returns the vm options to be used for class data sharing: the archive to be used if one was already recorded
+     * for the classpath and jdk, or the archive to be recorded otherwise.
+     *
+     * @param workDir   working directory
+     * @param classpath framework jvm classpath, relative to working directory or absolute
+     * @param javaHome  java home of framework jvm
+     *
+     * @return vm options; empty if the jdk does not support dynamic archives
+     */
+    static String[] getVMOptions( final File workDir, final String[] classpath, final String javaHome )
+    {
+        final Properties release = readRelease( javaHome );
+        if( release == null || getMajorVersion( release.getProperty( "JAVA_VERSION" ) ) < MIN_JAVA_VERSION )
+        {
+            LOGGER.warn( "Class data sharing requires java " + MIN_JAVA_VERSION + " or newer. Not used." );
+            return new String[0];
+        }
+        final File cdsDir = new File( workDir, CDS_DIRECTORY );
+        final File archive = new File( cdsDir, fingerprint( workDir, classpath, release ) + ARCHIVE_EXTENSION );
+        if( archive.isFile() )
+        {
+            LOGGER.debug( "Using class data sharing archive [" + archive + "]" );
+            return new String[]{ "-XX:SharedArchiveFile=" + archive.getAbsolutePath() };
+        }
+        // archives of other classpaths / jdks will not be used anymore
+        final File[] archives = cdsDir.listFiles();
+        if( archives != null )
+        {
+            for( File other : archives )
+            {
+                if( other.getName().endsWith( ARCHIVE_EXTENSION ) )
+                {
+                    other.delete();
+                }
+            }
+        }
+        cdsDir.mkdirs();
+        LOGGER.info( "Recording class data sharing archive on framework exit" );
+        return new String[]{ "-XX:ArchiveClassesAtExit=" + archive.getAbsolutePath() };
+    }
+
+    /**
+     * Reads the release file of a java home (for java 8 the java home can be the jre directory of a jdk).
+     *
+     * @param javaHome java home
+     *
+     * @return release properties or null if there is no release file
+     */
+    private static Properties readRelease( final String javaHome )
+    {
+        if( javaHome == null )
+        {
+            return null;
+        }
+        File file = new File( javaHome, "release" );
+        if( !file.isFile() )
+        {
+            file = new File( new File( javaHome ).getParentFile(), "release" );
+        }
+        if( !file.isFile() )
+        {
+            return null;
+        }
+        final Properties release = new Properties();
+        InputStream in = null;
+        try
+        {
+            in = new FileInputStream( file );
+            release.load( in );
+            return release;
+        }
+        catch( IOException e )
+        {
+            LOGGER.debug( "Cannot read " + file + " due to: " + e.getMessage() );
+            return null;
+        }
+        finally
+        {
+            if( in != null )
+            {
+                try
+                {
+                    in.close();
+                }
+                catch( IOException ignore )
+                {
+                    // just ignore
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the major version out of a java version as "1.8.0_292" or "17.0.2" (values in release file are quoted).
+     *
+     * @param version java version; can be null
+     *
+     * @return major version or 0 if version cannot be determined
+     */
+    static int getMajorVersion( final String version )
+    {
+        if( version == null )
+        {
+            return 0;
+        }
+        final String[] segments = version.replace( "\"", "" ).trim().split( "[^0-9]+" );
+        if( segments.length == 0 )
+        {
+            return 0;
+        }
+        try
+        {
+            final int major = Integer.parseInt( segments[ 0 ] );
+            if( major == 1 && segments.length > 1 )
+            {
+                return Integer.parseInt( segments[ 1 ] );
+            }
+            return major;
+        }
+        catch( NumberFormatException e )
+        {
+            return 0;
+        }
+    }
+
+    /**
+     * Creates a fingerprint of the classpath and jdk release.
+     *
+     * @param workDir   working directory, that relative classpath entries are relative to
+     * @param classpath classpath
+     * @param release   jdk release properties
+     *
+     * @return fingerprint
+     */
+    private static String fingerprint( final File workDir, final String[] classpath, final Properties release )
+    {
+        final MessageDigest digest = BundleStore.createMessageDigest( "SHA-256" );
+        update( digest, release.getProperty( "JAVA_VERSION" ) );
+        update( digest, release.getProperty( "IMPLEMENTOR" ) );
+        update( digest, release.getProperty( "JAVA_RUNTIME_VERSION" ) );
+        for( String entry : classpath )
+        {
+            File file = new File( entry );
+            if( !file.isAbsolute() )
+            {
+                file = new File( workDir, entry );
+            }
+            update( digest, entry + "|" + file.length() + "|" + file.lastModified() );
+        }
+        return BundleStore.toHex( digest.digest() );
+    }
+
+    private static void update( final MessageDigest digest, final String value )
+    {
+        try
+        {
+            digest.update( String.valueOf( value ).getBytes( "UTF-8" ) );
+            digest.update( (byte) 0 );
+        }
+        catch( UnsupportedEncodingException e )
+        {
+            // UTF-8 is always supported
+            throw new IllegalStateException( e );
+        }
+    }
+
+}
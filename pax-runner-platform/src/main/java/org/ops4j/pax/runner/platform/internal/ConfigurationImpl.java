@@ -26,6 +26,7 @@ import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.osgi.framework.Constants;
 import org.ops4j.lang.NullArgumentException;
+import org.ops4j.pax.runner.commons.metadata.MetadataCache;
 import org.ops4j.pax.runner.platform.Configuration;
 import org.ops4j.pax.runner.platform.ServiceConstants;
 import org.ops4j.util.property.PropertyResolver;
@@ -67,6 +68,18 @@ public class ConfigurationImpl
      * Default installed bundles start level.
      */
     private static final int DEFAULT_BUNDLE_START_LEVEL = 5;
+    /**
+     * Default number of download threads.
+     */
+    private static final int DEFAULT_DOWNLOAD_THREADS = 1;
+    /**
+     * Default number of download threads while prefetching.
+     */
+    private static final int DEFAULT_PREFETCH_DOWNLOAD_THREADS = 8;
+    /**
+     * Default bundle store directory, relative to user home.
+     */
+    private static final String DEFAULT_BUNDLE_STORE = ".pax/runner/store";
 
     /**
      * Property resolver. Cannot be null.
@@ -477,6 +490,64 @@ public class ConfigurationImpl
         return get( ServiceConstants.CONFIG_OVERWRITE_SYSTEM_BUNDLES );
     }
 
+    /**
+     * @see Configuration#getDownloadThreads()
+     */
+    public Integer getDownloadThreads()
+    {
+        if( !contains( ServiceConstants.CONFIG_DOWNLOAD_THREADS ) )
+        {
+            final String downloadThreads = m_propertyResolver.get( ServiceConstants.CONFIG_DOWNLOAD_THREADS );
+            Integer downloadThreadsAsInt = DEFAULT_DOWNLOAD_THREADS;
+            if( downloadThreads == null )
+            {
+                // nothing else runs while prefetching so more files are downloaded in parallel
+                if( isPrefetch() )
+                {
+                    downloadThreadsAsInt = DEFAULT_PREFETCH_DOWNLOAD_THREADS;
+                }
+            }
+            else
+            {
+                try
+                {
+                    downloadThreadsAsInt = Math.max( Integer.parseInt( downloadThreads ), 1 );
+                }
+                catch( NumberFormatException ignore )
+                {
+                    // ignore and use default value
+                }
+            }
+            return set( ServiceConstants.CONFIG_DOWNLOAD_THREADS, downloadThreadsAsInt );
+        }
+        return get( ServiceConstants.CONFIG_DOWNLOAD_THREADS );
+    }
+
+    /**
+     * @see Configuration#getBundleStore()
+     */
+    public String getBundleStore()
+    {
+        if( !contains( ServiceConstants.CONFIG_BUNDLE_STORE ) )
+        {
+            String bundleStore = m_propertyResolver.get( ServiceConstants.CONFIG_BUNDLE_STORE );
+            if( bundleStore != null )
+            {
+                bundleStore = bundleStore.trim();
+                if( bundleStore.length() == 0 || Boolean.FALSE.toString().equalsIgnoreCase( bundleStore ) )
+                {
+                    bundleStore = null;
+                }
+                else if( Boolean.TRUE.toString().equalsIgnoreCase( bundleStore ) )
+                {
+                    bundleStore = new File( System.getProperty( "user.home" ), DEFAULT_BUNDLE_STORE ).getPath();
+                }
+            }
+            return set( ServiceConstants.CONFIG_BUNDLE_STORE, bundleStore );
+        }
+        return get( ServiceConstants.CONFIG_BUNDLE_STORE );
+    }
+
     /**
      * @see Configuration#getBootDelegation()
      */
@@ -575,6 +646,113 @@ public class ConfigurationImpl
         return get( ServiceConstants.CONFIG_USE_ABSOLUTE_FILE_PATHS );
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    public Boolean pruneSystemPackages()
+    {
+        if( !contains( ServiceConstants.CONFIG_PRUNE_SYSTEM_PACKAGES ) )
+        {
+            return set( ServiceConstants.CONFIG_PRUNE_SYSTEM_PACKAGES,
+                        Boolean.valueOf( m_propertyResolver.get( ServiceConstants.CONFIG_PRUNE_SYSTEM_PACKAGES ) )
+            );
+        }
+        return get( ServiceConstants.CONFIG_PRUNE_SYSTEM_PACKAGES );
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public Boolean isSmartClean()
+    {
+        if( !contains( ServiceConstants.CONFIG_SMART_CLEAN ) )
+        {
+            return set( ServiceConstants.CONFIG_SMART_CLEAN,
+                        Boolean.valueOf( m_propertyResolver.get( ServiceConstants.CONFIG_SMART_CLEAN ) )
+            );
+        }
+        return get( ServiceConstants.CONFIG_SMART_CLEAN );
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public String getGoldenImage()
+    {
+        if( !contains( ServiceConstants.CONFIG_GOLDEN_IMAGE ) )
+        {
+            String goldenImage = m_propertyResolver.get( ServiceConstants.CONFIG_GOLDEN_IMAGE );
+            if( goldenImage != null && goldenImage.trim().length() == 0 )
+            {
+                goldenImage = null;
+            }
+            return set( ServiceConstants.CONFIG_GOLDEN_IMAGE, goldenImage );
+        }
+        return get( ServiceConstants.CONFIG_GOLDEN_IMAGE );
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public Boolean useClassDataSharing()
+    {
+        if( !contains( ServiceConstants.CONFIG_CLASS_DATA_SHARING ) )
+        {
+            return set( ServiceConstants.CONFIG_CLASS_DATA_SHARING,
+                        Boolean.valueOf( m_propertyResolver.get( ServiceConstants.CONFIG_CLASS_DATA_SHARING ) )
+            );
+        }
+        return get( ServiceConstants.CONFIG_CLASS_DATA_SHARING );
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public String getMetadataUpdatePolicy()
+    {
+        if( !contains( ServiceConstants.CONFIG_METADATA_UPDATE_POLICY ) )
+        {
+            String updatePolicy = m_propertyResolver.get( ServiceConstants.CONFIG_METADATA_UPDATE_POLICY );
+            if( updatePolicy == null || updatePolicy.trim().length() == 0 )
+            {
+                updatePolicy = MetadataCache.UPDATE_POLICY_DAILY;
+            }
+            return set( ServiceConstants.CONFIG_METADATA_UPDATE_POLICY, updatePolicy.trim() );
+        }
+        return get( ServiceConstants.CONFIG_METADATA_UPDATE_POLICY );
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public String getMirror()
+    {
+        if( !contains( ServiceConstants.CONFIG_MIRROR ) )
+        {
+            String mirror = m_propertyResolver.get( ServiceConstants.CONFIG_MIRROR );
+            if( mirror != null && mirror.trim().length() == 0 )
+            {
+                mirror = null;
+            }
+            return set( ServiceConstants.CONFIG_MIRROR, mirror );
+        }
+        return get( ServiceConstants.CONFIG_MIRROR );
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public Boolean isPrefetch()
+    {
+        if( !contains( ServiceConstants.CONFIG_PREFETCH ) )
+        {
+            return set( ServiceConstants.CONFIG_PREFETCH,
+                        Boolean.valueOf( m_propertyResolver.get( ServiceConstants.CONFIG_PREFETCH ) )
+            );
+        }
+        return get( ServiceConstants.CONFIG_PREFETCH );
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -0,0 +1,584 @@
+/*
+ * Copyright 2026 OPS4J.
+ *
+ * Licensed  under the  Apache License,  Version 2.0  (the "License");
+ * you may not use  this file  except in  compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed  under the  License is distributed on an "AS IS" BASIS,
+ * WITHOUT  WARRANTIES OR CONDITIONS  OF ANY KIND, either  express  or
+ * implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.runner.platform.internal;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URL;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.ops4j.lang.NullArgumentException;
+import org.ops4j.pax.runner.platform.PlatformException;
+
+/**
+ * Index of files downloaded into a working directory (bundles/downloaded_bundles.properties).
+ * The index is loaded once, updated in memory and written back (atomically) on flush. As entries are updated while
+ * downloading, the index gets also flushed after a number of updates so a failed provisioning does not loose all of
+ * them.
+ * For each url the index keeps the name of the local file (as key = url, so older versions can still read it) and
+ * metadata about the file, as key = url + "|" + attribute.
+ *
+ * @since 1.9.1, October 18, 2026
+ */
+class DownloadIndex
+{
+
+    /**
+     * Logger.
+     */
+    private static final Log LOGGER = LogFactory.getLog( DownloadIndex.class );
+    /**
+     * Name of the index file, relative to working directory.
+     */
+    static final String INDEX_FILE = "bundles/downloaded_bundles.properties";
+    /**
+     * Number of updates after which the index is written to disk.
+     */
+    private static final int FLUSH_BATCH = 32;
+    /**
+     * Separator between url and attribute name in index keys. Not a valid character in an url.
+     */
+    private static final String SEPARATOR = "|";
+    private static final String SIZE = "size";
+    private static final String LAST_MODIFIED = "lastModified";
+    private static final String SYMBOLIC_NAME = "symbolicName";
+    private static final String VERSION = "version";
+    private static final String NAME = "name";
+    private static final String VALID = "valid";
+    private static final String ETAG = "etag";
+    private static final String HTTP_LAST_MODIFIED = "httpLastModified";
+    private static final String CONTENT_LENGTH = "contentLength";
+    private static final String SHA256 = "sha256";
+    private static final String CHECKSUM = "checksum";
+
+    /**
+     * Index file. Cannot be null.
+     */
+    private final File m_file;
+    /**
+     * Entries by url external form. Cannot be null.
+     */
+    private final Map<String, Entry> m_entries;
+    /**
+     * Number of updates since last flush.
+     */
+    private int m_updates;
+
+    /**
+     * Creates a new, empty, index.
+     *
+     * @param file index file; mandatory
+     */
+    DownloadIndex( final File file )
+    {
+        NullArgumentException.validateNotNull( file, "Index file" );
+        m_file = file;
+        m_entries = new HashMap<String, Entry>();
+    }
+
+    /**
+     * Loads the index of a working directory.
+     *
+     * @param workDir working directory
+     *
+     * @return loaded index (empty if there is no index file or it cannot be read)
+     */
+    static DownloadIndex load( final File workDir )
+    {
+        final DownloadIndex index = new DownloadIndex( new File( workDir, INDEX_FILE ) );
+        final Properties properties = new Properties();
+        if( index.m_file.isFile() )
+        {
+            InputStream in = null;
+            try
+            {
+                in = new FileInputStream( index.m_file );
+                properties.load( in );
+            }
+            catch( IOException e )
+            {
+                LOGGER.warn( "Cannot read " + index.m_file + " due to: " + e.getMessage() );
+            }
+            finally
+            {
+                close( in );
+            }
+        }
+        for( Object name : properties.keySet() )
+        {
+            final String key = (String) name;
+            if( !key.contains( SEPARATOR ) )
+            {
+                final Entry entry = new Entry( properties.getProperty( key ) );
+                entry.setSize( getLong( properties, key + SEPARATOR + SIZE ) );
+                entry.setLastModified( getLong( properties, key + SEPARATOR + LAST_MODIFIED ) );
+                entry.setSymbolicName( properties.getProperty( key + SEPARATOR + SYMBOLIC_NAME ) );
+                entry.setVersion( properties.getProperty( key + SEPARATOR + VERSION ) );
+                entry.setName( properties.getProperty( key + SEPARATOR + NAME ) );
+                entry.setValid( getBoolean( properties, key + SEPARATOR + VALID ) );
+                entry.setETag( properties.getProperty( key + SEPARATOR + ETAG ) );
+                entry.setHttpLastModified( getLong( properties, key + SEPARATOR + HTTP_LAST_MODIFIED ) );
+                entry.setContentLength( getLong( properties, key + SEPARATOR + CONTENT_LENGTH ) );
+                entry.setSha256( properties.getProperty( key + SEPARATOR + SHA256 ) );
+                entry.setChecksum( properties.getProperty( key + SEPARATOR + CHECKSUM ) );
+                index.m_entries.put( key, entry );
+            }
+        }
+        LOGGER.debug( "Loaded [" + index.m_entries.size() + "] entries from " + index.m_file );
+        return index;
+    }
+
+    /**
+     * Returns the entry for an url.
+     *
+     * @param url downloaded url
+     *
+     * @return entry or null if url is not in the index
+     */
+    synchronized Entry get( final URL url )
+    {
+        return m_entries.get( url.toExternalForm() );
+    }
+
+    /**
+     * Returns the name of the file the url was downloaded to.
+     *
+     * @param url downloaded url
+     *
+     * @return file name or null if url is not in the index
+     */
+    synchronized String getFileName( final URL url )
+    {
+        final Entry entry = m_entries.get( url.toExternalForm() );
+        return entry == null ? null : entry.getFileName();
+    }
+
+    /**
+     * Adds or replaces the entry for an url.
+     *
+     * @param url   downloaded url
+     * @param entry entry
+     */
+    void put( final URL url, final Entry entry )
+    {
+        NullArgumentException.validateNotNull( url, "URL" );
+        NullArgumentException.validateNotNull( entry, "Entry" );
+        final boolean shouldFlush;
+        synchronized( this )
+        {
+            if( entry.equals( m_entries.get( url.toExternalForm() ) ) )
+            {
+                return;
+            }
+            m_entries.put( url.toExternalForm(), entry );
+            m_updates++;
+            shouldFlush = m_updates >= FLUSH_BATCH;
+        }
+        if( shouldFlush )
+        {
+            try
+            {
+                flush();
+            }
+            catch( PlatformException e )
+            {
+                LOGGER.warn( e.getMessage() );
+            }
+        }
+    }
+
+    /**
+     * Writes the index to disk if there were changes since it was loaded/last written.
+     * The index is written to a temporary file that replaces the index file.
+     *
+     * @throws PlatformException if index could not be written
+     */
+    synchronized void flush()
+        throws PlatformException
+    {
+        if( m_updates == 0 )
+        {
+            return;
+        }
+        final Properties properties = new Properties();
+        for( Map.Entry<String, Entry> mapEntry : m_entries.entrySet() )
+        {
+            final String key = mapEntry.getKey();
+            final Entry entry = mapEntry.getValue();
+            properties.setProperty( key, entry.getFileName() );
+            setProperty( properties, key + SEPARATOR + SIZE, entry.getSize() );
+            setProperty( properties, key + SEPARATOR + LAST_MODIFIED, entry.getLastModified() );
+            setProperty( properties, key + SEPARATOR + SYMBOLIC_NAME, entry.getSymbolicName() );
+            setProperty( properties, key + SEPARATOR + VERSION, entry.getVersion() );
+            setProperty( properties, key + SEPARATOR + NAME, entry.getName() );
+            setProperty( properties, key + SEPARATOR + VALID, entry.isValid() );
+            setProperty( properties, key + SEPARATOR + ETAG, entry.getETag() );
+            setProperty( properties, key + SEPARATOR + HTTP_LAST_MODIFIED, entry.getHttpLastModified() );
+            setProperty( properties, key + SEPARATOR + CONTENT_LENGTH, entry.getContentLength() );
+            setProperty( properties, key + SEPARATOR + SHA256, entry.getSha256() );
+            setProperty( properties, key + SEPARATOR + CHECKSUM, entry.getChecksum() );
+        }
+        OutputStream os = null;
+        File temp = null;
+        try
+        {
+            m_file.getParentFile().mkdirs();
+            temp = File.createTempFile( m_file.getName(), ".tmp", m_file.getParentFile() );
+            os = new FileOutputStream( temp );
+            properties.store( os, "" );
+            os.close();
+            os = null;
+            if( !temp.renameTo( m_file ) )
+            {
+                // renameTo does not replace existing files on all platforms
+                m_file.delete();
+                if( !temp.renameTo( m_file ) )
+                {
+                    throw new IOException( "Cannot rename " + temp + " to " + m_file );
+                }
+            }
+            temp = null;
+            m_updates = 0;
+        }
+        catch( IOException e )
+        {
+            throw new PlatformException( "Cannot store properties " + m_file, e );
+        }
+        finally
+        {
+            close( os );
+            if( temp != null )
+            {
+                temp.delete();
+            }
+        }
+    }
+
+    private static Long getLong( final Properties properties, final String key )
+    {
+        final String value = properties.getProperty( key );
+        if( value == null )
+        {
+            return null;
+        }
+        try
+        {
+            return Long.valueOf( value );
+        }
+        catch( NumberFormatException ignore )
+        {
+            return null;
+        }
+    }
+
+    private static Boolean getBoolean( final Properties properties, final String key )
+    {
+        final String value = properties.getProperty( key );
+        if( value == null )
+        {
+            return null;
+        }
+        return Boolean.valueOf( value );
+    }
+
+    private static void setProperty( final Properties properties, final String key, final Object value )
+    {
+        if( value != null )
+        {
+            properties.setProperty( key, value.toString() );
+        }
+    }
+
+    private static void close( final Closeable stream )
+    {
+        try
+        {
+            if( stream != null )
+            {
+                stream.close();
+            }
+        }
+        catch( IOException ignore )
+        {
+            // just ignore as this is less probably to happen.
+        }
+    }
+
+    /**
+     * An index entry. Describes a downloaded file.
+     */
+    static class Entry
+    {
+
+        /**
+         * Name of downloaded file, relative to bundles directory. Cannot be null.
+         */
+        private final String m_fileName;
+        private Long m_size;
+        private Long m_lastModified;
+        private String m_symbolicName;
+        private String m_version;
+        private String m_name;
+        /**
+         * True if the file is a valid bundle, false if not and null if not known.
+         */
+        private Boolean m_valid;
+        /**
+         * Validators sent by the http server the file was downloaded from. Null if not known.
+         */
+        private String m_eTag;
+        private Long m_httpLastModified;
+        private Long m_contentLength;
+        /**
+         * SHA-256 digest (hex encoded) of the file content, calculated while downloading. Null if not known.
+         */
+        private String m_sha256;
+        /**
+         * Kind of checksum published next to the url (sha256 / sha1), "none" if no checksum is published and null if
+         * not known. Used so following downloads of the url do not look up checksum files that do not exist.
+         */
+        private String m_checksum;
+
+        /**
+         * Creates a new entry.
+         *
+         * @param fileName name of downloaded file; mandatory
+         */
+        Entry( final String fileName )
+        {
+            NullArgumentException.validateNotNull( fileName, "File name" );
+            m_fileName = fileName;
+        }
+
+        String getFileName()
+        {
+            return m_fileName;
+        }
+
+        /**
+         * Creates a copy of this entry for a file with another name (e.g. renamed file).
+         *
+         * @param fileName name of the file; mandatory
+         *
+         * @return copy of entry
+         */
+        Entry copy( final String fileName )
+        {
+            final Entry copy = new Entry( fileName );
+            copy.m_size = m_size;
+            copy.m_lastModified = m_lastModified;
+            copy.m_symbolicName = m_symbolicName;
+            copy.m_version = m_version;
+            copy.m_name = m_name;
+            copy.m_valid = m_valid;
+            copy.m_eTag = m_eTag;
+            copy.m_httpLastModified = m_httpLastModified;
+            copy.m_contentLength = m_contentLength;
+            copy.m_sha256 = m_sha256;
+            copy.m_checksum = m_checksum;
+            return copy;
+        }
+
+        Long getSize()
+        {
+            return m_size;
+        }
+
+        void setSize( final Long size )
+        {
+            m_size = size;
+        }
+
+        Long getLastModified()
+        {
+            return m_lastModified;
+        }
+
+        void setLastModified( final Long lastModified )
+        {
+            m_lastModified = lastModified;
+        }
+
+        String getSymbolicName()
+        {
+            return m_symbolicName;
+        }
+
+        void setSymbolicName( final String symbolicName )
+        {
+            m_symbolicName = symbolicName;
+        }
+
+        String getVersion()
+        {
+            return m_version;
+        }
+
+        void setVersion( final String version )
+        {
+            m_version = version;
+        }
+
+        String getName()
+        {
+            return m_name;
+        }
+
+        void setName( final String name )
+        {
+            m_name = name;
+        }
+
+        Boolean isValid()
+        {
+            return m_valid;
+        }
+
+        void setValid( final Boolean valid )
+        {
+            m_valid = valid;
+        }
+
+        String getETag()
+        {
+            return m_eTag;
+        }
+
+        void setETag( final String eTag )
+        {
+            m_eTag = eTag;
+        }
+
+        Long getHttpLastModified()
+        {
+            return m_httpLastModified;
+        }
+
+        void setHttpLastModified( final Long httpLastModified )
+        {
+            m_httpLastModified = httpLastModified;
+        }
+
+        Long getContentLength()
+        {
+            return m_contentLength;
+        }
+
+        void setContentLength( final Long contentLength )
+        {
+            m_contentLength = contentLength;
+        }
+
+        String getSha256()
+        {
+            return m_sha256;
+        }
+
+        void setSha256( final String sha256 )
+        {
+            m_sha256 = sha256;
+        }
+
+        String getChecksum()
+        {
+            return m_checksum;
+        }
+
+        void setChecksum( final String checksum )
+        {
+            m_checksum = checksum;
+        }
+
+        /**
+         * Checks if the entry has any validator that can be used to ask the http server if the file changed.
+         *
+         * @return true if there is an etag or a last modified validator
+         */
+        boolean hasValidators()
+        {
+            return m_eTag != null || m_httpLastModified != null;
+        }
+
+        /**
+         * Checks if the entry describes the current state of a file, meaning that the file name, size and last
+         * modification time did not change since the entry was created.
+         *
+         * @param file file to check
+         *
+         * @return true if entry matches the file
+         */
+        boolean matches( final File file )
+        {
+            return m_valid != null
+                   && m_fileName.equals( file.getName() )
+                   && Long.valueOf( file.length() ).equals( m_size )
+                   && Long.valueOf( file.lastModified() ).equals( m_lastModified );
+        }
+
+        @Override
+        public boolean equals( final Object object )
+        {
+            if( this == object )
+            {
+                return true;
+            }
+            if( !( object instanceof Entry ) )
+            {
+                return false;
+            }
+            return toString().equals( object.toString() );
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return toString().hashCode();
+        }
+
+        @Override
+        public String toString()
+        {
+            return new StringBuilder()
+                .append( "{" )
+                .append( "fileName=" ).append( m_fileName )
+                .append( ",size=" ).append( m_size )
+                .append( ",lastModified=" ).append( m_lastModified )
+                .append( ",symbolicName=" ).append( m_symbolicName )
+                .append( ",version=" ).append( m_version )
+                .append( ",name=" ).append( m_name )
+                .append( ",valid=" ).append( m_valid )
+                .append( ",eTag=" ).append( m_eTag )
+                .append( ",httpLastModified=" ).append( m_httpLastModified )
+                .append( ",contentLength=" ).append( m_contentLength )
+                .append( ",sha256=" ).append( m_sha256 )
+                .append( ",checksum=" ).append( m_checksum )
+                .append( "}" )
+                .toString();
+        }
+
+    }
+
+}
@@ -0,0 +1,362 @@
+/*
+ * Copyright 2026 OPS4J.
+ *
+ * Licensed  under the  Apache License,  Version 2.0  (the "License");
+ * you may not use  this file  except in  compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed  under the  License is distributed on an "AS IS" BASIS,
+ * WITHOUT  WARRANTIES OR CONDITIONS  OF ANY KIND, either  express  or
+ * implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.runner.platform.internal;
+
+import java.io.File;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.ops4j.lang.NullArgumentException;
+import org.ops4j.pax.runner.platform.PlatformException;
+
+/**
+ * Registry of downloads done during one platform start, so each file is downloaded only once, even if it is referenced
+ * from more places (system files, platform bundles, user bundles).
+ * Downloads are keyed by the normalized url only: a download requested while the same url is already being
+ * downloaded waits for that download and gets the same result, so a file is never written by two downloads at the
+ * same time. Anything that depends on the requester (e.g. if an invalid bundle is an error) is decided by requesters
+ * out of the shared result. In addition, files with the same content (e.g. the same artifact
+ * referenced by different urls) are shared by their digest. Finished downloads are recorded, so they can be reported.
+ *
+ * @since 1.9.1, October 18, 2026
+ */
+class DownloadRegistry
+{
+
+    /**
+     * Logger.
+     */
+    private static final Log LOGGER = LogFactory.getLog( DownloadRegistry.class );
+
+    /**
+     * Downloads by key. Cannot be null.
+     */
+    private final ConcurrentMap<String, FutureTask<Download>> m_downloads;
+    /**
+     * Downloaded files by their content digest. Cannot be null.
+     */
+    private final Map<String, File> m_files;
+    /**
+     * Finished downloads, in the order they finished. Cannot be null.
+     */
+    private final List<Download> m_finished;
+
+    /**
+     * Creates a new, empty, registry.
+     */
+    DownloadRegistry()
+    {
+        m_downloads = new ConcurrentHashMap<String, FutureTask<Download>>();
+        m_files = new HashMap<String, File>();
+        m_finished = new ArrayList<Download>();
+    }
+
+    /**
+     * Downloads an url by calling the provided download, unless the same url was already downloaded (or is being
+     * downloaded) in which case the result of that download is returned. Successful downloads are recorded as
+     * finished.
+     *
+     * @param url      url to be downloaded
+     * @param download the actual download
+     *
+     * @return finished download (as returned by download)
+     *
+     * @throws PlatformException if the download failed
+     */
+    Download download( final URL url,
+                       final Callable<Download> download )
+        throws PlatformException
+    {
+        NullArgumentException.validateNotNull( url, "URL" );
+        NullArgumentException.validateNotNull( download, "Download" );
+        final FutureTask<Download> task = new FutureTask<Download>( download );
+        FutureTask<Download> existing = m_downloads.putIfAbsent( normalize( url ), task );
+        if( existing == null )
+        {
+            existing = task;
+            task.run();
+        }
+        else
+        {
+            LOGGER.debug( "[" + url + "] already downloaded" );
+        }
+        try
+        {
+            final Download finished = existing.get();
+            if( existing == task )
+            {
+                finished( finished );
+            }
+            return finished;
+        }
+        catch( InterruptedException e )
+        {
+            Thread.currentThread().interrupt();
+            throw new PlatformException( "Interrupted while downloading [" + url + "]", e );
+        }
+        catch( ExecutionException e )
+        {
+            final Throwable cause = e.getCause();
+            if( cause instanceof PlatformException )
+            {
+                throw (PlatformException) cause;
+            }
+            if( cause instanceof RuntimeException )
+            {
+                throw (RuntimeException) cause;
+            }
+            if( cause instanceof Error )
+            {
+                throw (Error) cause;
+            }
+            throw new PlatformException( "[" + url + "] could not be downloaded", cause );
+        }
+    }
+
+    /**
+     * Returns the file to be used for a downloaded file content. The first file with a digest is used for all files
+     * with the same digest.
+     *
+     * @param digest digest of file content; can be null, case when the file is not shared
+     * @param file   downloaded file
+     *
+     * @return the first file downloaded with the same digest or the file itself
+     */
+    synchronized File share( final String digest, final File file )
+    {
+        NullArgumentException.validateNotNull( file, "File" );
+        if( digest == null )
+        {
+            return file;
+        }
+        final File shared = m_files.get( digest );
+        if( shared == null || !shared.exists() )
+        {
+            m_files.put( digest, file );
+            return file;
+        }
+        return shared;
+    }
+
+    /**
+     * Records a finished download.
+     *
+     * @param download finished download
+     */
+    private synchronized void finished( final Download download )
+    {
+        NullArgumentException.validateNotNull( download, "Download" );
+        m_finished.add( download );
+    }
+
+    /**
+     * Returns the finished downloads.
+     *
+     * @return finished downloads, in the order they finished
+     */
+    synchronized List<Download> getFinished()
+    {
+        return new ArrayList<Download>( m_finished );
+    }
+
+    /**
+     * Normalizes an url so urls that point to the same resource are equal: scheme and host are lower case, default
+     * ports are removed and the path is normalized ("." and ".." segments). Urls that are not hierarchical (e.g.
+     * mvn:, wrap:) have only the scheme lower cased.
+     *
+     * @param url url to normalize
+     *
+     * @return normalized url
+     */
+    static String normalize( final URL url )
+    {
+        final String externalForm = url.toExternalForm().trim();
+        final URI uri;
+        try
+        {
+            uri = new URI( externalForm ).normalize();
+        }
+        catch( URISyntaxException ignore )
+        {
+            return externalForm;
+        }
+        if( uri.getScheme() == null )
+        {
+            return externalForm;
+        }
+        final String scheme = uri.getScheme().toLowerCase();
+        if( uri.isOpaque() )
+        {
+            final StringBuilder normalized = new StringBuilder()
+                .append( scheme ).append( ":" ).append( uri.getRawSchemeSpecificPart() );
+            if( uri.getRawFragment() != null )
+            {
+                normalized.append( "#" ).append( uri.getRawFragment() );
+            }
+            return normalized.toString();
+        }
+        final StringBuilder normalized = new StringBuilder().append( scheme ).append( ":" );
+        if( uri.getHost() != null )
+        {
+            normalized.append( "//" );
+            if( uri.getRawUserInfo() != null )
+            {
+                normalized.append( uri.getRawUserInfo() ).append( "@" );
+            }
+            normalized.append( uri.getHost().toLowerCase() );
+            final int port = uri.getPort();
+            if( port != -1
+                && !( port == 80 && "http".equals( scheme ) )
+                && !( port == 443 && "https".equals( scheme ) ) )
+            {
+                normalized.append( ":" ).append( port );
+            }
+        }
+        else if( uri.getRawAuthority() != null )
+        {
+            normalized.append( "//" ).append( uri.getRawAuthority() );
+        }
+        if( uri.getRawPath() != null )
+        {
+            normalized.append( uri.getRawPath() );
+        }
+        if( uri.getRawQuery() != null )
+        {
+            normalized.append( "?" ).append( uri.getRawQuery() );
+        }
+        if( uri.getRawFragment() != null )
+        {
+            normalized.append( "#" ).append( uri.getRawFragment() );
+        }
+        return normalized.toString();
+    }
+
+    /**
+     * A finished download.
+     */
+    static class Download
+    {
+
+        /**
+         * Downloaded url. Cannot be null.
+         */
+        private final URL m_url;
+        /**
+         * Downloaded file. Cannot be null.
+         */
+        private final File m_file;
+        /**
+         * True if the file is a valid bundle.
+         */
+        private final boolean m_valid;
+        /**
+         * SHA-256 digest of file content (hex encoded). Null if not known.
+         */
+        private final String m_sha256;
+        /**
+         * True if the file was not transferred (already downloaded, not modified or linked from bundle store).
+         */
+        private final boolean m_cacheHit;
+        /**
+         * True if the file was verified against the checksum published next to the url.
+         */
+        private final boolean m_verified;
+        /**
+         * Time spent on download, in milliseconds.
+         */
+        private final long m_millis;
+
+        /**
+         * Constructor.
+         *
+         * @param url      downloaded url
+         * @param file     downloaded file
+         * @param valid    true if the file is a valid bundle
+         * @param sha256   SHA-256 digest of file content; can be null
+         * @param cacheHit true if the file was not transferred
+         * @param verified true if the file was verified against the published checksum
+         * @param millis   time spent on download, in milliseconds
+         */
+        Download( final URL url,
+                  final File file,
+                  final boolean valid,
+                  final String sha256,
+                  final boolean cacheHit,
+                  final boolean verified,
+                  final long millis )
+        {
+            NullArgumentException.validateNotNull( url, "URL" );
+            NullArgumentException.validateNotNull( file, "File" );
+            m_url = url;
+            m_file = file;
+            m_valid = valid;
+            m_sha256 = sha256;
+            m_cacheHit = cacheHit;
+            m_verified = verified;
+            m_millis = millis;
+        }
+
+        URL getURL()
+        {
+            return m_url;
+        }
+
+        File getFile()
+        {
+            return m_file;
+        }
+
+        boolean isValid()
+        {
+            return m_valid;
+        }
+
+        String getSha256()
+        {
+            return m_sha256;
+        }
+
+        boolean isCacheHit()
+        {
+            return m_cacheHit;
+        }
+
+        boolean isVerified()
+        {
+            return m_verified;
+        }
+
+        long getMillis()
+        {
+            return m_millis;
+        }
+
+    }
+
+}
@@ -23,9 +23,12 @@ import org.ops4j.pax.runner.platform.PlatformException;
 import org.osgi.framework.Constants;
 
 import java.io.IOException;
+import java.io.InputStream;
 import java.net.MalformedURLException;
 import java.net.URL;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 /**
  * Abstraction of an execution environment.
@@ -44,6 +47,15 @@ class ExecutionEnvironment
      * relative location of ee packages root.
      */
     private static final String EE_FILES_ROOT = "META-INF/platform/ee/";
+    /**
+     * Mapping between capitalized name of built in execution environments and profile name.
+     */
+    private static final Map<String, String> EE_MAPPINGS = Collections.unmodifiableMap( createEEMappings() );
+    /**
+     * Resolved combinations of built in execution environments, as system packages and execution environments.
+     * Built in profiles do not change so they are resolved only once per jvm.
+     */
+    private static final ConcurrentMap<String, String[]> RESOLVED = new ConcurrentHashMap<String, String[]>();
     /**
      * Comma separated list of system packages.
      */
@@ -63,6 +75,37 @@ class ExecutionEnvironment
      */
     ExecutionEnvironment( final String ee )
         throws PlatformException
+    {
+        final String key = ee.toUpperCase();
+        String[] resolved = RESOLVED.get( key );
+        if( resolved != null )
+        {
+            LOGGER.info( "Using execution environment [" + ee + "]" );
+        }
+        else
+        {
+            resolved = resolve( ee );
+            if( isBuiltIn( ee ) )
+            {
+                RESOLVED.putIfAbsent( key, resolved );
+            }
+        }
+        m_systemPackages = resolved[ 0 ];
+        m_executionEnvironment = resolved[ 1 ];
+    }
+
+    /**
+     * Reads the profiles of the execution environments and combines them.
+     *
+     * @param ee comma separated list of execution environments names.
+     *
+     * @return an array of combined system packages and combined execution environments
+     *
+     * @throws PlatformException - If encountered during reading of profiles
+     *                           - If profile cannot be found or determined
+     */
+    private String[] resolve( final String ee )
+        throws PlatformException
     {
         // we make an union of the packages form each ee so let's have a unique set for it
         final Set<String> uniquePackages = new TreeSet<String>( );
@@ -73,7 +116,15 @@ class ExecutionEnvironment
             try
             {
                 final Properties profile = new Properties();
-                profile.load( discoverExecutionEnvironmentURL( segment ).openStream() );
+                final InputStream is = discoverExecutionEnvironmentURL( segment ).openStream();
+                try
+                {
+                    profile.load( is );
+                }
+                finally
+                {
+                    is.close();
+                }
 
                 final String systemPackagesProp = profile.getProperty( Constants.FRAMEWORK_SYSTEMPACKAGES, "" );
                 if( systemPackagesProp != null && systemPackagesProp.trim().length() > 0 )
@@ -92,8 +143,26 @@ class ExecutionEnvironment
                 throw new PlatformException( "Could not read execution environment profile", e );
             }
         }
-        m_systemPackages = join( uniquePackages, "," );
-        m_executionEnvironment = join( uniqueEE, "," );
+        return new String[]{ join( uniquePackages, "," ), join( uniqueEE, "," ) };
+    }
+
+    /**
+     * Checks if all execution environments are built in ones.
+     *
+     * @param ee comma separated list of execution environments names.
+     *
+     * @return true if all execution environments are built in
+     */
+    private static boolean isBuiltIn( final String ee )
+    {
+        for( String segment : ee.split( "," ) )
+        {
+            if( !EE_MAPPINGS.containsKey( segment.toUpperCase() ) )
+            {
+                return false;
+            }
+        }
+        return true;
     }
 
     /**
@@ -129,7 +198,7 @@ class ExecutionEnvironment
         throws PlatformException
     {
         URL url;
-        final String relativeFileName = getEEMAppings().get( ee.toUpperCase() );
+        final String relativeFileName = EE_MAPPINGS.get( ee.toUpperCase() );
         if( relativeFileName != null )
         {
             url = this.getClass().getClassLoader().getResource( EE_FILES_ROOT + relativeFileName );
@@ -159,7 +228,7 @@ class ExecutionEnvironment
      *
      * @return a map between capitalized name of built in execution environments and profile name.
      */
-    private static Map<String, String> getEEMAppings()
+    private static Map<String, String> createEEMappings()
     {
         final Map<String, String> mappings = new HashMap<String, String>();
 
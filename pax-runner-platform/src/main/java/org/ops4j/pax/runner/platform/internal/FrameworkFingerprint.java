@@ -0,0 +1,246 @@
+/*
+ * Copyright 2026 OPS4J.
+ *
+ * Licensed  under the  Apache License,  Version 2.0  (the "License");
+ * you may not use  this file  except in  compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed  under the  License is distributed on an "AS IS" BASIS,
+ * WITHOUT  WARRANTIES OR CONDITIONS  OF ANY KIND, either  express  or
+ * implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.runner.platform.internal;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.URL;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.ops4j.pax.runner.platform.BundleReference;
+import org.ops4j.pax.runner.platform.Configuration;
+import org.ops4j.pax.runner.platform.FilePathStrategy;
+import org.ops4j.pax.runner.platform.PlatformContext;
+
+/**
+ * Fingerprint of what a framework gets started with: framework, final list of bundles (with their start levels and
+ * local files), system packages, execution environment, framework properties and start levels. The fingerprint of
+ * the last start is kept in the working directory (framework.fingerprint), so the framework storage can be reused as
+ * long as the fingerprint does not change.
+ *
+ * @since 1.9.1, October 18, 2026
+ */
+class FrameworkFingerprint
+{
+
+    /**
+     * Logger.
+     */
+    private static final Log LOGGER = LogFactory.getLog( FrameworkFingerprint.class );
+    /**
+     * Name of the fingerprint file, relative to working directory.
+     */
+    static final String FINGERPRINT_FILE = "framework.fingerprint";
+    /**
+     * Name of the fingerprint property in fingerprint file.
+     */
+    private static final String FINGERPRINT = "fingerprint";
+
+    /**
+     * Fingerprint file. Cannot be null.
+     */
+    private final File m_file;
+    /**
+     * Fingerprint value. Cannot be null.
+     */
+    private final String m_value;
+
+    /**
+     * Constructor.
+     *
+     * @param file  fingerprint file
+     * @param value fingerprint value
+     */
+    FrameworkFingerprint( final File file, final String value )
+    {
+        m_file = file;
+        m_value = value;
+    }
+
+    /**
+     * Creates the fingerprint of a platform context.
+     *
+     * @param workDir   working directory
+     * @param context   platform context, with bundles, system packages and execution environment already set
+     * @param framework framework name and version
+     *
+     * @return fingerprint
+     */
+    static FrameworkFingerprint create( final File workDir,
+                                        final PlatformContext context,
+                                        final String framework )
+    {
+        final Configuration configuration = context.getConfiguration();
+        final MessageDigest digest = BundleStore.createMessageDigest( "SHA-256" );
+        update( digest, framework );
+        update( digest, configuration.getStartLevel() );
+        update( digest, configuration.getBundleStartLevel() );
+        update( digest, configuration.getFrameworkProfile() );
+        update( digest, configuration.getBootDelegation() );
+        update( digest, context.getSystemPackages() );
+        update( digest, context.getExecutionEnvironment() );
+        final Properties properties = context.getProperties();
+        if( properties != null )
+        {
+            final List<String> names = new ArrayList<String>();
+            for( Object name : properties.keySet() )
+            {
+                names.add( (String) name );
+            }
+            Collections.sort( names );
+            for( String name : names )
+            {
+                update( digest, name + "=" + properties.getProperty( name ) );
+            }
+        }
+        final List<BundleReference> bundles = context.getBundles();
+        if( bundles != null )
+        {
+            for( BundleReference bundle : bundles )
+            {
+                // urls as written to framework configuration, so a moved / cloned working directory still matches
+                update( digest, normalize( context, bundle.getURL() ) );
+                update( digest, bundle.getStartLevel() );
+                update( digest, bundle.shouldStart() );
+                update( digest, bundle.shouldUpdate() );
+                if( bundle instanceof LocalBundleReference )
+                {
+                    // same file name can have a different content (e.g. snapshots)
+                    final File file = ( (LocalBundleReference) bundle ).getFile();
+                    update( digest, file.length() + ":" + file.lastModified() );
+                }
+            }
+        }
+        return new FrameworkFingerprint( new File( workDir, FINGERPRINT_FILE ), BundleStore.toHex( digest.digest() ) );
+    }
+
+    /**
+     * Checks if the fingerprint is the same as the one saved by the last start.
+     *
+     * @return true if the same, false if different or there is no saved fingerprint
+     */
+    boolean isUnchanged()
+    {
+        if( !m_file.isFile() )
+        {
+            return false;
+        }
+        final Properties properties = new Properties();
+        InputStream in = null;
+        try
+        {
+            in = new FileInputStream( m_file );
+            properties.load( in );
+        }
+        catch( IOException e )
+        {
+            LOGGER.warn( "Cannot read " + m_file + " due to: " + e.getMessage() );
+            return false;
+        }
+        finally
+        {
+            close( in );
+        }
+        return m_value.equals( properties.getProperty( FINGERPRINT ) );
+    }
+
+    /**
+     * Saves the fingerprint, to be compared with on next start. Failures are only logged as the only consequence is
+     * that the framework storage is cleaned on next start.
+     */
+    void save()
+    {
+        final Properties properties = new Properties();
+        properties.setProperty( FINGERPRINT, m_value );
+        final File tmp = new File( m_file.getPath() + ".tmp" );
+        OutputStream out = null;
+        try
+        {
+            m_file.getParentFile().mkdirs();
+            out = new FileOutputStream( tmp );
+            properties.store( out, "Pax Runner framework fingerprint" );
+            out.close();
+            out = null;
+            m_file.delete();
+            if( !tmp.renameTo( m_file ) )
+            {
+                throw new IOException( "Cannot rename " + tmp + " to " + m_file );
+            }
+        }
+        catch( IOException e )
+        {
+            LOGGER.warn( "Cannot save " + m_file + " due to: " + e.getMessage() );
+        }
+        finally
+        {
+            close( out );
+            tmp.delete();
+        }
+    }
+
+    private static String normalize( final PlatformContext context, final URL url )
+    {
+        final FilePathStrategy filePathStrategy = context.getFilePathStrategy();
+        if( filePathStrategy == null )
+        {
+            return url.toExternalForm();
+        }
+        return filePathStrategy.normalizeAsUrl( url );
+    }
+
+    private static void update( final MessageDigest digest, final Object value )
+    {
+        try
+        {
+            digest.update( String.valueOf( value ).getBytes( "UTF-8" ) );
+            digest.update( (byte) 0 );
+        }
+        catch( UnsupportedEncodingException e )
+        {
+            // UTF-8 is always supported
+            throw new IllegalStateException( e );
+        }
+    }
+
+    private static void close( final Closeable closeable )
+    {
+        if( closeable != null )
+        {
+            try
+            {
+                closeable.close();
+            }
+            catch( IOException ignore )
+            {
+                // just ignore
+            }
+        }
+    }
+
+}
@@ -0,0 +1,270 @@
+/*
+ * Copyright 2026 OPS4J.
+ *
+ * Licensed  under the  Apache License,  Version 2.0  (the "License");
+ * you may not use  this file  except in  compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed  under the  License is distributed on an "AS IS" BASIS,
+ * WITHOUT  WARRANTIES OR CONDITIONS  OF ANY KIND, either  express  or
+ * implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.runner.platform.internal;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.nio.channels.FileChannel;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.ops4j.io.FileUtils;
+import org.ops4j.pax.runner.platform.PlatformException;
+
+/**
+ * Snapshot of a working directory (downloaded bundles, framework configuration and framework persisted state) that
+ * new working directories are cloned from. Downloaded bundles (bundles/*.jar) never change in place (they are
+ * replaced by renaming) so they are hard linked where the file system and jvm support it; everything else is copied,
+ * keeping last modification times so downloaded files and framework fingerprint are still recognized as up to date.
+ * An image is complete only when its marker file exists, as the marker is written last.
+ *
+ * @since 1.9.1, October 18, 2026
+ */
+class GoldenImage
+{
+
+    /**
+     * Logger.
+     */
+    private static final Log LOGGER = LogFactory.getLog( GoldenImage.class );
+    /**
+     * Marker file of a complete image, relative to image directory.
+     */
+    static final String MARKER_FILE = "golden.image";
+    /**
+     * Directory of downloaded bundles, relative to working directory.
+     */
+    private static final String BUNDLES_DIRECTORY = "bundles";
+
+    /**
+     * Image directory. Cannot be null.
+     */
+    private final File m_dir;
+    /**
+     * Files.createLink( Path, Path ) if running on a jvm that supports hard links, null otherwise.
+     */
+    private Method m_createLink;
+
+    /**
+     * Constructor.
+     *
+     * @param dir image directory
+     */
+    GoldenImage( final File dir )
+    {
+        m_dir = dir;
+        try
+        {
+            final Class<?> path = Class.forName( "java.nio.file.Path" );
+            m_createLink = Class.forName( "java.nio.file.Files" ).getMethod( "createLink", path, path );
+        }
+        catch( Exception ignore )
+        {
+            // hard links are not supported so files will be copied
+            m_createLink = null;
+        }
+    }
+
+    /**
+     * Checks if a complete image exists.
+     *
+     * @return true if the image exists
+     */
+    boolean exists()
+    {
+        return new File( m_dir, MARKER_FILE ).isFile();
+    }
+
+    /**
+     * Clones the image into a working directory.
+     *
+     * @param workDir working directory
+     *
+     * @throws PlatformException if the image cannot be cloned
+     */
+    void cloneTo( final File workDir )
+        throws PlatformException
+    {
+        LOGGER.info( "Creating working directory from golden image [" + m_dir + "]" );
+        try
+        {
+            copy( m_dir, workDir, true, false );
+            new File( workDir, MARKER_FILE ).delete();
+        }
+        catch( IOException e )
+        {
+            throw new PlatformException( "Could not clone golden image [" + m_dir + "]", e );
+        }
+    }
+
+    /**
+     * Captures a working directory as the image. The working directory is first copied to a temporary directory that
+     * is then renamed, so a partial image is never used. Failures are only logged as the image is an optimization.
+     *
+     * @param workDir working directory
+     */
+    void capture( final File workDir )
+    {
+        LOGGER.info( "Capturing working directory as golden image [" + m_dir + "]" );
+        final File tmp = new File( m_dir.getPath() + ".tmp" );
+        try
+        {
+            FileUtils.delete( tmp );
+            copy( workDir, tmp, true, false );
+            touch( new File( tmp, MARKER_FILE ) );
+            FileUtils.delete( m_dir );
+            if( !tmp.renameTo( m_dir ) )
+            {
+                throw new IOException( "Cannot rename " + tmp + " to " + m_dir );
+            }
+        }
+        catch( IOException e )
+        {
+            LOGGER.warn( "Cannot capture golden image due to: " + e.getMessage() );
+        }
+        finally
+        {
+            FileUtils.delete( tmp );
+        }
+    }
+
+    /**
+     * Copies a directory recursively, linking downloaded bundles when possible.
+     *
+     * @param source      source directory
+     * @param destination destination directory
+     * @param root        true if the source is the root of a working directory
+     * @param linkJars    true if jars should be linked when possible (downloaded bundles directory)
+     *
+     * @throws IOException if a file cannot be copied
+     */
+    private void copy( final File source, final File destination, final boolean root, final boolean linkJars )
+        throws IOException
+    {
+        final File[] files = source.listFiles();
+        if( files == null )
+        {
+            throw new IOException( "Cannot list " + source );
+        }
+        destination.mkdirs();
+        for( File file : files )
+        {
+            final File target = new File( destination, file.getName() );
+            if( isImage( file ) )
+            {
+                // image itself could be placed in working directory
+                LOGGER.debug( "Skipping golden image directory " + file );
+            }
+            else if( file.isDirectory() )
+            {
+                copy( file, target, false, root && BUNDLES_DIRECTORY.equals( file.getName() ) );
+            }
+            else if( file.getName().endsWith( ".part" ) || file.getName().endsWith( ".part.validator" ) )
+            {
+                // unfinished downloads are not part of the image
+                LOGGER.debug( "Skipping partial download " + file );
+            }
+            else if( !( linkJars && file.getName().endsWith( ".jar" ) && link( file, target ) ) )
+            {
+                copyFile( file, target );
+            }
+        }
+    }
+
+    /**
+     * Checks if a file is the image directory or the temporary directory used while capturing.
+     *
+     * @param file file to check
+     *
+     * @return true if the file is one of image directories
+     */
+    private boolean isImage( final File file )
+    {
+        final File absolute = file.getAbsoluteFile();
+        return absolute.equals( m_dir.getAbsoluteFile() )
+               || absolute.equals( new File( m_dir.getPath() + ".tmp" ).getAbsoluteFile() );
+    }
+
+    /**
+     * Creates a hard link.
+     *
+     * @param file   existing file
+     * @param target link to be created
+     *
+     * @return true if the link was created, false if hard links are not supported
+     */
+    private boolean link( final File file, final File target )
+    {
+        if( m_createLink == null )
+        {
+            return false;
+        }
+        try
+        {
+            target.delete();
+            final Method toPath = File.class.getMethod( "toPath" );
+            m_createLink.invoke( null, toPath.invoke( target ), toPath.invoke( file ) );
+            return true;
+        }
+        catch( Exception e )
+        {
+            // e.g. file system does not support links or different file systems
+            LOGGER.debug( "Cannot link " + file + " due to: " + e.getMessage() );
+            return false;
+        }
+    }
+
+    private static void copyFile( final File file, final File target )
+        throws IOException
+    {
+        FileChannel in = null;
+        FileChannel out = null;
+        try
+        {
+            in = new FileInputStream( file ).getChannel();
+            out = new FileOutputStream( target ).getChannel();
+            final long size = in.size();
+            long position = 0;
+            while( position < size )
+            {
+                position += in.transferTo( position, size - position, out );
+            }
+        }
+        finally
+        {
+            if( in != null )
+            {
+                in.close();
+            }
+            if( out != null )
+            {
+                out.close();
+            }
+        }
+        target.setLastModified( file.lastModified() );
+    }
+
+    private static void touch( final File file )
+        throws IOException
+    {
+        new FileOutputStream( file ).close();
+    }
+
+}
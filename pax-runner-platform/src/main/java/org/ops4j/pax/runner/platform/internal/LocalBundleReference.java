@@ -91,6 +91,16 @@ public class LocalBundleReference
         }
     }
 
+    /**
+     * Returns the local file.
+     *
+     * @return local file
+     */
+    File getFile()
+    {
+        return m_file;
+    }
+
     /**
      * {@inheritDoc}
      */
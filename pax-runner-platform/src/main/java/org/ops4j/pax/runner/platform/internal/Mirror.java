@@ -0,0 +1,434 @@
+/*
+ * Copyright 2026 OPS4J.
+ *
+ * Licensed  under the  Apache License,  Version 2.0  (the "License");
+ * you may not use  this file  except in  compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed  under the  License is distributed on an "AS IS" BASIS,
+ * WITHOUT  WARRANTIES OR CONDITIONS  OF ANY KIND, either  express  or
+ * implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.runner.platform.internal;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.TreeSet;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.ops4j.pax.runner.platform.BundleReference;
+import org.ops4j.pax.runner.platform.Configuration;
+import org.ops4j.pax.runner.platform.LocalSystemFile;
+import org.ops4j.pax.runner.platform.PlatformContext;
+import org.ops4j.pax.runner.platform.PlatformException;
+
+/**
+ * Offline mirror of a fully provisioned platform: all resolved files (system package, system files as handlers jars,
+ * platform bundles and user bundles) are copied to a local repository (repository directory) and a launch
+ * descriptor is written next to it, made out of a platform definition (platform.xml) that refers only the repository
+ * and a runner arguments file (runner.args) with the platform, its options, the framework properties and the user
+ * bundles. All urls are relative to the mirror directory, so the mirror can be moved to another host and started by
+ * running Pax Runner from the mirror directory (runner.args is read by default), without any network access.
+ *
+ * @since 1.9.1, October 18, 2026
+ */
+class Mirror
+{
+
+    /**
+     * Logger.
+     */
+    private static final Log LOGGER = LogFactory.getLog( Mirror.class );
+    /**
+     * Directory of mirrored files, relative to mirror directory.
+     */
+    static final String REPOSITORY_DIRECTORY = "repository";
+    /**
+     * Platform definition file, relative to mirror directory.
+     */
+    static final String DEFINITION_FILE = "platform.xml";
+    /**
+     * Runner arguments file, relative to mirror directory.
+     */
+    static final String ARGS_FILE = "runner.args";
+    /**
+     * Framework properties provisioning file, relative to mirror directory.
+     */
+    static final String PROPERTIES_FILE = "properties.txt";
+    /**
+     * Name of the profile that contains all platform bundles.
+     */
+    private static final String PROFILE = "mirror";
+
+    /**
+     * Mirror directory. Cannot be null.
+     */
+    private final File m_dir;
+    /**
+     * Mirrored files and their names in repository.
+     */
+    private final Map<File, String> m_mirrored;
+    /**
+     * Names used in repository.
+     */
+    private final Set<String> m_names;
+
+    /**
+     * Constructor.
+     *
+     * @param dir mirror directory
+     */
+    Mirror( final File dir )
+    {
+        m_dir = dir;
+        m_mirrored = new HashMap<File, String>();
+        m_names = new HashSet<String>();
+    }
+
+    /**
+     * Exports a provisioned platform.
+     *
+     * @param context         platform context, with working directory, configuration and properties set
+     * @param name            platform name (e.g. Felix 1.6.0)
+     * @param packages        platform definition packages
+     * @param profiles        comma separated list of profiles that platform bundles were selected by
+     * @param systemFile      downloaded system package
+     * @param systemFiles     downloaded system files
+     * @param platformBundles platform bundles
+     * @param userBundles     user bundles
+     *
+     * @throws PlatformException if the mirror cannot be written
+     */
+    void export( final PlatformContext context,
+                 final String name,
+                 final String packages,
+                 final String profiles,
+                 final File systemFile,
+                 final List<LocalSystemFile> systemFiles,
+                 final List<BundleReference> platformBundles,
+                 final List<BundleReference> userBundles )
+        throws PlatformException
+    {
+        LOGGER.info( "Exporting mirror to [" + m_dir + "]" );
+        try
+        {
+            new File( m_dir, REPOSITORY_DIRECTORY ).mkdirs();
+            writeDefinition( name, packages, profiles, systemFile, platformBundles );
+            final boolean hasProperties = writeProperties( context.getProperties() );
+            writeArgs( context.getConfiguration(), systemFiles, userBundles, hasProperties );
+        }
+        catch( IOException e )
+        {
+            throw new PlatformException( "Could not export mirror to [" + m_dir + "]", e );
+        }
+        LOGGER.info( "Mirror exported. Start it by running Pax Runner from [" + m_dir + "]" );
+    }
+
+    /**
+     * Writes the platform definition, with all platform bundles in one default profile. The other profiles (that
+     * could be asked for by platform builder) extend it, so the same bundles are used whatever the profiles.
+     *
+     * @param name            platform name
+     * @param packages        platform definition packages
+     * @param profiles        comma separated list of profiles that platform bundles were selected by
+     * @param systemFile      downloaded system package
+     * @param platformBundles platform bundles
+     *
+     * @throws IOException       if the definition cannot be written
+     * @throws PlatformException if a file cannot be mirrored
+     */
+    private void writeDefinition( final String name,
+                                  final String packages,
+                                  final String profiles,
+                                  final File systemFile,
+                                  final List<BundleReference> platformBundles )
+        throws IOException, PlatformException
+    {
+        final PrintWriter writer = createWriter( DEFINITION_FILE );
+        try
+        {
+            writer.println( "<platform>" );
+            writer.println();
+            writer.println( "  <name>" + escape( name ) + "</name>" );
+            writer.println( "  <system>" + escape( mirror( systemFile ) ) + "</system>" );
+            writer.println();
+            writer.println( "  <packages>" + escape( packages == null ? "" : packages.trim() ) + "</packages>" );
+            writer.println();
+            writer.println( "  <profile name=\"" + PROFILE + "\" default=\"true\">" );
+            for( BundleReference bundle : platformBundles )
+            {
+                writer.println( "    <bundle>" );
+                writer.println( "      <name>" + escape( bundle.getName() ) + "</name>" );
+                writer.println( "      <url>" + escape( mirror( bundle ) + getOptions( bundle ) ) + "</url>" );
+                writer.println( "    </bundle>" );
+            }
+            writer.println( "  </profile>" );
+            for( String profile : new TreeSet<String>( Arrays.asList( profiles.split( "," ) ) ) )
+            {
+                profile = profile.trim();
+                if( profile.length() > 0 && !PROFILE.equals( profile ) )
+                {
+                    writer.println( "  <profile name=\"" + escape( profile ) + "\" extends=\"" + PROFILE + "\"/>" );
+                }
+            }
+            writer.println();
+            writer.println( "</platform>" );
+        }
+        finally
+        {
+            writer.close();
+        }
+        if( writer.checkError() )
+        {
+            throw new IOException( "Cannot write " + DEFINITION_FILE );
+        }
+    }
+
+    /**
+     * Writes framework properties as a provisioning file, to be scanned by the file scanner.
+     *
+     * @param properties framework properties; can be null
+     *
+     * @return true if there are any properties
+     *
+     * @throws IOException if the file cannot be written
+     */
+    private boolean writeProperties( final Properties properties )
+        throws IOException
+    {
+        new File( m_dir, PROPERTIES_FILE ).delete();
+        if( properties == null || properties.isEmpty() )
+        {
+            return false;
+        }
+        final PrintWriter writer = createWriter( PROPERTIES_FILE );
+        try
+        {
+            final Set<String> names = new TreeSet<String>();
+            for( Object name : properties.keySet() )
+            {
+                names.add( (String) name );
+            }
+            for( String name : names )
+            {
+                writer.println( "-D" + name + "=" + properties.getProperty( name ) );
+            }
+        }
+        finally
+        {
+            writer.close();
+        }
+        if( writer.checkError() )
+        {
+            throw new IOException( "Cannot write " + PROPERTIES_FILE );
+        }
+        return true;
+    }
+
+    /**
+     * Writes the runner arguments: platform, platform options, system files and user bundles.
+     *
+     * @param configuration configuration of the mirrored start
+     * @param systemFiles   downloaded system files
+     * @param userBundles   user bundles
+     * @param hasProperties true if there is a framework properties file
+     *
+     * @throws IOException       if the file cannot be written
+     * @throws PlatformException if the platform cannot be determined or a file cannot be mirrored
+     */
+    private void writeArgs( final Configuration configuration,
+                            final List<LocalSystemFile> systemFiles,
+                            final List<BundleReference> userBundles,
+                            final boolean hasProperties )
+        throws IOException, PlatformException
+    {
+        // platform is selected by runner options (see Run), the same way as the runner does
+        final String platform = configuration.getProperty( "platform" );
+        String version = Boolean.parseBoolean( configuration.getProperty( "snapshot" ) )
+                         ? "SNAPSHOT"
+                         : configuration.getProperty( "version" );
+        if( version == null && platform != null )
+        {
+            version = configuration.getProperty( platform + ".version" );
+        }
+        if( platform == null || version == null )
+        {
+            throw new PlatformException( "Cannot determine platform and version to be mirrored" );
+        }
+        final PrintWriter writer = createWriter( ARGS_FILE );
+        try
+        {
+            writer.println( "# Pax Runner offline mirror. Start by running Pax Runner from this directory." );
+            writer.println( "--platform=" + platform );
+            writer.println( "--version=" + version );
+            writer.println( "--definitionURL=file:" + DEFINITION_FILE );
+            writeOption( writer, "profileStartLevel", configuration.getProfileStartLevel() );
+            writeOption( writer, "startLevel", configuration.getStartLevel() );
+            writeOption( writer, "bundleStartLevel", configuration.getBundleStartLevel() );
+            writeOption( writer, "frameworkProfile", configuration.getFrameworkProfile() );
+            writeOption( writer, "ee", configuration.getExecutionEnvironment() );
+            writeOption( writer, "systemPackages", configuration.getSystemPackages() );
+            writeOption( writer, "bootDelegation", configuration.getBootDelegation() );
+            writeOption( writer, "console", configuration.startConsole() );
+            final String[] vmOptions = configuration.getVMOptions();
+            if( vmOptions != null && vmOptions.length > 0 )
+            {
+                final StringBuilder joined = new StringBuilder();
+                for( String vmOption : vmOptions )
+                {
+                    joined.append( joined.length() > 0 ? " " : "" ).append( vmOption );
+                }
+                writeOption( writer, "vmOptions", joined );
+            }
+            writeOption( writer, "classpath", configuration.getClasspath() );
+            for( LocalSystemFile systemFile : systemFiles )
+            {
+                writeOption(
+                    writer,
+                    systemFile.getSystemFileReference().shouldPrepend() ? "bcp/p" : "bcp/a",
+                    mirror( systemFile.getFile() )
+                );
+            }
+            if( hasProperties )
+            {
+                writer.println( "scan-file:file:" + PROPERTIES_FILE );
+            }
+            for( BundleReference bundle : userBundles )
+            {
+                writer.println( "scan-bundle:" + mirror( bundle ) + getOptions( bundle ) );
+            }
+        }
+        finally
+        {
+            writer.close();
+        }
+        if( writer.checkError() )
+        {
+            throw new IOException( "Cannot write " + ARGS_FILE );
+        }
+    }
+
+    /**
+     * Returns the provisioning options of a bundle (start level, no start, update), in provisioning spec format.
+     *
+     * @param bundle bundle reference
+     *
+     * @return provisioning options; empty if there are no options
+     */
+    private static String getOptions( final BundleReference bundle )
+    {
+        final StringBuilder options = new StringBuilder();
+        if( bundle.getStartLevel() != null )
+        {
+            options.append( "@" ).append( bundle.getStartLevel() );
+        }
+        if( bundle.shouldStart() != null && !bundle.shouldStart() )
+        {
+            options.append( "@nostart" );
+        }
+        if( bundle.shouldUpdate() != null && bundle.shouldUpdate() )
+        {
+            options.append( "@update" );
+        }
+        return options.toString();
+    }
+
+    private static void writeOption( final PrintWriter writer, final String name, final Object value )
+    {
+        if( value != null && value.toString().trim().length() > 0 )
+        {
+            writer.println( "--" + name + "=" + value.toString().trim() );
+        }
+    }
+
+    /**
+     * Copies a bundle to repository.
+     *
+     * @param bundle bundle to be mirrored
+     *
+     * @return url of mirrored bundle, relative to mirror directory; bundles that are not local (e.g. reference:)
+     *         keep their url
+     *
+     * @throws PlatformException if the bundle cannot be copied
+     */
+    private String mirror( final BundleReference bundle )
+        throws PlatformException
+    {
+        if( bundle instanceof LocalBundleReference )
+        {
+            return mirror( ( (LocalBundleReference) bundle ).getFile() );
+        }
+        LOGGER.warn( "Bundle [" + bundle.getURL() + "] is not local and will not be part of the mirror" );
+        return bundle.getURL().toExternalForm();
+    }
+
+    /**
+     * Copies a file to repository, once, keeping its name unless already used by another file.
+     *
+     * @param file file to be mirrored
+     *
+     * @return url of mirrored file, relative to mirror directory
+     *
+     * @throws PlatformException if the file cannot be copied
+     */
+    private String mirror( final File file )
+        throws PlatformException
+    {
+        final File source = file.getAbsoluteFile();
+        String name = m_mirrored.get( source );
+        if( name == null )
+        {
+            name = source.getName();
+            for( int i = 1; m_names.contains( name ); i++ )
+            {
+                name = i + "-" + source.getName();
+            }
+            LOGGER.debug( "Mirroring [" + source + "] as [" + name + "]" );
+            try
+            {
+                BundleStore.copy( source, new File( new File( m_dir, REPOSITORY_DIRECTORY ), name ) );
+            }
+            catch( IOException e )
+            {
+                throw new PlatformException( "Cannot copy [" + source + "] to mirror", e );
+            }
+            m_mirrored.put( source, name );
+            m_names.add( name );
+        }
+        return "file:" + REPOSITORY_DIRECTORY + "/" + name;
+    }
+
+    private PrintWriter createWriter( final String fileName )
+        throws IOException
+    {
+        return new PrintWriter(
+            new OutputStreamWriter( new FileOutputStream( new File( m_dir, fileName ) ), "UTF-8" )
+        );
+    }
+
+    private static String escape( final String value )
+    {
+        if( value == null )
+        {
+            return "";
+        }
+        return value.replace( "&", "&amp;" ).replace( "<", "&lt;" ).replace( ">", "&gt;" ).replace( "\"", "&quot;" );
+    }
+
+}
@@ -36,6 +36,7 @@ public class PlatformContextImpl
     private Configuration m_configuration;
     private String m_executionEnvironment;
     private FilePathStrategy m_filePathStrategy;
+    private Boolean m_usePersistedState;
 
     /**
      * {@inheritDoc}
@@ -149,4 +150,24 @@ public class PlatformContextImpl
         m_filePathStrategy = filePathStrategy;
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    public void setUsePersistedState( final Boolean usePersistedState )
+    {
+        m_usePersistedState = usePersistedState;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public Boolean usePersistedState()
+    {
+        if( m_usePersistedState == null && m_configuration != null )
+        {
+            return m_configuration.usePersistedState();
+        }
+        return m_usePersistedState;
+    }
+
 }
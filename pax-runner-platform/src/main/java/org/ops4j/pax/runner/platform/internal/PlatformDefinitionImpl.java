@@ -24,22 +24,30 @@ import org.ops4j.pax.runner.platform.BundleReference;
 import org.ops4j.pax.runner.platform.BundleReferenceBean;
 import org.ops4j.pax.scanner.ProvisionSpec;
 import org.ops4j.pax.scanner.ServiceConstants;
-import org.ops4j.util.xml.XmlUtils;
-import org.w3c.dom.Document;
-import org.w3c.dom.Element;
+import org.xml.sax.Attributes;
 import org.xml.sax.SAXException;
+import org.xml.sax.helpers.DefaultHandler;
 
 import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.parsers.SAXParserFactory;
 import java.io.IOException;
 import java.io.InputStream;
+import java.net.MalformedURLException;
 import java.net.URL;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 /**
  * Implementation of platform definition that that reads definition form an xml.
+ * The xml is read as a stream (SAX), keeping only the name and parsed url of each bundle. Bundle references are
+ * created only for the profiles that are actually used.
  *
  * @author Alin Dreghiciu
  * @since August 25, 2007
@@ -69,13 +77,22 @@ public class PlatformDefinitionImpl
      */
     private final Map<String, String> m_profiles;
     /**
-     * Mapping between profile name and bundle refreneces.
+     * Mapping between profile name and bundles as read from xml.
      */
-    private final Map<String, List<BundleReference>> m_bundles;
+    private final Map<String, List<BundleSpec>> m_bundles;
+    /**
+     * The start level that platform bundles should be started.
+     */
+    private final Integer m_startLevel;
     /**
      * Name of the default profile.
      */
     private String m_defaultProfile;
+    /**
+     * Mapping between profile name and all bundles of the profile, including the ones of extended profiles. Computed
+     * on first use.
+     */
+    private final ConcurrentMap<String, List<BundleReference>> m_closures;
 
     /**
      * Creates a new platform definition by reading an xml from an output stream.
@@ -93,11 +110,13 @@ public class PlatformDefinitionImpl
     {
         NullArgumentException.validateNotNull( inputStream, "Input stream" );
         m_profiles = new HashMap<String, String>();
-        m_bundles = new HashMap<String, List<BundleReference>>();
+        m_bundles = new HashMap<String, List<BundleSpec>>();
+        m_closures = new ConcurrentHashMap<String, List<BundleReference>>();
+        m_startLevel = startLevel;
 
-        final Document doc = XmlUtils.parseDoc( inputStream );
-        m_systemPackageName = XmlUtils.getTextContentOfElement( doc, "name" );
-        final String systemPackage = XmlUtils.getTextContentOfElement( doc, "system" );
+        final DefinitionHandler handler = parse( inputStream, true );
+        m_systemPackageName = handler.m_name;
+        final String systemPackage = handler.m_system;
         if( systemPackage == null )
         {
             throw new IOException( "Invalid syntax: system bundle url not defined" );
@@ -107,12 +126,11 @@ public class PlatformDefinitionImpl
         {
             m_systemPackageName = systemPackage;
         }
-        m_packages = XmlUtils.getTextContentOfElement( doc, "packages" );
+        m_packages = handler.m_packages;
         if( m_packages != null )
         {
             m_packages = m_packages.replace( " ", "" ).replace( "\n", "" );
         }
-        extractProfiles( doc, startLevel );
         if( m_profiles.size() == 0 )
         {
             throw new IOException( "Invalid syntax: there should be at least one profile" );
@@ -120,114 +138,156 @@ public class PlatformDefinitionImpl
     }
 
     /**
-     * Extracts profiles out of a parsed xml document.
+     * Parses a definition xml, adding the profiles to this definition. Included profiles (profileRef) are parsed after
+     * the profiles of the definition itself, so the first profile with a given name wins.
      *
-     * @param profileStartLevel default start level for bundles
-     * @param doc        parsed xml document
+     * @param inputStream an xml input stream
+     * @param main        true if this is the main definition (not an included one)
      *
-     * @throws java.io.IOException      re-thrown while parsing the input stream as xml or invalid syntax
-     * @throws javax.xml.parsers.ParserConfigurationException
-     *                                  re-thrown while parsing the input stream as xml
-     * @throws org.xml.sax.SAXException re-thrown while parsing the input stream as xml
+     * @return handler used for parsing
+     *
+     * @throws IOException                  re-thrown while parsing the input stream as xml or invalid syntax
+     * @throws ParserConfigurationException re-thrown while parsing the input stream as xml
+     * @throws SAXException                 re-thrown while parsing the input stream as xml
      */
-    private void extractProfiles( final Document doc, Integer profileStartLevel)
+    private DefinitionHandler parse( final InputStream inputStream, final boolean main )
         throws IOException, ParserConfigurationException, SAXException
     {
-        final List<Element> profiles = XmlUtils.getElements( doc, "profile" );
-        if( profiles != null )
+        final DefinitionHandler handler = new DefinitionHandler( main );
+        try
+        {
+            SAXParserFactory.newInstance().newSAXParser().parse( inputStream, handler );
+        }
+        catch( SAXException e )
         {
-            for( Element profile : profiles )
+            // syntax errors are reported as io exceptions
+            if( e.getException() instanceof IOException )
             {
-                final String profileName = profile.getAttribute( "name" );
-                // if profile already exist first one wins
-                if( !m_profiles.containsKey( profileName ) )
+                throw (IOException) e.getException();
+            }
+            throw e;
+        }
+        // parse included profiles
+        for( String href : handler.m_profileRefs )
+        {
+            InputStream is = null;
+            try
+            {
+                is = new URL( href ).openStream();
+                parse( is, false );
+            }
+            finally
+            {
+                if( is != null )
                 {
-                    final Boolean profileDefault = Boolean.valueOf( profile.getAttribute( "default" ) );
-                    String profileExtends = profile.getAttribute( "extends" );
-                    if( profileExtends != null && profileExtends.trim().length() == 0 )
-                    {
-                        profileExtends = null;
-                    }
-                    if( profileName == null )
-                    {
-                        throw new IOException( "Invalid syntax: all profiles must have a name" );
-                    }
-                    // if there is no other default profile first one is the default one
-                    if( m_defaultProfile == null || profileDefault )
-                    {
-                        m_defaultProfile = profileName;
-                    }
-                    m_profiles.put( profileName, profileExtends );
-                    m_bundles.put( profileName, new ArrayList<BundleReference>() );
-                    final List<Element> bundles = XmlUtils.getElements( profile, "bundle" );
-                    if( bundles != null )
-                    {
-                        for( Element bundle : bundles )
-                        {
-                            String name = XmlUtils.getTextContentOfElement( bundle, "name" );
-                            final String urlSpec = XmlUtils.getTextContentOfElement( bundle, "url" );
-                            if( urlSpec == null )
-                            {
-                                throw new IOException(
-                                    "Invalid syntax: bundle url not defined in profile " + profileName
-                                );
-                            }
-                            ProvisionSpec provisionSpec = new ProvisionSpec(urlSpec);
-                            // TODO: optimize it somehow
-                            final URL bundleURL = new URL(provisionSpec.getScheme()
-                                    + ServiceConstants.SEPARATOR_SCHEME
-                                    + provisionSpec.getPath());
-                            if( name == null )
-                            {
-                                name = bundleURL.toExternalForm();
-                            }
-                            Integer startLevel = provisionSpec.getStartLevel();
-                            if (startLevel == null)
-                            {
-                                startLevel = profileStartLevel;
-                            }
-                            Boolean shouldStart = provisionSpec.shouldStart();
-                            if (shouldStart == null)
-                            {
-                                shouldStart = Boolean.TRUE;
-                            }
-                            Boolean shouldUpdate = provisionSpec.shouldUpdate();
-                            if (shouldUpdate == null) {
-                                shouldUpdate = Boolean.FALSE;
-                            }
-                            m_bundles.get( profileName )
-                                .add( new BundleReferenceBean( name, bundleURL, startLevel, shouldStart, shouldUpdate ) );
-                        }
-                    }
+                    is.close();
                 }
             }
         }
-        // parse included profiles
-        final List<Element> profileRefs = XmlUtils.getElements( doc, "profileRef" );
-        if( profileRefs != null )
+        return handler;
+    }
+
+    /**
+     * Adds a profile as read from xml. If profile already exist first one wins.
+     *
+     * @param profileName    profile name
+     * @param profileExtends extended profiles; can be null
+     * @param profileDefault true if the profile is marked as default
+     * @param bundles        profile bundles
+     */
+    private void addProfile( final String profileName,
+                             final String profileExtends,
+                             final boolean profileDefault,
+                             final List<BundleSpec> bundles )
+    {
+        if( !m_profiles.containsKey( profileName ) )
         {
-            for( Element profileRef : profileRefs )
+            // if there is no other default profile first one is the default one
+            if( m_defaultProfile == null || profileDefault )
             {
-                final String href = profileRef.getAttribute( "href" );
-                if( href == null )
+                m_defaultProfile = profileName;
+            }
+            m_profiles.put( profileName, profileExtends );
+            m_bundles.put( profileName, bundles );
+        }
+    }
+
+    /**
+     * Parses the url spec of a bundle.
+     *
+     * @param name        bundle name; can be null
+     * @param urlSpec     bundle url spec (url and provisioning options)
+     * @param profileName name of the profile the bundle belongs to
+     *
+     * @return parsed bundle
+     *
+     * @throws MalformedURLException if the url spec is not a valid url
+     */
+    private static BundleSpec createBundleSpec( final String name,
+                                                final String urlSpec,
+                                                final String profileName )
+        throws MalformedURLException
+    {
+        try
+        {
+            final ProvisionSpec provisionSpec = new ProvisionSpec( urlSpec );
+            // TODO: optimize it somehow
+            final URL bundleURL = new URL( provisionSpec.getScheme()
+                                           + ServiceConstants.SEPARATOR_SCHEME
+                                           + provisionSpec.getPath() );
+            return new BundleSpec( name, bundleURL, provisionSpec );
+        }
+        catch( MalformedURLException e )
+        {
+            final MalformedURLException invalid = new MalformedURLException(
+                "Invalid bundle url [" + urlSpec + "] in profile " + profileName
+            );
+            invalid.initCause( e );
+            throw invalid;
+        }
+    }
+
+    /**
+     * Creates the bundle references of a profile.
+     *
+     * @param profileName profile name
+     *
+     * @return list of bundle references
+     */
+    private List<BundleReference> createBundleReferences( final String profileName )
+    {
+        final List<BundleReference> references = new ArrayList<BundleReference>();
+        final List<BundleSpec> bundles = m_bundles.get( profileName );
+        if( bundles != null )
+        {
+            for( BundleSpec bundle : bundles )
+            {
+                String name = bundle.m_name;
+                if( name == null )
                 {
-                    throw new IOException( "Invalid syntax: all profileRefs must have an href attribute" );
+                    name = bundle.m_url.toExternalForm();
                 }
-                InputStream is = null;
-                try
+                Integer startLevel = bundle.m_provisionSpec.getStartLevel();
+                if( startLevel == null )
+                {
+                    startLevel = m_startLevel;
+                }
+                Boolean shouldStart = bundle.m_provisionSpec.shouldStart();
+                if( shouldStart == null )
                 {
-                    is = new URL( href ).openStream();
-                    extractProfiles( XmlUtils.parseDoc( new URL( href ).openStream() ), profileStartLevel);
+                    shouldStart = Boolean.TRUE;
                 }
-                finally
+                Boolean shouldUpdate = bundle.m_provisionSpec.shouldUpdate();
+                if( shouldUpdate == null )
                 {
-                    if( is != null )
-                    {
-                        is.close();
-                    }
+                    shouldUpdate = Boolean.FALSE;
                 }
+                references.add(
+                    new BundleReferenceBean( name, bundle.m_url, startLevel, shouldStart, shouldUpdate )
+                );
             }
         }
+        return references;
     }
 
     /**
@@ -259,11 +319,25 @@ public class PlatformDefinitionImpl
      */
     public List<BundleReference> getPlatformBundles( final String profiles )
     {
-        List<BundleReference> bundles = null;
+        return getPlatformBundles( profiles, new HashSet<String>() );
+    }
+
+    /**
+     * Returns the bundles of a comma separated list of profiles, without duplicates.
+     *
+     * @param profiles  comma separated list of profiles
+     * @param resolving profiles that are being resolved (used to break cyclic extends)
+     *
+     * @return list of bundles or null if none of the profiles is valid
+     */
+    private List<BundleReference> getPlatformBundles( final String profiles, final Set<String> resolving )
+    {
         if( profiles == null || profiles.trim().length() == 0 )
         {
-            return getPlatformBundles( m_defaultProfile );
+            return getPlatformBundles( m_defaultProfile, resolving );
         }
+        List<BundleReference> bundles = null;
+        final Set<String> urls = new HashSet<String>();
         final String[] segments = profiles.split( "," );
         for( String segment : segments )
         {
@@ -273,34 +347,7 @@ public class PlatformDefinitionImpl
                 {
                     bundles = new ArrayList<BundleReference>();
                 }
-                final String extended = m_profiles.get( segment );
-                if( extended != null )
-                {
-                    final List<BundleReference> references = getPlatformBundles( extended );
-                    // eliminate duplicates
-                    if( references != null && references.size() > 0 )
-                    {
-                        for( BundleReference reference : references )
-                        {
-                            if( !bundles.contains( reference ) )
-                            {
-                                bundles.add( reference );
-                            }
-                        }
-                    }
-                }
-                final List<BundleReference> references = m_bundles.get( segment );
-                // eliminate duplicates
-                if( references != null && references.size() > 0 )
-                {
-                    for( BundleReference reference : references )
-                    {
-                        if( !bundles.contains( reference ) )
-                        {
-                            bundles.add( reference );
-                        }
-                    }
-                }
+                addUnique( bundles, urls, getProfileBundles( segment, resolving ) );
             }
             else
             {
@@ -311,9 +358,283 @@ public class PlatformDefinitionImpl
         // if no success with profiles and this was not a call for default profile then look at default profile
         if( bundles == null && !m_defaultProfile.equals( profiles ) )
         {
-            bundles = getPlatformBundles( m_defaultProfile );
+            bundles = getPlatformBundles( m_defaultProfile, resolving );
         }
         return bundles;
     }
 
+    /**
+     * Returns all bundles of a profile, including the ones of the extended profiles.
+     *
+     * @param profile   profile name
+     * @param resolving profiles that are being resolved (used to break cyclic extends)
+     *
+     * @return list of bundles
+     */
+    private List<BundleReference> getProfileBundles( final String profile, final Set<String> resolving )
+    {
+        List<BundleReference> closure = m_closures.get( profile );
+        if( closure != null )
+        {
+            return closure;
+        }
+        if( !resolving.add( profile ) )
+        {
+            LOGGER.warn( "Profile [" + profile + "] extends itself. Skipping." );
+            return Collections.emptyList();
+        }
+        try
+        {
+            final List<BundleReference> bundles = new ArrayList<BundleReference>();
+            final Set<String> urls = new HashSet<String>();
+            final String extended = m_profiles.get( profile );
+            if( extended != null )
+            {
+                addUnique( bundles, urls, getPlatformBundles( extended, resolving ) );
+            }
+            addUnique( bundles, urls, createBundleReferences( profile ) );
+            closure = Collections.unmodifiableList( bundles );
+        }
+        finally
+        {
+            resolving.remove( profile );
+        }
+        // profiles resolved while resolving other profiles could miss bundles of a cyclic extends, so only the
+        // outermost profile is remembered
+        if( resolving.isEmpty() )
+        {
+            m_closures.putIfAbsent( profile, closure );
+        }
+        return closure;
+    }
+
+    /**
+     * Adds references that are not already added. References are compared by url.
+     *
+     * @param bundles    list to add to
+     * @param urls       urls of references already added to the list
+     * @param references references to add; can be null
+     */
+    private static void addUnique( final List<BundleReference> bundles,
+                                   final Set<String> urls,
+                                   final List<BundleReference> references )
+    {
+        if( references != null )
+        {
+            for( BundleReference reference : references )
+            {
+                if( urls.add( reference.getURL().toExternalForm() ) )
+                {
+                    bundles.add( reference );
+                }
+            }
+        }
+    }
+
+    /**
+     * A bundle as read from xml.
+     */
+    private static class BundleSpec
+    {
+
+        /**
+         * Bundle name. Null if not defined.
+         */
+        private final String m_name;
+        /**
+         * Bundle url, without provisioning options.
+         */
+        private final URL m_url;
+        /**
+         * Parsed url spec, holding the provisioning options.
+         */
+        private final ProvisionSpec m_provisionSpec;
+
+        BundleSpec( final String name, final URL url, final ProvisionSpec provisionSpec )
+        {
+            m_name = name;
+            m_url = url;
+            m_provisionSpec = provisionSpec;
+        }
+
+    }
+
+    /**
+     * SAX handler that reads the definition elements: platform name, system package, packages, profiles with their
+     * bundles and references to included profiles.
+     */
+    private class DefinitionHandler
+        extends DefaultHandler
+    {
+
+        /**
+         * True if this is the main definition. Only main definition platform name, system and packages are used.
+         */
+        private final boolean m_main;
+        /**
+         * Path of currently open elements.
+         */
+        private final List<String> m_path;
+        /**
+         * Text content of current element.
+         */
+        private final StringBuilder m_text;
+        /**
+         * Included profiles urls.
+         */
+        private final List<String> m_profileRefs;
+        /**
+         * Platform name. Null if not defined.
+         */
+        private String m_name;
+        /**
+         * System package url. Null if not defined.
+         */
+        private String m_system;
+        /**
+         * Packages. Null if not defined.
+         */
+        private String m_packages;
+        /**
+         * Current profile name.
+         */
+        private String m_profileName;
+        /**
+         * Current profile extends.
+         */
+        private String m_profileExtends;
+        /**
+         * If current profile is marked as default.
+         */
+        private boolean m_profileDefault;
+        /**
+         * Current profile bundles.
+         */
+        private List<BundleSpec> m_profileBundles;
+        /**
+         * Current bundle name.
+         */
+        private String m_bundleName;
+        /**
+         * Current bundle url.
+         */
+        private String m_bundleUrl;
+
+        DefinitionHandler( final boolean main )
+        {
+            m_main = main;
+            m_path = new ArrayList<String>();
+            m_text = new StringBuilder();
+            m_profileRefs = new ArrayList<String>();
+        }
+
+        @Override
+        public void startElement( final String uri,
+                                  final String localName,
+                                  final String qName,
+                                  final Attributes attributes )
+            throws SAXException
+        {
+            m_path.add( qName );
+            m_text.setLength( 0 );
+            final int depth = m_path.size();
+            if( depth == 2 && "profile".equals( qName ) )
+            {
+                m_profileName = attributes.getValue( "name" );
+                if( m_profileName == null )
+                {
+                    throw new SAXException( new IOException( "Invalid syntax: all profiles must have a name" ) );
+                }
+                m_profileDefault = Boolean.valueOf( attributes.getValue( "default" ) );
+                m_profileExtends = attributes.getValue( "extends" );
+                if( m_profileExtends != null && m_profileExtends.trim().length() == 0 )
+                {
+                    m_profileExtends = null;
+                }
+                m_profileBundles = new ArrayList<BundleSpec>();
+            }
+            else if( depth == 2 && "profileRef".equals( qName ) )
+            {
+                final String href = attributes.getValue( "href" );
+                if( href == null )
+                {
+                    throw new SAXException(
+                        new IOException( "Invalid syntax: all profileRefs must have an href attribute" )
+                    );
+                }
+                m_profileRefs.add( href );
+            }
+            else if( depth == 3 && "bundle".equals( qName ) && m_profileBundles != null )
+            {
+                m_bundleName = null;
+                m_bundleUrl = null;
+            }
+        }
+
+        @Override
+        public void characters( final char[] ch, final int start, final int length )
+        {
+            m_text.append( ch, start, length );
+        }
+
+        @Override
+        public void endElement( final String uri, final String localName, final String qName )
+            throws SAXException
+        {
+            final int depth = m_path.size();
+            final String text = m_text.toString().trim();
+            m_text.setLength( 0 );
+            if( depth == 2 )
+            {
+                if( m_main && "name".equals( qName ) )
+                {
+                    m_name = text;
+                }
+                else if( m_main && "system".equals( qName ) )
+                {
+                    m_system = text;
+                }
+                else if( m_main && "packages".equals( qName ) )
+                {
+                    m_packages = text;
+                }
+                else if( "profile".equals( qName ) )
+                {
+                    addProfile( m_profileName, m_profileExtends, m_profileDefault, m_profileBundles );
+                    m_profileBundles = null;
+                }
+            }
+            else if( depth == 3 && "bundle".equals( qName ) && m_profileBundles != null )
+            {
+                if( m_bundleUrl == null )
+                {
+                    throw new SAXException(
+                        new IOException( "Invalid syntax: bundle url not defined in profile " + m_profileName )
+                    );
+                }
+                try
+                {
+                    m_profileBundles.add( createBundleSpec( m_bundleName, m_bundleUrl, m_profileName ) );
+                }
+                catch( MalformedURLException e )
+                {
+                    throw new SAXException( e );
+                }
+            }
+            else if( depth == 4 && m_profileBundles != null && "bundle".equals( m_path.get( 2 ) ) )
+            {
+                if( "name".equals( qName ) )
+                {
+                    m_bundleName = text;
+                }
+                else if( "url".equals( qName ) )
+                {
+                    m_bundleUrl = text;
+                }
+            }
+            m_path.remove( depth - 1 );
+        }
+
+    }
+
 }
@@ -28,10 +28,21 @@ import org.xml.sax.SAXException;
 
 import javax.xml.parsers.ParserConfigurationException;
 import java.io.*;
+import java.net.HttpURLConnection;
 import java.net.MalformedURLException;
 import java.net.URL;
+import java.net.URLConnection;
 import java.nio.channels.FileChannel;
+import java.security.MessageDigest;
 import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.jar.Attributes;
 import java.util.jar.JarFile;
 import java.util.jar.Manifest;
 
@@ -51,6 +62,12 @@ public class PlatformImpl
      * Logger.
      */
     private static final Log LOGGER = LogFactory.getLog( PlatformImpl.class );
+    /**
+     * Kinds of checksums published next to downloaded urls, as recorded in download index.
+     */
+    private static final String SHA256 = "sha256";
+    private static final String SHA1 = "sha1";
+    private static final String NO_CHECKSUM = "none";
     /**
      * Concrete platform builder as equinox, felix, kf.
      */
@@ -59,6 +76,10 @@ public class PlatformImpl
      * PropertyResolver to be used.Injected to allow a Managed Service implementation.
      */
     private PropertyResolver m_propertyResolver;
+    /**
+     * Guards renaming of downloaded files to their caching name, as bundles can be downloaded in parallel.
+     */
+    private final Object m_renameLock = new Object();
 
     /**
      * Creates a new platform.
@@ -108,15 +129,19 @@ public class PlatformImpl
         final Configuration configuration = mandatory( "Configuration", createConfiguration( config ) );
         context.setConfiguration( configuration );
 
-        // create the platform definition from the configured url or from the platform builder
-        final PlatformDefinition definition = mandatory( "Definition", createPlatformDefinition( configuration ) );
-        LOGGER.debug( "Using platform definition [" + definition + "]" );
-
         // create a working directory on the file system
         final File workDir = mandatory( "Working dir", createWorkingDir( configuration.getWorkingDirectory() ) );
         LOGGER.debug( "Using working directory [" + workDir + "]" );
 
         context.setWorkingDirectory( workDir );
+        // a new working directory is cloned from golden image, if there is one
+        final String goldenImagePath = configuration.getGoldenImage();
+        final GoldenImage goldenImage = goldenImagePath == null ? null : new GoldenImage( new File( goldenImagePath ) );
+        if ( goldenImage != null && goldenImage.exists()
+             && !new File( workDir, FrameworkFingerprint.FINGERPRINT_FILE ).exists() )
+        {
+            goldenImage.cloneTo( workDir );
+        }
         // set file path strategy
         if ( configuration.useAbsoluteFilePaths() )
         {
@@ -127,59 +152,253 @@ public class PlatformImpl
             context.setFilePathStrategy( new RelativeFilePathStrategy( workDir ) );
         }
 
+        // configuration is not thread safe so everything needed by the launch stages is read upfront
         final Boolean overwriteBundles = configuration.isOverwrite();
         final Boolean overwriteUserBundles = configuration.isOverwriteUserBundles();
         final Boolean overwriteSystemBundles = configuration.isOverwriteSystemBundles();
         final Boolean downloadFeeback = configuration.isDownloadFeedback();
+        final Integer downloadThreads = configuration.getDownloadThreads();
+        final boolean autoWrap = configuration.isAutoWrap();
+        final String mirror = configuration.getMirror();
+        final boolean prefetch = configuration.isPrefetch();
+        // a mirror / prefetch has to contain all bundles, so original urls are not kept
+        final boolean keepOriginalUrls = configuration.keepOriginalUrls() && mirror == null && !prefetch;
+        final boolean validateBundles = configuration.validateBundles();
+        final boolean skipInvalidBundles = configuration.skipInvalidBundles();
+        final String executionEnvironment = configuration.getExecutionEnvironment();
+        final boolean pruneSystemPackages = configuration.pruneSystemPackages();
+        // framework persisted state of a golden image is only useful if kept while nothing changes
+        final boolean smartClean = configuration.isSmartClean() || goldenImage != null;
+        final BundleStore bundleStore = createBundleStore( configuration.getBundleStore() );
 
         LOGGER.info( "Downloading bundles..." );
+        final long downloadStart = System.currentTimeMillis();
 
-        // download system package
-        LOGGER.debug( "Download system package" );
-        final File systemFile = downloadSystemFile(
-            workDir, definition, overwriteBundles || overwriteSystemBundles, downloadFeeback
-        );
-
-        LOGGER.debug( "Download additional system libraries" );
-        final List<LocalSystemFile> localSystemFiles = downloadSystemFiles(
-            workDir, systemFiles, overwriteBundles || overwriteSystemBundles, downloadFeeback
-        );
-        // download the rest of the bundles
+        // index of already downloaded files is loaded once and written back when all downloads are done
+        final DownloadIndex downloadIndex = DownloadIndex.load( workDir );
+        // each url is downloaded only once per start, even if referenced from more places
+        final DownloadRegistry downloads = new DownloadRegistry();
+        // fine grained feedback rewrites the same console line so it can be used only while downloading serially
+        final boolean progressFeedback = downloadFeeback && downloadThreads <= 1 && !prefetch;
+        final ExecutorService downloadExecutor = createDownloadExecutor( downloadThreads );
+        // launch stages that do not depend on each other run concurrently and their results are collected in a fixed
+        // order, so the outcome is the same as when run one after another
+        final ExecutorService stageExecutor = createStageExecutor();
+        final PlatformDefinition definition;
+        final File systemFile;
+        final List<LocalSystemFile> localSystemFiles;
+        final List<BundleReference> platformBundles;
+        final List<BundleReference> userBundles;
         final List<BundleReference> bundlesToInstall = new ArrayList<BundleReference>();
-        LOGGER.debug( "Download platform bundles" );
-        bundlesToInstall.addAll(
-            downloadPlatformBundles(
+        final ExecutionEnvironment ee;
+        try
+        {
+            // create the platform definition from the configured url or from the platform builder
+            final Future<PlatformDefinition> definitionStage = stageExecutor.submit(
+                new Callable<PlatformDefinition>()
+                {
+                    public PlatformDefinition call()
+                        throws PlatformException
+                    {
+                        return mandatory( "Definition", createPlatformDefinition( configuration ) );
+                    }
+                }
+            );
+            final Future<ExecutionEnvironment> eeStage = stageExecutor.submit(
+                new Callable<ExecutionEnvironment>()
+                {
+                    public ExecutionEnvironment call()
+                        throws PlatformException
+                    {
+                        return new ExecutionEnvironment( executionEnvironment );
+                    }
+                }
+            );
+            // additional system libraries and user bundles do not depend on platform definition
+            LOGGER.debug( "Download additional system libraries" );
+            final Future<List<LocalSystemFile>> systemFilesStage = downloadExecutor.submit(
+                new Callable<List<LocalSystemFile>>()
+                {
+                    public List<LocalSystemFile> call()
+                        throws PlatformException
+                    {
+                        return downloadSystemFiles(
+                            workDir,
+                            bundleStore,
+                            downloadIndex,
+                            downloads,
+                            systemFiles,
+                            overwriteBundles || overwriteSystemBundles,
+                            progressFeedback
+                        );
+                    }
+                }
+            );
+            LOGGER.debug( "Download bundles" );
+            final Future<List<BundleReference>> bundlesStage = stageExecutor.submit(
+                new Callable<List<BundleReference>>()
+                {
+                    public List<BundleReference> call()
+                        throws PlatformException
+                    {
+                        return downloadBundles(
+                            workDir,
+                            bundleStore,
+                            downloadIndex,
+                            downloads,
+                            bundles,
+                            overwriteBundles || overwriteUserBundles,
+                            progressFeedback,
+                            autoWrap,
+                            keepOriginalUrls,
+                            validateBundles,
+                            skipInvalidBundles,
+                            downloadExecutor
+                        );
+                    }
+                }
+            );
+
+            definition = waitFor( definitionStage, "creating platform definition" );
+            LOGGER.debug( "Using platform definition [" + definition + "]" );
+            // download system package
+            LOGGER.debug( "Download system package" );
+            final URL systemPackage = definition.getSystemPackage();
+            final String systemPackageName = definition.getSystemPackageName();
+            final Future<File> systemFileStage = downloadExecutor.submit(
+                new Callable<File>()
+                {
+                    public File call()
+                        throws PlatformException
+                    {
+                        return downloadSystemFile(
+                            workDir,
+                            bundleStore,
+                            downloadIndex,
+                            downloads,
+                            systemPackage,
+                            systemPackageName,
+                            overwriteBundles || overwriteSystemBundles,
+                            progressFeedback
+                        );
+                    }
+                }
+            );
+            // download the rest of the bundles
+            LOGGER.debug( "Download platform bundles" );
+            platformBundles = downloadPlatformBundles(
                 workDir,
+                bundleStore,
+                downloadIndex,
+                downloads,
                 definition,
                 context,
                 overwriteBundles || overwriteSystemBundles,
-                downloadFeeback,
-                configuration.validateBundles(),
-                configuration.skipInvalidBundles()
-            )
-        );
-        LOGGER.debug( "Download bundles" );
-        bundlesToInstall.addAll(
-            downloadBundles(
-                workDir,
-                bundles,
-                overwriteBundles || overwriteUserBundles,
-                downloadFeeback,
-                configuration.isAutoWrap(),
-                configuration.keepOriginalUrls(),
-                configuration.validateBundles(),
-                configuration.skipInvalidBundles()
-            )
-        );
+                progressFeedback,
+                validateBundles,
+                skipInvalidBundles,
+                downloadExecutor
+            );
+            systemFile = waitFor( systemFileStage, "downloading [" + systemPackage + "]" );
+            localSystemFiles = waitFor( systemFilesStage, "downloading system files" );
+            userBundles = waitFor( bundlesStage, "downloading bundles" );
+            bundlesToInstall.addAll( platformBundles );
+            bundlesToInstall.addAll( userBundles );
+            ee = waitFor( eeStage, "loading execution environment" );
+        }
+        finally
+        {
+            stageExecutor.shutdownNow();
+            downloadExecutor.shutdownNow();
+            try
+            {
+                downloadIndex.flush();
+            }
+            catch ( PlatformException e )
+            {
+                // index is only an optimization so do not fail the start up
+                LOGGER.warn( e.getMessage() );
+            }
+        }
+        // everything is downloaded, so only a summary is saved instead of starting the framework
+        if ( prefetch )
+        {
+            final PrefetchReport report = new PrefetchReport(
+                downloads.getFinished(), System.currentTimeMillis() - downloadStart
+            );
+            final List<String> corrupted = report.verify();
+            LOGGER.info( "Prefetch summary saved to [" + report.save( workDir ) + "]" );
+            if ( !corrupted.isEmpty() )
+            {
+                throw new PlatformException(
+                    "Cached files of " + corrupted + " do not match the downloaded content."
+                    + " Use --overwrite to download them again."
+                );
+            }
+            return;
+        }
         context.setBundles( bundlesToInstall );
-        final ExecutionEnvironment ee = new ExecutionEnvironment( configuration.getExecutionEnvironment() );
+        String eePackages = ee.getSystemPackages();
+        String platformPackages = definition.getPackages();
+        if ( pruneSystemPackages )
+        {
+            // user defined packages are always kept as they were explicitly asked for
+            final SystemPackagesPruner pruner = createSystemPackagesPruner( systemFile, bundlesToInstall );
+            if ( pruner != null )
+            {
+                eePackages = pruner.prune( eePackages );
+                platformPackages = pruner.prune( platformPackages );
+                LOGGER.info( pruner.getReport() );
+            }
+        }
         context.setSystemPackages(
-            createPackageList( ee.getSystemPackages(), configuration.getSystemPackages(), definition.getPackages() )
+            createPackageList( eePackages, configuration.getSystemPackages(), platformPackages )
         );
         context.setExecutionEnvironment( ee.getExecutionEnvironment() );
 
+        // everything is resolved and downloaded, so a mirror is exported instead of starting the framework
+        if ( mirror != null )
+        {
+            new Mirror( new File( mirror ) ).export(
+                context,
+                m_platformBuilder.getProviderName() + " " + m_platformBuilder.getProviderVersion(),
+                definition.getPackages(),
+                getRequestedProfiles( context ),
+                systemFile,
+                localSystemFiles,
+                platformBundles,
+                userBundles
+            );
+            return;
+        }
+
+        // framework storage is kept only if what the framework gets installed / configured with did not change
+        FrameworkFingerprint fingerprint = null;
+        if ( smartClean )
+        {
+            fingerprint = FrameworkFingerprint.create(
+                workDir,
+                context,
+                m_platformBuilder.getProviderName() + " " + m_platformBuilder.getProviderVersion()
+            );
+            final boolean unchanged = fingerprint.isUnchanged();
+            if ( unchanged )
+            {
+                LOGGER.info( "Bundles and framework properties did not change. Using framework persisted state" );
+            }
+            else
+            {
+                LOGGER.info( "Bundles or framework properties changed. Cleaning framework persisted state" );
+            }
+            context.setUsePersistedState( unchanged );
+        }
+
         // and then ask the platform builder to prepare platform for start up (e.g. create configuration file)
         m_platformBuilder.prepare( context );
+        if ( fingerprint != null )
+        {
+            fingerprint.save();
+        }
 
         final CommandLineBuilder vmOptions = new CommandLineBuilder();
         vmOptions.append( configuration.getVMOptions() );
@@ -190,6 +409,11 @@ public class PlatformImpl
         }
 
         final String[] classpath = buildClassPath( systemFile, localSystemFiles, configuration, context );
+        final String javaHome = configuration.getJavaHome();
+        if ( configuration.useClassDataSharing() )
+        {
+            vmOptions.append( ClassDataSharing.getVMOptions( workDir, classpath, javaHome ) );
+        }
 
         final CommandLineBuilder programOptions = new CommandLineBuilder();
         programOptions.append( m_platformBuilder.getArguments( context ) );
@@ -200,7 +424,6 @@ public class PlatformImpl
         {
             runner = new DefaultJavaRunner();
         }
-        final String javaHome = configuration.getJavaHome();
 
         LOGGER.debug( "Using " + runner.getClass() + " [" + mainClassName + "]" );
         LOGGER.debug( "VM options:          [" + Arrays.toString( vmOptions.toArray() ) + "]" );
@@ -218,6 +441,18 @@ public class PlatformImpl
             workDir,
             configuration.getEnvOptions()
         );
+        // framework persisted state is complete only after framework exits
+        if ( goldenImage != null && !goldenImage.exists() )
+        {
+            if ( runner instanceof WaitingJavaRunner && ( (WaitingJavaRunner) runner ).waitsForExit() )
+            {
+                goldenImage.capture( workDir );
+            }
+            else
+            {
+                LOGGER.warn( "Golden image cannot be captured as the executor does not wait for framework exit" );
+            }
+        }
     }
 
 
@@ -296,28 +531,38 @@ public class PlatformImpl
 
     /**
      * Downloads the bundles that will be installed to the working directory.
+     * Downloads are executed by the provided executor (so they can run in parallel) but the returned list keeps the
+     * order of the provided bundles.
      *
      * @param bundles            url of bundles to be installed
      * @param workDir            the directory where to download bundles
+     * @param bundleStore        shared bundle store; null if not used
+     * @param downloadIndex      index of files downloaded in working directory
+     * @param downloads          downloads done during this start
      * @param overwrite          if the bundles should be overwritten
      * @param downloadFeeback    whether or not downloading process should display fne grained progres info
      * @param autoWrap           wheather or not auto wrapping should take place
      * @param keepOriginalUrls   if the provisioned bundles should be cached or not
      * @param validateBundles    if downloaded bundles osgi headers should be checked
      * @param skipInvalidBundles if invalid bundles (failing validation) should be skipped
+     * @param executor           executor to be used for downloading
      *
      * @return a list of downloaded files
      *
      * @throws PlatformException re-thrown
      */
     private List<BundleReference> downloadBundles( final File workDir,
+                                                   final BundleStore bundleStore,
+                                                   final DownloadIndex downloadIndex,
+                                                   final DownloadRegistry downloads,
                                                    final List<BundleReference> bundles,
                                                    final Boolean overwrite,
                                                    final boolean downloadFeeback,
                                                    final boolean autoWrap,
                                                    final boolean keepOriginalUrls,
                                                    final boolean validateBundles,
-                                                   final boolean skipInvalidBundles )
+                                                   final boolean skipInvalidBundles,
+                                                   final ExecutorService executor )
         throws PlatformException
     {
         // TODO Is there an intelligent but easy way to avoid hardcoding "wrap:"
@@ -325,7 +570,9 @@ public class PlatformImpl
         final List<BundleReference> localBundles = new ArrayList<BundleReference>();
         if ( bundles != null )
         {
-            for ( BundleReference reference : bundles )
+            // first schedule all downloads, keeping a slot for each bundle reference so the order is preserved
+            final List<Future<File>> scheduled = new ArrayList<Future<File>>();
+            for ( final BundleReference reference : bundles )
             {
                 URL url = reference.getURL();
                 if ( url == null )
@@ -350,26 +597,56 @@ public class PlatformImpl
                 // "reference:" bundles shall not be downloaded, they are provisioned in place.
                 if ( keepOriginalUrls || url.getProtocol().equals( "reference" ) )
                 {
-                    localBundles.add( reference );
+                    scheduled.add( null );
                 }
                 else
                 {
-                    final File bundleFile = download(
-                        workDir,
-                        url,
-                        reference.getName(),
-                        overwrite || reference.shouldUpdate(),
-                        validateBundles,
-                        !skipInvalidBundles,
-                        downloadFeeback
+                    // same url could be listed more times; the download registry downloads it only once
+                    final URL downloadUrl = url;
+                    scheduled.add(
+                        executor.submit(
+                            new Callable<File>()
+                            {
+                                public File call()
+                                    throws PlatformException
+                                {
+                                    return download(
+                                        workDir,
+                                        bundleStore,
+                                        downloadIndex,
+                                        downloads,
+                                        downloadUrl,
+                                        reference.getName(),
+                                        overwrite || reference.shouldUpdate(),
+                                        validateBundles,
+                                        !skipInvalidBundles,
+                                        downloadFeeback
+                                    );
+                                }
+                            }
+                        )
                     );
+                }
+            }
+            // then collect the results in the original order
+            final Iterator<Future<File>> downloadsIterator = scheduled.iterator();
+            for ( BundleReference reference : bundles )
+            {
+                final Future<File> scheduledDownload = downloadsIterator.next();
+                if ( scheduledDownload == null )
+                {
+                    localBundles.add( reference );
+                }
+                else
+                {
+                    final File bundleFile = waitForDownload( reference, scheduledDownload );
                     if ( bundleFile != null )
                     {
                         localBundles.add( new LocalBundleReference( reference, bundleFile ) );
                     }
                     else
                     {
-                        LOGGER.info( "Bundle [" + url + "] skipped from provisioning as it is invalid" );
+                        LOGGER.info( "Bundle [" + reference.getURL() + "] skipped from provisioning as it is invalid" );
                     }
                 }
             }
@@ -377,29 +654,168 @@ public class PlatformImpl
         return localBundles;
     }
 
+    /**
+     * Waits for a scheduled download to finish.
+     *
+     * @param reference bundle reference being downloaded
+     * @param download  scheduled download
+     *
+     * @return downloaded file or null if the bundle is invalid (see download)
+     *
+     * @throws PlatformException if the download failed or was interrupted
+     */
+    private File waitForDownload( final BundleReference reference,
+                                  final Future<File> download )
+        throws PlatformException
+    {
+        return waitFor( download, "downloading [" + reference.getURL() + "]" );
+    }
+
+    /**
+     * Waits for a scheduled task (download or launch stage) to finish. Failures of the task are re-thrown.
+     *
+     * @param task        scheduled task
+     * @param description what the task does (used in error messages)
+     *
+     * @return task result
+     *
+     * @throws PlatformException if the task failed or was interrupted
+     */
+    private static <T> T waitFor( final Future<T> task,
+                                  final String description )
+        throws PlatformException
+    {
+        try
+        {
+            return task.get();
+        }
+        catch ( InterruptedException e )
+        {
+            Thread.currentThread().interrupt();
+            throw new PlatformException( "Interrupted while " + description, e );
+        }
+        catch ( ExecutionException e )
+        {
+            final Throwable cause = e.getCause();
+            if ( cause instanceof PlatformException )
+            {
+                throw (PlatformException) cause;
+            }
+            if ( cause instanceof RuntimeException )
+            {
+                throw (RuntimeException) cause;
+            }
+            if ( cause instanceof Error )
+            {
+                throw (Error) cause;
+            }
+            throw new PlatformException( "Failed " + description, cause );
+        }
+    }
+
+    /**
+     * Creates the executor used to download bundles.
+     *
+     * @param downloadThreads number of parallel downloads
+     *
+     * @return download executor
+     */
+    private ExecutorService createDownloadExecutor( final Integer downloadThreads )
+    {
+        final int threads = downloadThreads == null ? 1 : Math.max( downloadThreads, 1 );
+        LOGGER.debug( "Using [" + threads + "] download thread(s)" );
+        return Executors.newFixedThreadPool( threads, createThreadFactory( "Download" ) );
+    }
+
+    /**
+     * Creates the executor used to run launch stages. Stages wait for downloads so they are not run by the download
+     * executor.
+     *
+     * @return stage executor
+     */
+    private ExecutorService createStageExecutor()
+    {
+        return Executors.newCachedThreadPool( createThreadFactory( "Stage" ) );
+    }
+
+    /**
+     * Creates a factory of daemon threads.
+     *
+     * @param name threads name
+     *
+     * @return thread factory
+     */
+    private static ThreadFactory createThreadFactory( final String name )
+    {
+        return new ThreadFactory()
+        {
+            private final AtomicInteger m_count = new AtomicInteger();
+
+            public Thread newThread( final Runnable runnable )
+            {
+                final Thread thread = new Thread( runnable, "Pax Runner " + name + "-" + m_count.incrementAndGet() );
+                thread.setDaemon( true );
+                return thread;
+            }
+        };
+    }
+
     /**
      * Downsloads platform bundles to working dir.
      *
      * @param workDir            the directory where to download bundles
+     * @param bundleStore        shared bundle store; null if not used
+     * @param downloadIndex      index of files downloaded in working directory
+     * @param downloads          downloads done during this start
      * @param definition         to take the system package
      * @param platformContext    current platform context
      * @param overwrite          if the bundles should be overwritten
      * @param downloadFeeback    whether or not downloading process should display fine grained progres info
      * @param validateBundles    if downloaded bundles osgi headers should be checked
      * @param skipInvalidBundles if invalid bundles (failing validation) should be skipped
+     * @param executor           executor to be used for downloading
      *
      * @return a list of downloaded files
      *
      * @throws PlatformException re-thrown
      */
     private List<BundleReference> downloadPlatformBundles( final File workDir,
+                                                           final BundleStore bundleStore,
+                                                           final DownloadIndex downloadIndex,
+                                                           final DownloadRegistry downloads,
                                                            final PlatformDefinition definition,
                                                            final PlatformContext platformContext,
                                                            final Boolean overwrite,
                                                            final boolean downloadFeeback,
                                                            final boolean validateBundles,
-                                                           final boolean skipInvalidBundles )
+                                                           final boolean skipInvalidBundles,
+                                                           final ExecutorService executor )
         throws PlatformException
+    {
+        return downloadBundles(
+            workDir,
+            bundleStore,
+            downloadIndex,
+            downloads,
+            definition.getPlatformBundles( getRequestedProfiles( platformContext ) ),
+            overwrite,
+            downloadFeeback,
+            false, // do not autowrap, as framework related bundles are mostly alreay bundles,
+            false, // framework bundles are always downloaded
+            validateBundles,
+            skipInvalidBundles,
+            executor
+        );
+    }
+
+    /**
+     * Returns the platform profiles to be used: the ones asked for by user and the one required by platform builder.
+     *
+     * @param platformContext platform context
+     *
+     * @return comma separated list of profiles; empty if no profiles are asked for
+     */
+    private String getRequestedProfiles( final PlatformContext platformContext )
     {
         final StringBuilder profiles = new StringBuilder();
         final String userProfiles = platformContext.getConfiguration().getProfiles();
@@ -416,40 +832,42 @@ public class PlatformImpl
             }
             profiles.append( builderProfile );
         }
-        return downloadBundles(
-            workDir,
-            definition.getPlatformBundles( profiles.toString() ),
-            overwrite,
-            downloadFeeback,
-            false, // do not autowrap, as framework related bundles are mostly alreay bundles,
-            false, // framework bundles are always downloaded
-            validateBundles,
-            skipInvalidBundles
-        );
+        return profiles.toString();
     }
 
     /**
      * Downloads the system file.
      *
-     * @param workDir         the directory where to download bundles
-     * @param definition      to take the system package
-     * @param overwrite       if the bundles should be overwritten
-     * @param downloadFeeback whether or not downloading process should display fne grained progres info
+     * @param workDir           the directory where to download bundles
+     * @param bundleStore       shared bundle store; null if not used
+     * @param downloadIndex     index of files downloaded in working directory
+     * @param downloads         downloads done during this start
+     * @param systemPackage     url of the system package (from platform definition)
+     * @param systemPackageName name of the system package (from platform definition)
+     * @param overwrite         if the bundles should be overwritten
+     * @param downloadFeeback   whether or not downloading process should display fne grained progres info
      *
      * @return the system file
      *
      * @throws PlatformException re-thrown
      */
     private File downloadSystemFile( final File workDir,
-                                     final PlatformDefinition definition,
+                                     final BundleStore bundleStore,
+                                     final DownloadIndex downloadIndex,
+                                     final DownloadRegistry downloads,
+                                     final URL systemPackage,
+                                     final String systemPackageName,
                                      final Boolean overwrite,
                                      final boolean downloadFeeback )
         throws PlatformException
     {
         return download(
             workDir,
-            definition.getSystemPackage(),
-            definition.getSystemPackageName(),
+            bundleStore,
+            downloadIndex,
+            downloads,
+            systemPackage,
+            systemPackageName,
             overwrite,
             false, // do not validate as osgi bundle
             true,  // fail on validation
@@ -461,6 +879,9 @@ public class PlatformImpl
      * Downloads additional system files that will be added to the classpath.
      *
      * @param workDir         the directory where to download bundles
+     * @param bundleStore     shared bundle store; null if not used
+     * @param downloadIndex   index of files downloaded in working directory
+     * @param downloads       downloads done during this start
      * @param systemFiles     list of system files references
      * @param overwrite       if the systemFiles should be overwritten
      * @param downloadFeeback whether or not downloading process should display fne grained progres info
@@ -470,6 +891,9 @@ public class PlatformImpl
      * @throws PlatformException re-thrown
      */
     private List<LocalSystemFile> downloadSystemFiles( final File workDir,
+                                                       final BundleStore bundleStore,
+                                                       final DownloadIndex downloadIndex,
+                                                       final DownloadRegistry downloads,
                                                        final List<SystemFileReference> systemFiles,
                                                        final Boolean overwrite,
                                                        final boolean downloadFeeback )
@@ -485,6 +909,9 @@ public class PlatformImpl
                         reference,
                         download(
                             workDir,
+                            bundleStore,
+                            downloadIndex,
+                            downloads,
                             reference.getURL(),
                             reference.getName(),
                             overwrite,
@@ -500,9 +927,13 @@ public class PlatformImpl
     }
 
     /**
-     * Downloads files from urls.
+     * Downloads files from urls. Each url is downloaded only once per start (see download registry), so the
+     * validation is done out of the shared download, for each requester.
      *
      * @param workDir          the directory where to download bundles
+     * @param bundleStore      shared bundle store; null if not used
+     * @param downloadIndex    index of files downloaded in working directory
+     * @param downloads        downloads done during this start
      * @param url              of the file to be downloaded
      * @param displayName      to be shown during download
      * @param overwrite        if the bundles should be overwritten
@@ -515,6 +946,9 @@ public class PlatformImpl
      * @throws PlatformException if the url could not be downloaded
      */
     private File download( final File workDir,
+                           final BundleStore bundleStore,
+                           final DownloadIndex downloadIndex,
+                           final DownloadRegistry downloads,
                            final URL url,
                            final String displayName,
                            final Boolean overwrite,
@@ -523,11 +957,66 @@ public class PlatformImpl
                            final boolean downloadFeeback )
         throws PlatformException
     {
-        LOGGER.debug( "Downloading [" + url + "]" );
-        File downloadedBundlesFile = new File( workDir, "bundles/downloaded_bundles.properties" );
-        Properties fileNamesForUrls = loadProperties( downloadedBundlesFile );
+        final DownloadRegistry.Download download = downloads.download(
+            url,
+            new Callable<DownloadRegistry.Download>()
+            {
+                public DownloadRegistry.Download call()
+                    throws PlatformException
+                {
+                    return downloadFile(
+                        workDir,
+                        bundleStore,
+                        downloadIndex,
+                        downloads,
+                        url,
+                        displayName,
+                        overwrite,
+                        downloadFeeback
+                    );
+                }
+            }
+        );
+        if ( checkAttributes && !download.isValid() )
+        {
+            if ( failOnValidation )
+            {
+                throw new PlatformException( "[" + url + "] is not a valid bundle" );
+            }
+            return null;
+        }
+        return download.getFile();
+    }
 
-        String downloadedFileName = fileNamesForUrls.getProperty( url.toExternalForm() );
+    /**
+     * Downloads a file from an url, as part of the download registry downloads.
+     *
+     * @param workDir          the directory where to download bundles
+     * @param bundleStore      shared bundle store; null if not used
+     * @param downloadIndex    index of files downloaded in working directory
+     * @param downloads        downloads done during this start
+     * @param url              of the file to be downloaded
+     * @param displayName      to be shown during download
+     * @param overwrite        if the bundles should be overwritten
+     * @param downloadFeeback  whether or not downloading process should display fine grained progres info
+     *
+     * @return the finished download, with the File corresponding to the downloaded file and if it is a valid bundle
+     *
+     * @throws PlatformException if the url could not be downloaded
+     */
+    private DownloadRegistry.Download downloadFile( final File workDir,
+                                                    final BundleStore bundleStore,
+                                                    final DownloadIndex downloadIndex,
+                                                    final DownloadRegistry downloads,
+                                                    final URL url,
+                                                    final String displayName,
+                                                    final Boolean overwrite,
+                                                    final boolean downloadFeeback )
+        throws PlatformException
+    {
+        LOGGER.debug( "Downloading [" + url + "]" );
+        final long start = System.currentTimeMillis();
+        String downloadedFileName = downloadIndex.getFileName( url );
         String hashFileName = "" + url.toExternalForm().hashCode();
         if ( downloadedFileName == null )
         {
@@ -540,19 +1029,94 @@ public class PlatformImpl
         // download the bundle only if is a forced overwrite or the file does not exist or the file is there but is
         // invalid
         boolean forceOverwrite = overwrite || !destination.exists();
+        DownloadIndex.Entry entry = null;
+        // SHA-256 digest of the file, if known without reading the file
+        String sha256 = null;
+        // kind of checksum published next to the url, as found while downloading
+        String checksum = null;
         if ( !forceOverwrite )
+        {
+            // use the index if the file did not change since last time, so the jar does not have to be opened
+            entry = getIndexEntry( downloadIndex, url, destination );
+            String cachingName = determineCachingName( entry, hashFileName );
+            if ( !destination.getName().equals( cachingName ) )
+            {
+                LOGGER.debug( "File " + destination + " should have name " + cachingName );
+                forceOverwrite = true;
+            }
+        }
+        // if not explicitly asked to overwrite, maybe the file was already downloaded by another runner
+        if ( forceOverwrite && !overwrite && bundleStore != null )
+        {
+            final File stored = bundleStore.get( url );
+            if ( stored != null )
+            {
+                LOGGER.debug( "Linking [" + url + "] from " + bundleStore );
+                bundleStore.link( stored, destination );
+                forceOverwrite = false;
+                entry = null;
+                // stored files are named by their digest
+                sha256 = stored.getName();
+            }
+        }
+        // when updating a file that did not change since it was downloaded ask the server only if it changed
+        DownloadIndex.Entry previous = null;
+        if ( forceOverwrite && destination.exists() )
+        {
+            previous = downloadIndex.get( url );
+            if ( previous != null
+                 && !( previous.hasValidators()
+                       && previous.matches( destination )
+                       && ( previous.getContentLength() == null
+                            || previous.getContentLength().equals( destination.length() ) ) ) )
+            {
+                previous = null;
+            }
+        }
+        // an interrupted download is kept as a partial file, to be resumed by next download
+        final File partFile = new File( destination.getParentFile(), hashFileName + ".jar.part" );
+        final File partValidatorFile = new File( destination.getParentFile(), hashFileName + ".jar.part.validator" );
+        URLConnection connection = null;
+        long resumeFrom = 0;
+        if ( forceOverwrite )
         {
             try
             {
-                String cachingName = determineCachingName( destination, hashFileName );
-                if ( !destination.getName().equals( cachingName ) )
+                String ifRange = null;
+                if ( partFile.length() > 0 )
+                {
+                    ifRange = readPartValidator( partValidatorFile );
+                    if ( ifRange != null )
+                    {
+                        resumeFrom = partFile.length();
+                    }
+                }
+                connection = StreamUtils.openConnection(
+                    url,
+                    previous == null ? null : previous.getETag(),
+                    previous == null ? null : previous.getHttpLastModified(),
+                    resumeFrom,
+                    ifRange
+                );
+                if ( previous != null && StreamUtils.isNotModified( connection ) )
                 {
-                    throw new PlatformException( "File " + destination + " should have name " + cachingName );
+                    LOGGER.debug( "[" + url + "] not modified since last download" );
+                    forceOverwrite = false;
+                    entry = previous;
+                    partFile.delete();
+                    partValidatorFile.delete();
+                }
+                else if ( resumeFrom > 0 && !StreamUtils.isPartialContent( connection ) )
+                {
+                    LOGGER.debug( "[" + url + "] cannot be resumed, downloading it again" );
+                    resumeFrom = 0;
+                    partFile.delete();
+                    partValidatorFile.delete();
                 }
             }
-            catch ( PlatformException ignore )
+            catch ( IOException e )
             {
-                forceOverwrite = true;
+                throw new PlatformException( "[" + url + "] could not be downloaded", e );
             }
         }
         if ( forceOverwrite )
@@ -561,11 +1125,26 @@ public class PlatformImpl
             {
                 LOGGER.debug( "Creating new file at destination: " + destination.getAbsolutePath() );
                 destination.getParentFile().mkdirs();
-                destination.createNewFile();
+                if ( resumeFrom > 0 )
+                {
+                    LOGGER.debug( "Resuming download of [" + url + "] from byte " + resumeFrom );
+                }
+                else
+                {
+                    writePartValidator( partValidatorFile, StreamUtils.getRangeValidator( connection ) );
+                }
+                // checksums are calculated while downloading, so the file does not have to be read again
+                final MessageDigest sha1Digest = BundleStore.createMessageDigest( "SHA-1" );
+                final MessageDigest sha256Digest = BundleStore.createMessageDigest( "SHA-256" );
+                if ( resumeFrom > 0 )
+                {
+                    StreamUtils.digest( partFile, sha1Digest, sha256Digest );
+                }
                 FileOutputStream os = null;
+                InputStream is = null;
                 try
                 {
-                    os = new FileOutputStream(destination);
+                    os = new FileOutputStream( partFile, resumeFrom > 0 );
                     FileChannel fileChannel = os.getChannel();
                     StreamUtils.ProgressBar progressBar = null;
                     if ( LOGGER.isInfoEnabled() )
@@ -579,160 +1158,279 @@ public class PlatformImpl
                             progressBar = new StreamUtils.CoarseGrainedProgressBar( displayName );
                         }
                     }
-                    StreamUtils.streamCopy( url, fileChannel, progressBar );
+                    is = connection.getInputStream();
+                    final long copied = StreamUtils.streamCopy(
+                        is, fileChannel, progressBar, sha1Digest, sha256Digest
+                    );
                     fileChannel.close();
-                    LOGGER.debug( "Succesfully downloaded to [" + destination + "]" );
+                    final Long contentLength = StreamUtils.getContentLength( connection );
+                    if ( contentLength != null && contentLength != copied )
+                    {
+                        throw new IOException(
+                            "Incomplete download: " + copied + " of " + contentLength + " bytes"
+                        );
+                    }
                 }
                 finally
                 {
+                    if ( is != null )
+                    {
+                        is.close();
+                    }
                     if ( os != null )
                     {
                         os.close();
                     }
                 }
+                sha256 = BundleStore.toHex( sha256Digest.digest() );
+                // only transferred files are verified, linked and not modified files were verified when downloaded
+                final DownloadIndex.Entry indexed = downloadIndex.get( url );
+                try
+                {
+                    checksum = verifyChecksums(
+                        url,
+                        indexed == null ? null : indexed.getChecksum(),
+                        sha256,
+                        BundleStore.toHex( sha1Digest.digest() )
+                    );
+                }
+                catch ( PlatformException e )
+                {
+                    // do not resume a corrupted file
+                    partFile.delete();
+                    partValidatorFile.delete();
+                    throw e;
+                }
+                // the file could be a link to the bundle store, so do not write through it
+                if ( destination.exists() && !destination.delete() )
+                {
+                    throw new PlatformException( "Cannot delete " + destination );
+                }
+                if ( !partFile.renameTo( destination ) )
+                {
+                    throw new PlatformException( "Cannot rename " + partFile + " to " + destination );
+                }
+                partValidatorFile.delete();
+                LOGGER.debug( "Succesfully downloaded to [" + destination + "]" );
             }
             catch ( IOException e )
             {
                 throw new PlatformException( "[" + url + "] could not be downloaded", e );
             }
         }
-        if ( checkAttributes )
+        if ( forceOverwrite )
         {
-            try
-            {
-                validateBundle( url, destination );
-            }
-            catch ( PlatformException e )
+            // file was (re)downloaded so whatever was known about it is outdated
+            entry = null;
+        }
+        if ( entry == null )
+        {
+            entry = createIndexEntry( destination );
+            entry.setSha256( sha256 );
+            entry.setChecksum( checksum );
+            if ( forceOverwrite && connection instanceof HttpURLConnection )
             {
-                if ( failOnValidation )
-                {
-                    throw e;
-                }
-                return null;
+                setValidators( entry, connection, resumeFrom > 0 );
             }
         }
-        String cachingName = determineCachingName( destination, hashFileName );
+        String cachingName = determineCachingName( entry, hashFileName );
         File newDestination = new File( destination.getParentFile(), cachingName );
         if ( !cachingName.equals( destination.getName() ) )
         {
-            if ( newDestination.exists() )
+            synchronized ( m_renameLock )
             {
-                if ( !newDestination.delete() )
+                if ( newDestination.exists() )
+                {
+                    if ( !newDestination.delete() )
+                    {
+                        throw new PlatformException( "Cannot delete " + newDestination );
+                    }
+                }
+                if ( !destination.renameTo( newDestination ) )
                 {
-                    throw new PlatformException( "Cannot delete " + newDestination );
+                    throw new PlatformException( "Cannot rename " + destination + " to " + newDestination );
                 }
             }
-            if ( !destination.renameTo( newDestination ) )
+            entry = entry.copy( cachingName );
+        }
+        if ( bundleStore != null && forceOverwrite )
+        {
+            // share the downloaded file with other working directories
+            bundleStore.link( bundleStore.put( url, newDestination, entry.getSha256() ), newDestination );
+            // the link/copy can have another modification time than the downloaded file
+            entry.setLastModified( newDestination.lastModified() );
+        }
+        // same content downloaded from another url (e.g. same artifact via mvn: and http:) is used only once
+        final File shared = downloads.share( entry.getSha256(), newDestination );
+        if ( !shared.equals( newDestination ) )
+        {
+            LOGGER.debug( "[" + url + "] has the same content as [" + shared + "]" );
+            if ( forceOverwrite && bundleStore == null )
             {
-                throw new PlatformException( "Cannot rename " + destination + " to " + newDestination );
+                // keep only one copy of the content (the file stays, so the index is still valid)
+                BundleStore.linkOrCopy( shared, newDestination );
+                entry.setLastModified( newDestination.lastModified() );
             }
-            fileNamesForUrls.setProperty( url.toExternalForm(), cachingName );
-            saveProperties( fileNamesForUrls, downloadedBundlesFile );
         }
+        downloadIndex.put( url, entry );
 
-        return newDestination;
+        return new DownloadRegistry.Download(
+            url,
+            shared,
+            entry.isValid(),
+            entry.getSha256(),
+            !forceOverwrite,
+            SHA256.equals( checksum ) || SHA1.equals( checksum ),
+            System.currentTimeMillis() - start
+        );
     }
 
-    private Properties loadProperties( File file )
+    /**
+     * Returns the download index entry of a downloaded file. If the index has an entry for the url and the file did
+     * not change since the entry was created, the indexed entry is used, otherwise the entry is created out of the
+     * file manifest.
+     *
+     * @param downloadIndex index of files downloaded in working directory
+     * @param url           url the file was downloaded from
+     * @param file          downloaded file
+     *
+     * @return index entry
+     */
+    private DownloadIndex.Entry getIndexEntry( final DownloadIndex downloadIndex,
+                                               final URL url,
+                                               final File file )
     {
-        Properties properties = new Properties();
-        FileInputStream in = null;
-        try
+        final DownloadIndex.Entry entry = downloadIndex.get( url );
+        if ( entry != null && entry.matches( file ) )
         {
-            in = new FileInputStream( file );
-            properties.load( in );
-            return properties;
+            return entry;
         }
-        catch ( IOException e )
+        return createIndexEntry( file );
+    }
+
+    /**
+     * Verifies the checksums of a downloaded file against the checksum published next to the url (Maven style, as
+     * url.sha256 / url.sha1). The sha1 checksum is looked up only if there is no sha256 checksum and none is looked
+     * up if a previous download of the url found that there is no published checksum. Checksums are looked up only
+     * for http(s) and file urls, as for other protocols appending an extension would not result in an url of the
+     * checksum file.
+     *
+     * @param url       url the file was downloaded from
+     * @param published kind of checksum found published by a previous download (sha256 / sha1 / none); can be null
+     * @param sha256    SHA-256 checksum calculated while downloading (hex encoded)
+     * @param sha1      SHA-1 checksum calculated while downloading (hex encoded)
+     *
+     * @return kind of checksum that was verified (sha256 / sha1), none if there is no published checksum or null if
+     *         the published checksum could not be looked up
+     *
+     * @throws PlatformException if there is a published checksum and it does not match
+     */
+    private String verifyChecksums( final URL url,
+                                    final String published,
+                                    final String sha256,
+                                    final String sha1 )
+        throws PlatformException
+    {
+        final String protocol = url.getProtocol();
+        if ( !"http".equals( protocol ) && !"https".equals( protocol ) && !"file".equals( protocol ) )
         {
-            return properties;
+            return null;
         }
-        finally
+        if ( NO_CHECKSUM.equals( published ) )
         {
-            if ( in != null )
+            LOGGER.trace( "No checksum published for [" + url + "]" );
+            return NO_CHECKSUM;
+        }
+        if ( !SHA1.equals( published ) )
+        {
+            final Boolean verified = verifyChecksum( url, SHA256, sha256 );
+            if ( verified == null || verified )
             {
-                try
-                {
-                    in.close();
-                }
-                catch ( IOException e )
-                {
-                    // ignore
-                }
+                return verified == null ? null : SHA256;
             }
         }
+        final Boolean verified = verifyChecksum( url, SHA1, sha1 );
+        if ( verified == null || verified )
+        {
+            return verified == null ? null : SHA1;
+        }
+        LOGGER.trace( "No checksum published for [" + url + "]" );
+        return NO_CHECKSUM;
     }
 
-    private void saveProperties( Properties properties, File file )
+    /**
+     * Verifies the checksum of a downloaded file against one checksum published next to the url.
+     *
+     * @param url       url the file was downloaded from
+     * @param extension checksum file extension (sha1 / sha256)
+     * @param checksum  checksum calculated while downloading (hex encoded)
+     *
+     * @return true if checksum was verified, false if there is no published checksum and null if the published
+     *         checksum cannot be read
+     *
+     * @throws PlatformException if there is a published checksum and it does not match
+     */
+    private Boolean verifyChecksum( final URL url,
+                                    final String extension,
+                                    final String checksum )
         throws PlatformException
     {
-        FileOutputStream os = null;
+        final String published;
         try
         {
-            os = new FileOutputStream( file );
-            properties.store( os, "" );
+            published = StreamUtils.readChecksum( new URL( url.toExternalForm() + "." + extension ) );
         }
         catch ( IOException e )
         {
-            throw new PlatformException( "Cannot store properties " + file, e );
+            LOGGER.debug( "Cannot read " + extension + " checksum of [" + url + "] due to: " + e.getMessage() );
+            return null;
         }
-        finally
+        if ( published == null )
         {
-            if ( os != null )
-            {
-                try
-                {
-                    os.close();
-                }
-                catch ( IOException e )
-                {
-                    // ignore
-                }
-            }
-
+            return false;
+        }
+        if ( !published.equals( checksum ) )
+        {
+            throw new PlatformException(
+                "[" + url + "] " + extension + " checksum mismatch: expected " + published + " but was " + checksum
+            );
         }
+        LOGGER.debug( "[" + url + "] " + extension + " checksum verified" );
+        return true;
     }
 
     /**
-     * Validate that the file is an valid bundle.
-     * A valid bundle will be a loadable jar file that has manifest and the manifest contains at least an entry for
-     * Bundle-SymboliName or Bundle-Name (R3).
+     * Reads the validator of a partial download.
      *
-     * @param url  original url from where the bundle was created.
-     * @param file file to be validated
+     * @param validatorFile file containing the validator
      *
-     * @throws PlatformException if the jar is not a valid bundle
+     * @return validator or null if there is no validator
      */
-    void validateBundle( final URL url,
-                         final File file )
-        throws PlatformException
+    private String readPartValidator( final File validatorFile )
     {
-        String bundleSymbolicName = null;
-        String bundleName = null;
-        JarFile jar = null;
+        if ( !validatorFile.isFile() )
+        {
+            return null;
+        }
+        BufferedReader reader = null;
         try
         {
-            // verify that is a valid jar. Do not verify that is signed (the false param).
-            jar = new JarFile( file, false );
-            final Manifest manifest = jar.getManifest();
-            if ( manifest == null )
-            {
-                throw new PlatformException( "[" + url + "] is not a valid bundle" );
-            }
-            bundleSymbolicName = manifest.getMainAttributes().getValue( Constants.BUNDLE_SYMBOLICNAME );
-            bundleName = manifest.getMainAttributes().getValue( Constants.BUNDLE_NAME );
+            reader = new BufferedReader( new InputStreamReader( new FileInputStream( validatorFile ), "UTF-8" ) );
+            final String validator = reader.readLine();
+            return validator == null || validator.trim().length() == 0 ? null : validator.trim();
         }
         catch ( IOException e )
         {
-            throw new PlatformException( "[" + url + "] is not a valid bundle", e );
+            LOGGER.debug( "Cannot read " + validatorFile + " due to: " + e.getMessage() );
+            return null;
         }
         finally
         {
-            if ( jar != null )
+            if ( reader != null )
             {
                 try
                 {
-                    jar.close();
+                    reader.close();
                 }
                 catch ( IOException ignore )
                 {
@@ -740,12 +1438,78 @@ public class PlatformImpl
                 }
             }
         }
-        if ( bundleSymbolicName == null && bundleName == null )
+    }
+
+    /**
+     * Writes the validator of a partial download, so the download can be resumed if interrupted. If there is no
+     * validator any existing validator is removed, so the download will not be resumed.
+     *
+     * @param validatorFile file to write the validator to
+     * @param validator     validator; can be null
+     *
+     * @throws IOException re-thrown
+     */
+    private void writePartValidator( final File validatorFile,
+                                     final String validator )
+        throws IOException
+    {
+        validatorFile.delete();
+        if ( validator == null )
+        {
+            return;
+        }
+        final Writer writer = new OutputStreamWriter( new FileOutputStream( validatorFile ), "UTF-8" );
+        try
+        {
+            writer.write( validator );
+        }
+        finally
         {
-            throw new PlatformException( "[" + url + "] is not a valid bundle" );
+            writer.close();
         }
     }
 
+    /**
+     * Remembers the validators sent by the http server, so next update can be a conditional request.
+     *
+     * @param entry      index entry of the downloaded file
+     * @param connection connection the file was downloaded from
+     * @param resumed    if the download was resumed (connection content length is only the length of the range)
+     */
+    private void setValidators( final DownloadIndex.Entry entry,
+                                final URLConnection connection,
+                                final boolean resumed )
+    {
+        entry.setETag( connection.getHeaderField( "ETag" ) );
+        final long lastModified = connection.getLastModified();
+        entry.setHttpLastModified( lastModified == 0 ? null : lastModified );
+        entry.setContentLength( resumed ? entry.getSize() : StreamUtils.getContentLength( connection ) );
+    }
+
+    /**
+     * Creates the download index entry of a downloaded file by reading its manifest.
+     *
+     * @param file downloaded file
+     *
+     * @return index entry
+     */
+    DownloadIndex.Entry createIndexEntry( final File file )
+    {
+        final DownloadIndex.Entry entry = new DownloadIndex.Entry( file.getName() );
+        entry.setSize( file.length() );
+        entry.setLastModified( file.lastModified() );
+        entry.setValid( false );
+        final Attributes attributes = readManifestAttributes( file );
+        if ( attributes != null )
+        {
+            entry.setSymbolicName( attributes.getValue( Constants.BUNDLE_SYMBOLICNAME ) );
+            entry.setVersion( attributes.getValue( Constants.BUNDLE_VERSION ) );
+            entry.setName( attributes.getValue( Constants.BUNDLE_NAME ) );
+            entry.setValid( entry.getSymbolicName() != null || entry.getName() != null );
+        }
+        return entry;
+    }
+
     /**
      * Determine name to be used for caching on local file system.
      *
@@ -758,8 +1522,52 @@ public class PlatformImpl
     String determineCachingName( final File file,
                                  final String defaultBundleSymbolicName )
     {
-        String bundleSymbolicName = null;
-        String bundleVersion = null;
+        return determineCachingName( createIndexEntry( file ), defaultBundleSymbolicName );
+    }
+
+    /**
+     * Determine name to be used for caching on local file system.
+     *
+     * @param entry                     download index entry of the file
+     * @param defaultBundleSymbolicName default bundle symbolic name to be used if manifest does not have a bundle
+     *                                  symbolic name
+     *
+     * @return file name based on bundle symbolic name and version
+     */
+    private String determineCachingName( final DownloadIndex.Entry entry,
+                                         final String defaultBundleSymbolicName )
+    {
+        String bundleSymbolicName = entry.getSymbolicName();
+        String bundleVersion = entry.getVersion();
+        if ( bundleSymbolicName == null )
+        {
+            bundleSymbolicName = defaultBundleSymbolicName;
+        }
+        else
+        {
+            // remove directives like "; singleton:=true"
+            int semicolonPos = bundleSymbolicName.indexOf( ";" );
+            if ( semicolonPos > 0 )
+            {
+                bundleSymbolicName = bundleSymbolicName.substring( 0, semicolonPos );
+            }
+        }
+        if ( bundleVersion == null )
+        {
+            bundleVersion = "0.0.0";
+        }
+        return bundleSymbolicName + "_" + bundleVersion + ".jar";
+    }
+
+    /**
+     * Reads the main attributes of a jar manifest.
+     *
+     * @param file jar file
+     *
+     * @return manifest main attributes or null if the file is not a jar or does not have a manifest
+     */
+    private Attributes readManifestAttributes( final File file )
+    {
         JarFile jar = null;
         try
         {
@@ -768,8 +1576,7 @@ public class PlatformImpl
             final Manifest manifest = jar.getManifest();
             if ( manifest != null )
             {
-                bundleSymbolicName = manifest.getMainAttributes().getValue( Constants.BUNDLE_SYMBOLICNAME );
-                bundleVersion = manifest.getMainAttributes().getValue( Constants.BUNDLE_VERSION );
+                return manifest.getMainAttributes();
             }
         }
         catch ( IOException ignore )
@@ -790,24 +1597,25 @@ public class PlatformImpl
                 }
             }
         }
-        if ( bundleSymbolicName == null )
-        {
-            bundleSymbolicName = defaultBundleSymbolicName;
-        }
-        else
-        {
-            // remove directives like "; singleton:=true"
-            int semicolonPos = bundleSymbolicName.indexOf( ";" );
-            if ( semicolonPos > 0 )
-            {
-                bundleSymbolicName = bundleSymbolicName.substring( 0, semicolonPos );
-            }
-        }
-        if ( bundleVersion == null )
+        return null;
+    }
+
+    /**
+     * Creates the store shared between working directories.
+     *
+     * @param path path to bundle store directory; can be null
+     *
+     * @return a bundle store or null if bundle store should not be used
+     */
+    private BundleStore createBundleStore( final String path )
+    {
+        if ( path == null )
         {
-            bundleVersion = "0.0.0";
+            return null;
         }
-        return bundleSymbolicName + "_" + bundleVersion + ".jar";
+        final File storeDir = new File( path );
+        LOGGER.debug( "Using bundle store [" + storeDir.getAbsolutePath() + "]" );
+        return new BundleStore( storeDir );
     }
 
     /**
@@ -824,6 +1632,40 @@ public class PlatformImpl
         return workDir;
     }
 
+    /**
+     * Creates a system packages pruner out of the manifests of bundles to be installed.
+     *
+     * @param systemFile framework system file, used to find out the symbolic name of the system bundle
+     * @param bundles    bundles to be installed
+     *
+     * @return system packages pruner or null if the manifest of a bundle cannot be read (e.g. is not downloaded)
+     */
+    private SystemPackagesPruner createSystemPackagesPruner( final File systemFile,
+                                                             final List<BundleReference> bundles )
+    {
+        // bundles can require the system bundle by the framework symbolic name as well (e.g. org.eclipse.osgi)
+        final Attributes systemAttributes = readManifestAttributes( systemFile );
+        final SystemPackagesPruner pruner = new SystemPackagesPruner(
+            systemAttributes == null ? null : systemAttributes.getValue( Constants.BUNDLE_SYMBOLICNAME )
+        );
+        for ( BundleReference reference : bundles )
+        {
+            if ( !( reference instanceof LocalBundleReference ) )
+            {
+                LOGGER.warn(
+                    "System packages not pruned as bundle [" + reference.getURL() + "] is not downloaded"
+                );
+                return null;
+            }
+            final Attributes attributes = readManifestAttributes( ( (LocalBundleReference) reference ).getFile() );
+            if ( attributes != null )
+            {
+                pruner.addBundle( attributes );
+            }
+        }
+        return pruner;
+    }
+
     /**
      * Returns a comma separated list of system packages, constructed from:<br/>
      * 1. execution envoronment packages<br/>
@@ -910,6 +1752,10 @@ public class PlatformImpl
                 LOGGER.debug( "loading definition from builder." );
                 inputStream = m_platformBuilder.getDefinition( configuration );
             }
+            if ( inputStream == null )
+            {
+                throw new PlatformException( "Platform definition not found" );
+            }
             return new PlatformDefinitionImpl( inputStream, configuration.getProfileStartLevel() );
         }
         catch ( IOException e )
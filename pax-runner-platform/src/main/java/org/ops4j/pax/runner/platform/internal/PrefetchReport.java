@@ -0,0 +1,232 @@
+/*
+ * Copyright 2026 OPS4J.
+ *
+ * Licensed  under the  Apache License,  Version 2.0  (the "License");
+ * you may not use  this file  except in  compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed  under the  License is distributed on an "AS IS" BASIS,
+ * WITHOUT  WARRANTIES OR CONDITIONS  OF ANY KIND, either  express  or
+ * implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.runner.platform.internal;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Properties;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.ops4j.pax.runner.platform.PlatformException;
+
+/**
+ * Summary of a prefetch (downloads done without starting the framework), saved as a properties file in the working
+ * directory so it can be read by build tools: totals (prefetch.*) and, per downloaded url, the local file, size,
+ * whether it was a cache hit, download time and how it was verified (artifact.&lt;n&gt;.*). Files that were not
+ * transferred are verified against the digest recorded when they were downloaded, as downloaded files are already
+ * verified against the published checksums while downloading.
+ *
+ * @since 1.9.1, October 18, 2026
+ */
+class PrefetchReport
+{
+
+    /**
+     * Logger.
+     */
+    private static final Log LOGGER = LogFactory.getLog( PrefetchReport.class );
+    /**
+     * Name of the report file, relative to working directory.
+     */
+    static final String REPORT_FILE = "prefetch.properties";
+    /**
+     * Checksum verification: verified against published checksum while downloading.
+     */
+    static final String CHECKSUM_PUBLISHED = "published";
+    /**
+     * Checksum verification: cache hit verified against the digest recorded when downloaded.
+     */
+    static final String CHECKSUM_CACHE = "cache";
+    /**
+     * Checksum verification: not verified, as there is no published checksum / recorded digest.
+     */
+    static final String CHECKSUM_NONE = "none";
+    /**
+     * Checksum verification: cache hit does not match the digest recorded when downloaded.
+     */
+    static final String CHECKSUM_MISMATCH = "mismatch";
+
+    /**
+     * Downloads, one per url, sorted by url. Cannot be null.
+     */
+    private final List<DownloadRegistry.Download> m_downloads;
+    /**
+     * Checksum verification of each download. Cannot be null.
+     */
+    private final List<String> m_checksums;
+    /**
+     * Total time of prefetch, in milliseconds.
+     */
+    private final long m_millis;
+
+    /**
+     * Constructor.
+     *
+     * @param downloads finished downloads, one per url
+     * @param millis    total time of prefetch, in milliseconds
+     */
+    PrefetchReport( final List<DownloadRegistry.Download> downloads, final long millis )
+    {
+        m_downloads = new ArrayList<DownloadRegistry.Download>( downloads );
+        Collections.sort( m_downloads, new Comparator<DownloadRegistry.Download>()
+        {
+            public int compare( final DownloadRegistry.Download download1, final DownloadRegistry.Download download2 )
+            {
+                return download1.getURL().toExternalForm().compareTo( download2.getURL().toExternalForm() );
+            }
+        }
+        );
+        m_checksums = new ArrayList<String>();
+        for( DownloadRegistry.Download download : m_downloads )
+        {
+            m_checksums.add( download.isVerified() ? CHECKSUM_PUBLISHED : CHECKSUM_NONE );
+        }
+        m_millis = millis;
+    }
+
+    /**
+     * Verifies cache hits against the digest recorded when they were downloaded.
+     *
+     * @return urls of cache hits that do not match the recorded digest; empty if all match
+     *
+     * @throws PlatformException if a cached file cannot be read
+     */
+    List<String> verify()
+        throws PlatformException
+    {
+        final List<String> corrupted = new ArrayList<String>();
+        for( int i = 0; i < m_downloads.size(); i++ )
+        {
+            final DownloadRegistry.Download download = m_downloads.get( i );
+            if( !download.isCacheHit() || download.getSha256() == null )
+            {
+                continue;
+            }
+            try
+            {
+                if( download.getSha256().equals( BundleStore.digest( download.getFile() ) ) )
+                {
+                    m_checksums.set( i, CHECKSUM_CACHE );
+                }
+                else
+                {
+                    m_checksums.set( i, CHECKSUM_MISMATCH );
+                    corrupted.add( download.getURL().toExternalForm() );
+                }
+            }
+            catch( IOException e )
+            {
+                throw new PlatformException( "Cannot verify " + download.getFile(), e );
+            }
+        }
+        return corrupted;
+    }
+
+    /**
+     * Saves the report to working directory.
+     *
+     * @param workDir working directory
+     *
+     * @return report file
+     *
+     * @throws PlatformException if the report cannot be saved
+     */
+    File save( final File workDir )
+        throws PlatformException
+    {
+        final Properties properties = new Properties();
+        long bytes = 0;
+        long downloadedBytes = 0;
+        int cacheHits = 0;
+        int verified = 0;
+        for( int i = 0; i < m_downloads.size(); i++ )
+        {
+            final DownloadRegistry.Download download = m_downloads.get( i );
+            final long length = download.getFile().length();
+            final String key = "artifact." + ( i + 1 ) + ".";
+            properties.setProperty( key + "url", download.getURL().toExternalForm() );
+            properties.setProperty( key + "file", download.getFile().getAbsolutePath() );
+            properties.setProperty( key + "bytes", String.valueOf( length ) );
+            properties.setProperty( key + "cacheHit", String.valueOf( download.isCacheHit() ) );
+            properties.setProperty( key + "millis", String.valueOf( download.getMillis() ) );
+            properties.setProperty( key + "checksum", m_checksums.get( i ) );
+            if( download.getSha256() != null )
+            {
+                properties.setProperty( key + "sha256", download.getSha256() );
+            }
+            bytes += length;
+            if( download.isCacheHit() )
+            {
+                cacheHits++;
+            }
+            else
+            {
+                downloadedBytes += length;
+            }
+            if( CHECKSUM_PUBLISHED.equals( m_checksums.get( i ) ) || CHECKSUM_CACHE.equals( m_checksums.get( i ) ) )
+            {
+                verified++;
+            }
+        }
+        properties.setProperty( "prefetch.artifacts", String.valueOf( m_downloads.size() ) );
+        properties.setProperty( "prefetch.downloads", String.valueOf( m_downloads.size() - cacheHits ) );
+        properties.setProperty( "prefetch.cacheHits", String.valueOf( cacheHits ) );
+        properties.setProperty( "prefetch.verified", String.valueOf( verified ) );
+        properties.setProperty( "prefetch.bytes", String.valueOf( bytes ) );
+        properties.setProperty( "prefetch.downloadedBytes", String.valueOf( downloadedBytes ) );
+        properties.setProperty( "prefetch.millis", String.valueOf( m_millis ) );
+        LOGGER.info(
+            "Prefetched " + m_downloads.size() + " files (" + bytes + " bytes) in " + m_millis + " ms: "
+            + ( m_downloads.size() - cacheHits ) + " downloaded (" + downloadedBytes + " bytes), "
+            + cacheHits + " cache hits, " + verified + " verified"
+        );
+        final File file = new File( workDir, REPORT_FILE );
+        OutputStream out = null;
+        try
+        {
+            out = new FileOutputStream( file );
+            properties.store( out, "Pax Runner prefetch" );
+        }
+        catch( IOException e )
+        {
+            throw new PlatformException( "Cannot save " + file, e );
+        }
+        finally
+        {
+            if( out != null )
+            {
+                try
+                {
+                    out.close();
+                }
+                catch( IOException ignore )
+                {
+                    // just ignore
+                }
+            }
+        }
+        return file;
+    }
+
+}
@@ -22,16 +22,22 @@ import org.apache.commons.logging.LogFactory;
 import org.ops4j.lang.NullArgumentException;
 import org.ops4j.pax.runner.commons.Info;
 
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
+import java.net.HttpURLConnection;
 import java.net.URL;
+import java.net.URLConnection;
+import java.nio.ByteBuffer;
 import java.nio.channels.Channels;
 import java.nio.channels.FileChannel;
 import java.nio.channels.ReadableByteChannel;
+import java.security.MessageDigest;
 
 /**
  * Stream related utilities.
- * TODO add units tests
  *
  * @author Alin Dreghiciu
  * @since August 19, 2007
@@ -43,6 +49,14 @@ public class StreamUtils
      * Logger.
      */
     private static final Log LOGGER = LogFactory.getLog( StreamUtils.class );
+    /**
+     * Size of the buffer used to copy streams.
+     */
+    private static final int BUFFER_SIZE = 64 * 1024;
+    /**
+     * Minimum time (millis) between two progress notifications.
+     */
+    private static final long PROGRESS_INTERVAL = 200;
 
     /**
      * Utility class. Ment to be used via static methods.
@@ -53,15 +67,25 @@ public class StreamUtils
     }
 
     /**
-     * Copy a stream to a destination. It does not close the streams.
+     * Copy a stream to a destination. The content is written starting at the current position of the destination, so
+     * a destination opened for append will get the content at its end. It does not close the destination.
+     * The stream is copied in chunks, so there is no limit on the size of the content, and the progress bar is
+     * notified while copying. The copied bytes are also passed to the provided message digests, so content can be
+     * verified without reading it again.
      *
      * @param in          the stream to copy from
      * @param out         the stream to copy to
      * @param progressBar download progress feedback. Can be null.
+     * @param digests     message digests to be updated with copied content. Can be empty.
+     *
+     * @return number of copied bytes
      *
      * @throws IOException re-thrown
      */
-    public static void streamCopy( final InputStream in, final FileChannel out, final ProgressBar progressBar )
+    public static long streamCopy( final InputStream in,
+                                   final FileChannel out,
+                                   final ProgressBar progressBar,
+                                   final MessageDigest... digests )
         throws IOException
     {
         NullArgumentException.validateNotNull( in, "Input stream" );
@@ -75,8 +99,28 @@ public class StreamUtils
         }
         try
         {
-            ReadableByteChannel inChannel = Channels.newChannel(in);
-            bytes = out.transferFrom(inChannel, 0, Integer.MAX_VALUE);
+            final ReadableByteChannel inChannel = Channels.newChannel( in );
+            final ByteBuffer buffer = ByteBuffer.allocate( BUFFER_SIZE );
+            long lastProgress = start;
+            while( inChannel.read( buffer ) != -1 )
+            {
+                buffer.flip();
+                for( MessageDigest digest : digests )
+                {
+                    digest.update( buffer.array(), 0, buffer.limit() );
+                }
+                while( buffer.hasRemaining() )
+                {
+                    bytes += out.write( buffer );
+                }
+                buffer.clear();
+                final long now = System.currentTimeMillis();
+                if( now - lastProgress >= PROGRESS_INTERVAL )
+                {
+                    feedbackBar.increment( bytes, bytes / Math.max( now - start, 1 ) );
+                    lastProgress = now;
+                }
+            }
             inChannel.close();
         }
         finally
@@ -84,6 +128,7 @@ public class StreamUtils
             feedbackBar.increment( bytes, bytes / Math.max( System.currentTimeMillis() - start, 1 ) );
             feedbackBar.stop();
         }
+        return bytes;
     }
 
     /**
@@ -93,9 +138,11 @@ public class StreamUtils
      * @param out         the stream to copy to
      * @param progressBar download progress feedback. Can be null.
      *
+     * @return number of copied bytes
+     *
      * @throws IOException re-thrown
      */
-    public static void streamCopy( final URL url, final FileChannel out, final ProgressBar progressBar )
+    public static long streamCopy( final URL url, final FileChannel out, final ProgressBar progressBar )
         throws IOException
     {
         NullArgumentException.validateNotNull( url, "URL" );
@@ -103,7 +150,7 @@ public class StreamUtils
         try
         {
             is = url.openStream();
-            streamCopy( is, out, progressBar );
+            return streamCopy( is, out, progressBar );
         }
         finally
         {
@@ -115,6 +162,257 @@ public class StreamUtils
 
     }
 
+    /**
+     * Updates message digests with the content of a file.
+     *
+     * @param file    file to digest
+     * @param digests message digests to be updated
+     *
+     * @throws IOException re-thrown
+     */
+    public static void digest( final File file, final MessageDigest... digests )
+        throws IOException
+    {
+        NullArgumentException.validateNotNull( file, "File" );
+        final InputStream in = new FileInputStream( file );
+        try
+        {
+            final byte[] buffer = new byte[BUFFER_SIZE];
+            int read;
+            while( ( read = in.read( buffer ) ) != -1 )
+            {
+                for( MessageDigest digest : digests )
+                {
+                    digest.update( buffer, 0, read );
+                }
+            }
+        }
+        finally
+        {
+            in.close();
+        }
+    }
+
+    /**
+     * Reads a checksum published next to a file, as Maven repositories do (e.g. file.jar.sha1). The checksum is the
+     * first token of the checksum file, as some tools write also the file name after the checksum.
+     *
+     * @param url url of the checksum file
+     *
+     * @return checksum (lower case) or null if the checksum file does not exist
+     *
+     * @throws IOException if the checksum file cannot be read
+     */
+    public static String readChecksum( final URL url )
+        throws IOException
+    {
+        NullArgumentException.validateNotNull( url, "URL" );
+        InputStream in = null;
+        try
+        {
+            final URLConnection connection = url.openConnection();
+            if( connection instanceof HttpURLConnection )
+            {
+                final int responseCode = ( (HttpURLConnection) connection ).getResponseCode();
+                if( responseCode == HttpURLConnection.HTTP_NOT_FOUND || responseCode == HttpURLConnection.HTTP_GONE )
+                {
+                    return null;
+                }
+                if( responseCode != HttpURLConnection.HTTP_OK )
+                {
+                    throw new IOException( "Unexpected response code " + responseCode );
+                }
+            }
+            in = connection.getInputStream();
+            final StringBuilder content = new StringBuilder();
+            int read;
+            // checksum files are small, so do not read more then needed
+            while( ( read = in.read() ) != -1 && content.length() < 1024 )
+            {
+                content.append( (char) read );
+            }
+            final String[] tokens = content.toString().trim().split( "\\s+" );
+            if( tokens.length == 0 || tokens[ 0 ].length() == 0 )
+            {
+                return null;
+            }
+            return tokens[ 0 ].toLowerCase();
+        }
+        catch( FileNotFoundException e )
+        {
+            return null;
+        }
+        finally
+        {
+            if( in != null )
+            {
+                try
+                {
+                    in.close();
+                }
+                catch( IOException ignore )
+                {
+                    // just ignore as this is less probably to happen.
+                }
+            }
+        }
+    }
+
+    /**
+     * Opens a connection to an url. If the url is an http(s) url and validators of a previously downloaded copy are
+     * provided the request is a conditional one, so the server can answer with "304 Not Modified" instead of sending
+     * the content again.
+     *
+     * @param url          the url to connect to
+     * @param eTag         entity tag of the previously downloaded copy. Can be null.
+     * @param lastModified last modified time (as sent by server) of the previously downloaded copy. Can be null.
+     *
+     * @return connection
+     *
+     * @throws IOException re-thrown
+     */
+    public static URLConnection openConnection( final URL url, final String eTag, final Long lastModified )
+        throws IOException
+    {
+        return openConnection( url, eTag, lastModified, 0, null );
+    }
+
+    /**
+     * Opens a connection to an url, as {@link #openConnection(URL, String, Long)}. In addition, if the url is an
+     * http(s) url and a range start is provided, asks the server for the content starting at range start, but only if
+     * the content still matches the if range validator (otherwise server will send the whole content). If the server
+     * rejects the range (e.g. "416 Range Not Satisfiable" as the partial download already has the whole content) the
+     * whole content is asked for again, without the range.
+     *
+     * @param url          the url to connect to
+     * @param eTag         entity tag of the previously downloaded copy. Can be null.
+     * @param lastModified last modified time (as sent by server) of the previously downloaded copy. Can be null.
+     * @param rangeStart   position to start from when resuming a partial download. 0 to download whole content.
+     * @param ifRange      validator of the partial download (as returned by {@link #getRangeValidator}). Mandatory
+     *                     if range start is not 0.
+     *
+     * @return connection
+     *
+     * @throws IOException re-thrown
+     */
+    public static URLConnection openConnection( final URL url,
+                                                final String eTag,
+                                                final Long lastModified,
+                                                final long rangeStart,
+                                                final String ifRange )
+        throws IOException
+    {
+        NullArgumentException.validateNotNull( url, "URL" );
+        if( rangeStart > 0 )
+        {
+            NullArgumentException.validateNotEmpty( ifRange, "If range validator" );
+        }
+        final URLConnection connection = url.openConnection();
+        if( connection instanceof HttpURLConnection )
+        {
+            if( eTag != null )
+            {
+                connection.setRequestProperty( "If-None-Match", eTag );
+            }
+            if( lastModified != null )
+            {
+                connection.setIfModifiedSince( lastModified );
+            }
+            if( rangeStart > 0 )
+            {
+                connection.setRequestProperty( "Range", "bytes=" + rangeStart + "-" );
+                connection.setRequestProperty( "If-Range", ifRange );
+                final int responseCode = ( (HttpURLConnection) connection ).getResponseCode();
+                if( responseCode != HttpURLConnection.HTTP_NOT_MODIFIED
+                    && ( responseCode < 200 || responseCode > 299 ) )
+                {
+                    LOGGER.debug( "[" + url + "] range rejected with " + responseCode + ", asking whole content" );
+                    ( (HttpURLConnection) connection ).disconnect();
+                    return openConnection( url, eTag, lastModified, 0, null );
+                }
+            }
+        }
+        return connection;
+    }
+
+    /**
+     * Checks if the server answered to a range request with the requested range.
+     *
+     * @param connection connection to check
+     *
+     * @return true if connection is an http connection and the response code is "206 Partial Content"
+     *
+     * @throws IOException re-thrown
+     */
+    public static boolean isPartialContent( final URLConnection connection )
+        throws IOException
+    {
+        return connection instanceof HttpURLConnection
+               && ( (HttpURLConnection) connection ).getResponseCode() == HttpURLConnection.HTTP_PARTIAL;
+    }
+
+    /**
+     * Returns the validator that can be used to resume a download of the content sent over the connection, meaning
+     * a strong entity tag or, if server did not send one, the last modified date.
+     *
+     * @param connection connection
+     *
+     * @return validator or null if connection is not an http connection or the server did not send any validator
+     */
+    public static String getRangeValidator( final URLConnection connection )
+    {
+        if( !( connection instanceof HttpURLConnection ) )
+        {
+            return null;
+        }
+        final String eTag = connection.getHeaderField( "ETag" );
+        if( eTag != null && !eTag.startsWith( "W/" ) )
+        {
+            return eTag;
+        }
+        return connection.getHeaderField( "Last-Modified" );
+    }
+
+    /**
+     * Checks if the server answered to a conditional request that the content did not change.
+     *
+     * @param connection connection to check
+     *
+     * @return true if connection is an http connection and the response code is "304 Not Modified"
+     *
+     * @throws IOException re-thrown
+     */
+    public static boolean isNotModified( final URLConnection connection )
+        throws IOException
+    {
+        return connection instanceof HttpURLConnection
+               && ( (HttpURLConnection) connection ).getResponseCode() == HttpURLConnection.HTTP_NOT_MODIFIED;
+    }
+
+    /**
+     * Returns the content length sent by server.
+     *
+     * @param connection connection
+     *
+     * @return content length or null if server did not send one
+     */
+    public static Long getContentLength( final URLConnection connection )
+    {
+        final String contentLength = connection.getHeaderField( "Content-Length" );
+        if( contentLength == null )
+        {
+            return null;
+        }
+        try
+        {
+            return Long.valueOf( contentLength.trim() );
+        }
+        catch( NumberFormatException ignore )
+        {
+            return null;
+        }
+    }
+
     /**
      * Feddback for downloading process.
      */
@@ -0,0 +1,280 @@
+/*
+ * Copyright 2026 OPS4J.
+ *
+ * Licensed  under the  Apache License,  Version 2.0  (the "License");
+ * you may not use  this file  except in  compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed  under the  License is distributed on an "AS IS" BASIS,
+ * WITHOUT  WARRANTIES OR CONDITIONS  OF ANY KIND, either  express  or
+ * implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.runner.platform.internal;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.jar.Attributes;
+import org.osgi.framework.Constants;
+
+/**
+ * Removes system packages that are not imported by any of the provisioned bundles. Imports are collected from
+ * Import-Package and DynamicImport-Package headers of bundles manifests. A bundle that requires the system bundle
+ * (Require-Bundle: system.bundle or the symbolic name of the framework, as org.eclipse.osgi) or dynamically imports
+ * everything (*) keeps all the system packages.
+ *
+ * @since 1.9.1, October 18, 2026
+ */
+class SystemPackagesPruner
+{
+
+    /**
+     * Name of the system bundle as used in Require-Bundle.
+     */
+    private static final String SYSTEM_BUNDLE = "system.bundle";
+
+    /**
+     * Names the system bundle can be required by.
+     */
+    private final Set<String> m_systemBundleNames;
+    /**
+     * Imported package names.
+     */
+    private final Set<String> m_imports;
+    /**
+     * Dynamically imported package prefixes (from wildcard imports as "javax.*"), including the ending dot.
+     */
+    private final List<String> m_dynamicPrefixes;
+    /**
+     * Removed packages.
+     */
+    private final List<String> m_removed;
+    /**
+     * Number of packages before pruning.
+     */
+    private int m_total;
+    /**
+     * True if all system packages must be kept.
+     */
+    private boolean m_keepAll;
+
+    /**
+     * Constructor.
+     */
+    SystemPackagesPruner()
+    {
+        this( null );
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param systemBundleName Bundle-SymbolicName of the framework system bundle; can be null
+     */
+    SystemPackagesPruner( final String systemBundleName )
+    {
+        m_systemBundleNames = new HashSet<String>();
+        m_systemBundleNames.add( SYSTEM_BUNDLE );
+        // symbolic name can carry directives as singleton:=true
+        for( String clause : splitClauses( systemBundleName ) )
+        {
+            m_systemBundleNames.addAll( getNames( clause ) );
+        }
+        m_imports = new HashSet<String>();
+        m_dynamicPrefixes = new ArrayList<String>();
+        m_removed = new ArrayList<String>();
+    }
+
+    /**
+     * Adds the imports of a bundle.
+     *
+     * @param attributes bundle manifest main attributes
+     */
+    void addBundle( final Attributes attributes )
+    {
+        for( String clause : splitClauses( attributes.getValue( Constants.IMPORT_PACKAGE ) ) )
+        {
+            m_imports.addAll( getNames( clause ) );
+        }
+        for( String clause : splitClauses( attributes.getValue( Constants.DYNAMICIMPORT_PACKAGE ) ) )
+        {
+            for( String name : getNames( clause ) )
+            {
+                if( "*".equals( name ) )
+                {
+                    m_keepAll = true;
+                }
+                else if( name.endsWith( ".*" ) )
+                {
+                    m_dynamicPrefixes.add( name.substring( 0, name.length() - 1 ) );
+                }
+                else
+                {
+                    m_imports.add( name );
+                }
+            }
+        }
+        for( String clause : splitClauses( attributes.getValue( Constants.REQUIRE_BUNDLE ) ) )
+        {
+            for( String name : getNames( clause ) )
+            {
+                if( m_systemBundleNames.contains( name ) )
+                {
+                    m_keepAll = true;
+                }
+            }
+        }
+    }
+
+    /**
+     * Removes the packages that are not imported by any of the added bundles.
+     *
+     * @param packages comma separated list of packages (as in Export-Package); can be null
+     *
+     * @return comma separated list of remaining packages
+     */
+    String prune( final String packages )
+    {
+        if( packages == null || m_keepAll )
+        {
+            return packages;
+        }
+        final StringBuilder kept = new StringBuilder();
+        for( String clause : splitClauses( packages ) )
+        {
+            m_total++;
+            if( isImported( getNames( clause ) ) )
+            {
+                if( kept.length() > 0 )
+                {
+                    kept.append( "," );
+                }
+                kept.append( clause );
+            }
+            else
+            {
+                m_removed.add( clause );
+            }
+        }
+        return kept.toString();
+    }
+
+    /**
+     * Returns the removed packages.
+     *
+     * @return list of removed package clauses
+     */
+    List<String> getRemoved()
+    {
+        return m_removed;
+    }
+
+    /**
+     * Returns a short report of what was removed.
+     *
+     * @return report
+     */
+    String getReport()
+    {
+        if( m_keepAll )
+        {
+            return "System packages not pruned as a bundle requires all system packages";
+        }
+        return "Pruned " + m_removed.size() + " of " + m_total + " system packages not imported by any bundle: "
+               + m_removed;
+    }
+
+    /**
+     * Checks if any of the package names is imported.
+     *
+     * @param names package names
+     *
+     * @return true if at least one is imported
+     */
+    private boolean isImported( final List<String> names )
+    {
+        for( String name : names )
+        {
+            if( m_imports.contains( name ) )
+            {
+                return true;
+            }
+            for( String prefix : m_dynamicPrefixes )
+            {
+                if( name.startsWith( prefix ) )
+                {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Splits a manifest header into clauses, ignoring commas between quotes (as in version ranges).
+     *
+     * @param header header value; can be null
+     *
+     * @return list of trimmed clauses, without empty ones
+     */
+    static List<String> splitClauses( final String header )
+    {
+        final List<String> clauses = new ArrayList<String>();
+        if( header != null )
+        {
+            boolean quoted = false;
+            int start = 0;
+            for( int i = 0; i <= header.length(); i++ )
+            {
+                final char c = i < header.length() ? header.charAt( i ) : ',';
+                if( c == '"' )
+                {
+                    quoted = !quoted;
+                }
+                else if( c == ',' && ( !quoted || i == header.length() ) )
+                {
+                    final String clause = header.substring( start, i ).trim();
+                    if( clause.length() > 0 )
+                    {
+                        clauses.add( clause );
+                    }
+                    start = i + 1;
+                }
+            }
+        }
+        return clauses;
+    }
+
+    /**
+     * Returns the package (or bundle) names of a clause, that are the segments before attributes and directives.
+     *
+     * @param clause header clause as "package1;package2;version=1.0"
+     *
+     * @return list of names
+     */
+    private static List<String> getNames( final String clause )
+    {
+        final List<String> names = new ArrayList<String>();
+        for( String segment : clause.split( ";" ) )
+        {
+            final String name = segment.trim();
+            if( name.indexOf( '=' ) >= 0 )
+            {
+                break;
+            }
+            if( name.length() > 0 )
+            {
+                names.add( name );
+            }
+        }
+        return names;
+    }
+
+}
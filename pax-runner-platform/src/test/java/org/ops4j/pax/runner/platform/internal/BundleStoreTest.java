@@ -0,0 +1,113 @@
+/*
+ * Copyright 2026 OPS4J.
+ *
+ * Licensed  under the  Apache License,  Version 2.0  (the "License");
+ * you may not use  this file  except in  compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed  under the  License is distributed on an "AS IS" BASIS,
+ * WITHOUT  WARRANTIES OR CONDITIONS  OF ANY KIND, either  express  or
+ * implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.runner.platform.internal;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import org.junit.After;
+import static org.junit.Assert.*;
+import org.junit.Before;
+import org.junit.Test;
+import org.ops4j.io.FileUtils;
+
+public class BundleStoreTest
+{
+
+    private File m_storeDir;
+    private File m_workDir;
+
+    @Before
+    public void setUp()
+        throws IOException
+    {
+        m_storeDir = createTempDir( "store" );
+        m_workDir = createTempDir( "runner" );
+    }
+
+    @After
+    public void tearDown()
+    {
+        FileUtils.delete( m_storeDir );
+        FileUtils.delete( m_workDir );
+    }
+
+    @Test( expected = IllegalArgumentException.class )
+    public void constructorWithNullDirectory()
+    {
+        new BundleStore( null );
+    }
+
+    // test that an url that was not stored is not found
+    @Test
+    public void getNotStored()
+        throws Exception
+    {
+        assertNull( new BundleStore( m_storeDir ).get( new URL( "file:notStored.jar" ) ) );
+    }
+
+    // test that a stored file can be found by the url it was downloaded from
+    @Test
+    public void putAndGet()
+        throws Exception
+    {
+        final BundleStore store = new BundleStore( m_storeDir );
+        final File file = FileUtils.getFileFromClasspath( "platform/bundle1.jar" );
+        final URL url = file.toURL();
+        final File stored = store.put( url, file );
+        assertTrue( "Stored file", stored.isFile() );
+        assertEquals( "Stored file", stored, store.get( url ) );
+        assertEquals( "Digest", BundleStore.digest( file ), stored.getName() );
+    }
+
+    // test that the same content downloaded from different urls is stored only once
+    @Test
+    public void putSameContentFromDifferentUrls()
+        throws Exception
+    {
+        final BundleStore store = new BundleStore( m_storeDir );
+        final File file = FileUtils.getFileFromClasspath( "platform/bundle1.jar" );
+        final File stored1 = store.put( new URL( "file:first.jar" ), file );
+        final File stored2 = store.put( new URL( "file:second.jar" ), file );
+        assertEquals( "Stored file", stored1, stored2 );
+    }
+
+    // test that linking makes the stored content available in the working directory
+    @Test
+    public void link()
+        throws Exception
+    {
+        final BundleStore store = new BundleStore( m_storeDir );
+        final File file = FileUtils.getFileFromClasspath( "platform/bundle1.jar" );
+        final File stored = store.put( file.toURL(), file );
+        final File destination = new File( m_workDir, "bundles/bundle1.jar" );
+        store.link( stored, destination );
+        assertTrue( "Linked file", destination.isFile() );
+        assertEquals( "Linked content", BundleStore.digest( file ), BundleStore.digest( destination ) );
+    }
+
+    private static File createTempDir( final String prefix )
+        throws IOException
+    {
+        final File dir = File.createTempFile( prefix, "" );
+        dir.delete();
+        dir.mkdirs();
+        return dir;
+    }
+
+}
@@ -0,0 +1,121 @@
+/*
+ * Copyright 2026 OPS4J.
+ *
+ * Licensed  under the  Apache License,  Version 2.0  (the "License");
+ * you may not use  this file  except in  compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed  under the  License is distributed on an "AS IS" BASIS,
+ * WITHOUT  WARRANTIES OR CONDITIONS  OF ANY KIND, either  express  or
+ * implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.runner.platform.internal;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import org.junit.After;
+import static org.junit.Assert.*;
+import org.junit.Before;
+import org.junit.Test;
+import org.ops4j.io.FileUtils;
+
+public class ClassDataSharingTest
+{
+
+    private File m_dir;
+    private File m_javaHome;
+    private String[] m_classpath;
+
+    @Before
+    public void setUp()
+        throws IOException
+    {
+        m_dir = File.createTempFile( "runner", "" );
+        m_dir.delete();
+        m_dir.mkdirs();
+        m_javaHome = new File( m_dir, "jdk" );
+        writeFile( new File( m_javaHome, "release" ), "JAVA_VERSION=\"17.0.2\"\n" );
+        writeFile( new File( m_dir, "felix.jar" ), "felix" );
+        m_classpath = new String[]{ "felix.jar" };
+    }
+
+    @After
+    public void tearDown()
+    {
+        FileUtils.delete( m_dir );
+    }
+
+    // test that an archive is recorded on first start and used afterwards
+    @Test
+    public void recordAndUse()
+        throws IOException
+    {
+        final String[] record = ClassDataSharing.getVMOptions( m_dir, m_classpath, m_javaHome.getPath() );
+        assertEquals( "Options", 1, record.length );
+        assertTrue( "Record option", record[ 0 ].startsWith( "-XX:ArchiveClassesAtExit=" ) );
+        final File archive = new File( record[ 0 ].substring( record[ 0 ].indexOf( '=' ) + 1 ) );
+        writeFile( archive, "archive" );
+
+        final String[] use = ClassDataSharing.getVMOptions( m_dir, m_classpath, m_javaHome.getPath() );
+        assertArrayEquals( "Use option", new String[]{ "-XX:SharedArchiveFile=" + archive.getPath() }, use );
+    }
+
+    // test that a changed classpath or jdk records a new archive and removes the old one
+    @Test
+    public void recordOnChange()
+        throws IOException
+    {
+        final String[] record = ClassDataSharing.getVMOptions( m_dir, m_classpath, m_javaHome.getPath() );
+        final File archive = new File( record[ 0 ].substring( record[ 0 ].indexOf( '=' ) + 1 ) );
+        writeFile( archive, "archive" );
+
+        writeFile( new File( m_javaHome, "release" ), "JAVA_VERSION=\"17.0.3\"\n" );
+        final String[] changed = ClassDataSharing.getVMOptions( m_dir, m_classpath, m_javaHome.getPath() );
+        assertTrue( "Record option", changed[ 0 ].startsWith( "-XX:ArchiveClassesAtExit=" ) );
+        assertFalse( "Same archive", changed[ 0 ].endsWith( archive.getPath() ) );
+        assertFalse( "Old archive removed", archive.exists() );
+    }
+
+    // test that nothing is added for jdks that do not support dynamic archives
+    @Test
+    public void unsupportedJava()
+        throws IOException
+    {
+        writeFile( new File( m_javaHome, "release" ), "JAVA_VERSION=\"1.8.0_292\"\n" );
+        assertEquals( "Java 8", 0, ClassDataSharing.getVMOptions( m_dir, m_classpath, m_javaHome.getPath() ).length );
+        assertEquals( "No release", 0, ClassDataSharing.getVMOptions( m_dir, m_classpath, m_dir.getPath() ).length );
+    }
+
+    @Test
+    public void getMajorVersion()
+    {
+        assertEquals( "Java 8", 8, ClassDataSharing.getMajorVersion( "\"1.8.0_292\"" ) );
+        assertEquals( "Java 17", 17, ClassDataSharing.getMajorVersion( "\"17.0.2\"" ) );
+        assertEquals( "Java 21", 21, ClassDataSharing.getMajorVersion( "21" ) );
+        assertEquals( "Unknown", 0, ClassDataSharing.getMajorVersion( null ) );
+        assertEquals( "Invalid", 0, ClassDataSharing.getMajorVersion( "unknown" ) );
+    }
+
+    private static void writeFile( final File file, final String content )
+        throws IOException
+    {
+        file.getParentFile().mkdirs();
+        final FileOutputStream os = new FileOutputStream( file );
+        try
+        {
+            os.write( content.getBytes( "UTF-8" ) );
+        }
+        finally
+        {
+            os.close();
+        }
+    }
+
+}
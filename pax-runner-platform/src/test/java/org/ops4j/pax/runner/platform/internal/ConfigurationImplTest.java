@@ -462,6 +462,75 @@ public class ConfigurationImplTest
         verify( propertyResolver );
     }
 
+    // normal flow
+    @Test
+    public void getDownloadThreads()
+    {
+        PropertyResolver propertyResolver = createMock( PropertyResolver.class );
+        expect( propertyResolver.get( "org.ops4j.pax.runner.platform.downloadThreads" ) ).andReturn( "8" );
+
+        replay( propertyResolver );
+        Configuration config = new ConfigurationImpl( propertyResolver );
+        assertEquals( "Download threads", Integer.valueOf( 8 ), config.getDownloadThreads() );
+        verify( propertyResolver );
+    }
+
+    // default value should be 1
+    @Test
+    public void getDefaultDownloadThreads()
+    {
+        PropertyResolver propertyResolver = createMock( PropertyResolver.class );
+        expect( propertyResolver.get( "org.ops4j.pax.runner.platform.downloadThreads" ) ).andReturn( null );
+        expect( propertyResolver.get( "org.ops4j.pax.runner.platform.prefetch" ) ).andReturn( null );
+
+        replay( propertyResolver );
+        Configuration config = new ConfigurationImpl( propertyResolver );
+        assertEquals( "Download threads", Integer.valueOf( 1 ), config.getDownloadThreads() );
+        verify( propertyResolver );
+    }
+
+    // default value should be 8 while prefetching
+    @Test
+    public void getDefaultDownloadThreadsWithPrefetch()
+    {
+        PropertyResolver propertyResolver = createMock( PropertyResolver.class );
+        expect( propertyResolver.get( "org.ops4j.pax.runner.platform.downloadThreads" ) ).andReturn( null );
+        expect( propertyResolver.get( "org.ops4j.pax.runner.platform.prefetch" ) ).andReturn( "true" );
+
+        replay( propertyResolver );
+        Configuration config = new ConfigurationImpl( propertyResolver );
+        assertEquals( "Download threads", Integer.valueOf( 8 ), config.getDownloadThreads() );
+        verify( propertyResolver );
+    }
+
+    // test that download threads set explicitly are used while prefetching too
+    @Test
+    public void getDownloadThreadsWithPrefetch()
+    {
+        PropertyResolver propertyResolver = createMock( PropertyResolver.class );
+        expect( propertyResolver.get( "org.ops4j.pax.runner.platform.downloadThreads" ) ).andReturn( "2" );
+        expect( propertyResolver.get( "org.ops4j.pax.runner.platform.prefetch" ) ).andReturn( "true" );
+
+        replay( propertyResolver );
+        Configuration config = new ConfigurationImpl( propertyResolver );
+        assertEquals( "Download threads", Integer.valueOf( 2 ), config.getDownloadThreads() );
+        assertTrue( "Prefetch", config.isPrefetch() );
+        verify( propertyResolver );
+    }
+
+    // test that an invalid value will not cause problems and will return the default
+    @Test
+    public void getDownloadThreadsWithInvalidValue()
+    {
+        PropertyResolver propertyResolver = createMock( PropertyResolver.class );
+        expect( propertyResolver.get( "org.ops4j.pax.runner.platform.downloadThreads" ) ).andReturn( "many" );
+
+        replay( propertyResolver );
+        Configuration config = new ConfigurationImpl( propertyResolver );
+        assertEquals( "Download threads", Integer.valueOf( 1 ), config.getDownloadThreads() );
+        verify( propertyResolver );
+    }
+
     /**
      * Tests that if vm options is set and contains only one option the correct array is returned.
      */
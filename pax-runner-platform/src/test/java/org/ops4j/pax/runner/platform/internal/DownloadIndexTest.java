@@ -0,0 +1,134 @@
+/*
+ * Copyright 2026 OPS4J.
+ *
+ * Licensed  under the  Apache License,  Version 2.0  (the "License");
+ * you may not use  this file  except in  compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed  under the  License is distributed on an "AS IS" BASIS,
+ * WITHOUT  WARRANTIES OR CONDITIONS  OF ANY KIND, either  express  or
+ * implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.runner.platform.internal;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URL;
+import java.util.Properties;
+import org.junit.After;
+import static org.junit.Assert.*;
+import org.junit.Before;
+import org.junit.Test;
+import org.ops4j.io.FileUtils;
+
+public class DownloadIndexTest
+{
+
+    private File m_workDir;
+
+    @Before
+    public void setUp()
+        throws IOException
+    {
+        m_workDir = File.createTempFile( "runner", "" );
+        m_workDir.delete();
+        m_workDir.mkdirs();
+    }
+
+    @After
+    public void tearDown()
+    {
+        FileUtils.delete( m_workDir );
+    }
+
+    // test that a working directory without an index results in an empty index
+    @Test
+    public void loadWithoutIndexFile()
+        throws Exception
+    {
+        final DownloadIndex index = DownloadIndex.load( m_workDir );
+        assertNull( index.get( new URL( "file:bundle.jar" ) ) );
+    }
+
+    // test that entries survive a flush / load cycle
+    @Test
+    public void flushAndLoad()
+        throws Exception
+    {
+        final URL url = new URL( "file:bundle.jar" );
+        final DownloadIndex.Entry entry = new DownloadIndex.Entry( "bundle_1.0.0.jar" );
+        entry.setSize( 10L );
+        entry.setLastModified( 20L );
+        entry.setSymbolicName( "bundle" );
+        entry.setVersion( "1.0.0" );
+        entry.setETag( "\"v1\"" );
+        entry.setHttpLastModified( 30L );
+        entry.setContentLength( 10L );
+        entry.setChecksum( "sha1" );
+        final DownloadIndex index = DownloadIndex.load( m_workDir );
+        index.put( url, entry );
+        index.flush();
+
+        final DownloadIndex reloaded = DownloadIndex.load( m_workDir );
+        assertEquals( "Entry", entry, reloaded.get( url ) );
+        assertEquals( "File name", "bundle_1.0.0.jar", reloaded.getFileName( url ) );
+    }
+
+    // test that an index written by older versions (url = file name) can be read
+    @Test
+    public void loadOldFormat()
+        throws Exception
+    {
+        final Properties properties = new Properties();
+        properties.setProperty( "file:bundle.jar", "bundle_1.0.0.jar" );
+        final File file = new File( m_workDir, DownloadIndex.INDEX_FILE );
+        file.getParentFile().mkdirs();
+        final OutputStream os = new FileOutputStream( file );
+        try
+        {
+            properties.store( os, "" );
+        }
+        finally
+        {
+            os.close();
+        }
+        final DownloadIndex index = DownloadIndex.load( m_workDir );
+        assertEquals( "File name", "bundle_1.0.0.jar", index.getFileName( new URL( "file:bundle.jar" ) ) );
+        assertNull( "Size", index.get( new URL( "file:bundle.jar" ) ).getSize() );
+    }
+
+    // test that an entry matches a file only while the file is not changed
+    @Test
+    public void matches()
+        throws Exception
+    {
+        final File file = new File( m_workDir, "bundle_1.0.0.jar" );
+        final OutputStream os = new FileOutputStream( file );
+        try
+        {
+            os.write( new byte[]{ 1, 2, 3 } );
+        }
+        finally
+        {
+            os.close();
+        }
+        final DownloadIndex.Entry entry = new DownloadIndex.Entry( file.getName() );
+        entry.setSize( file.length() );
+        entry.setLastModified( file.lastModified() );
+        assertFalse( "Matches without validity", entry.matches( file ) );
+        entry.setValid( true );
+        assertTrue( "Matches", entry.matches( file ) );
+        assertFalse( "Matches renamed", entry.copy( "other.jar" ).matches( file ) );
+        file.setLastModified( file.lastModified() - 10000 );
+        assertFalse( "Matches modified", entry.matches( file ) );
+    }
+
+}
@@ -0,0 +1,159 @@
+/*
+ * Copyright 2026 OPS4J.
+ *
+ * Licensed  under the  Apache License,  Version 2.0  (the "License");
+ * you may not use  this file  except in  compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed  under the  License is distributed on an "AS IS" BASIS,
+ * WITHOUT  WARRANTIES OR CONDITIONS  OF ANY KIND, either  express  or
+ * implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.runner.platform.internal;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import static org.junit.Assert.*;
+import org.junit.Test;
+import org.ops4j.pax.runner.platform.PlatformException;
+
+public class DownloadRegistryTest
+{
+
+    // test that urls pointing to the same resource are normalized to the same value
+    @Test
+    public void normalize()
+        throws Exception
+    {
+        assertEquals(
+            "http://repo.example.org/a/b.jar",
+            DownloadRegistry.normalize( new URL( "HTTP://Repo.Example.org:80/a/./c/../b.jar" ) )
+        );
+        assertEquals(
+            "https://repo.example.org:8443/b.jar",
+            DownloadRegistry.normalize( new URL( "https://repo.example.org:8443/b.jar" ) )
+        );
+        assertEquals(
+            DownloadRegistry.normalize( new URL( "file:/tmp/b.jar" ) ),
+            DownloadRegistry.normalize( new URL( "file:///tmp/b.jar" ) )
+        );
+    }
+
+    // test that the same url is downloaded only once, even if requested concurrently
+    @Test
+    public void downloadOnce()
+        throws Exception
+    {
+        final DownloadRegistry registry = new DownloadRegistry();
+        final AtomicInteger calls = new AtomicInteger();
+        final CountDownLatch started = new CountDownLatch( 1 );
+        final DownloadRegistry.Download file = new DownloadRegistry.Download(
+            new URL( "http://repo/b.jar" ), new File( "bundle.jar" ), true, null, false, false, 100
+        );
+        final Callable<DownloadRegistry.Download> download = new Callable<DownloadRegistry.Download>()
+        {
+            public DownloadRegistry.Download call()
+                throws Exception
+            {
+                calls.incrementAndGet();
+                started.countDown();
+                Thread.sleep( 100 );
+                return file;
+            }
+        };
+        final ExecutorService executor = Executors.newFixedThreadPool( 4 );
+        try
+        {
+            final List<Future<DownloadRegistry.Download>> results = new ArrayList<Future<DownloadRegistry.Download>>();
+            for( final String url : new String[]{ "http://repo/b.jar", "HTTP://REPO:80/b.jar", "http://repo/./b.jar" } )
+            {
+                results.add(
+                    executor.submit(
+                        new Callable<DownloadRegistry.Download>()
+                        {
+                            public DownloadRegistry.Download call()
+                                throws Exception
+                            {
+                                return registry.download( new URL( url ), download );
+                            }
+                        }
+                    )
+                );
+            }
+            for( Future<DownloadRegistry.Download> result : results )
+            {
+                assertSame( "Downloaded file", file, result.get() );
+            }
+        }
+        finally
+        {
+            executor.shutdownNow();
+        }
+        assertEquals( "Number of downloads", 1, calls.get() );
+        assertEquals( "Finished downloads", 1, registry.getFinished().size() );
+    }
+
+    // test that download failures are reported to all requesters
+    @Test( expected = PlatformException.class )
+    public void downloadFailure()
+        throws Exception
+    {
+        final DownloadRegistry registry = new DownloadRegistry();
+        final Callable<DownloadRegistry.Download> download = new Callable<DownloadRegistry.Download>()
+        {
+            public DownloadRegistry.Download call()
+                throws Exception
+            {
+                throw new PlatformException( "failed" );
+            }
+        };
+        try
+        {
+            registry.download( new URL( "file:bundle.jar" ), download );
+            fail( "Expected to fail" );
+        }
+        catch( PlatformException ignore )
+        {
+            // expected
+        }
+        registry.download( new URL( "file:bundle.jar" ), download );
+    }
+
+    // test that files with same digest are shared
+    @Test
+    public void share()
+        throws IOException
+    {
+        final DownloadRegistry registry = new DownloadRegistry();
+        final File first = File.createTempFile( "runner", ".jar" );
+        final File second = File.createTempFile( "runner", ".jar" );
+        try
+        {
+            assertSame( "First", first, registry.share( "abc", first ) );
+            assertSame( "Second", first, registry.share( "abc", second ) );
+            assertSame( "Other digest", second, registry.share( "def", second ) );
+            assertSame( "Without digest", second, registry.share( null, second ) );
+        }
+        finally
+        {
+            first.delete();
+            second.delete();
+        }
+    }
+
+}
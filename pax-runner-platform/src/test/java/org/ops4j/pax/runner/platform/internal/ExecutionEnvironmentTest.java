@@ -98,4 +98,20 @@ public class ExecutionEnvironmentTest
         );
     }
 
+    // test that a combination of built in EEs is resolved the same when requested more times
+    @Test
+    public void createPackageListWithBuiltInEEsMoreTimes()
+        throws Exception
+    {
+        final ExecutionEnvironment ee = new ExecutionEnvironment( "NONE,cdc-1.1/foundation-1.1" );
+        assertEquals(
+            "System packages",
+            "javax.microedition.io,javax.microedition.pki,javax.security.auth.x500",
+            ee.getSystemPackages()
+        );
+        final ExecutionEnvironment same = new ExecutionEnvironment( "none,CDC-1.1/Foundation-1.1" );
+        assertEquals( "System packages", ee.getSystemPackages(), same.getSystemPackages() );
+        assertEquals( "Execution environment", ee.getExecutionEnvironment(), same.getExecutionEnvironment() );
+    }
+
 }
\ No newline at end of file
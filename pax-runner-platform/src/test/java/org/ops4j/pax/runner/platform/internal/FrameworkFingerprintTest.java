@@ -0,0 +1,87 @@
+/*
+ * Copyright 2026 OPS4J.
+ *
+ * Licensed  under the  Apache License,  Version 2.0  (the "License");
+ * you may not use  this file  except in  compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed  under the  License is distributed on an "AS IS" BASIS,
+ * WITHOUT  WARRANTIES OR CONDITIONS  OF ANY KIND, either  express  or
+ * implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.runner.platform.internal;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import static org.easymock.EasyMock.*;
+import org.junit.After;
+import static org.junit.Assert.*;
+import org.junit.Before;
+import org.junit.Test;
+import org.ops4j.io.FileUtils;
+import org.ops4j.pax.runner.platform.BundleReference;
+import org.ops4j.pax.runner.platform.BundleReferenceBean;
+import org.ops4j.pax.runner.platform.Configuration;
+
+public class FrameworkFingerprintTest
+{
+
+    private File m_workDir;
+    private Configuration m_configuration;
+    private PlatformContextImpl m_context;
+
+    @Before
+    public void setUp()
+        throws IOException
+    {
+        m_workDir = File.createTempFile( "runner", "" );
+        m_workDir.delete();
+        m_workDir.mkdirs();
+        m_configuration = createMock( Configuration.class );
+        expect( m_configuration.getStartLevel() ).andReturn( 6 ).anyTimes();
+        expect( m_configuration.getBundleStartLevel() ).andReturn( 5 ).anyTimes();
+        expect( m_configuration.getFrameworkProfile() ).andReturn( "runner" ).anyTimes();
+        expect( m_configuration.getBootDelegation() ).andReturn( null ).anyTimes();
+        replay( m_configuration );
+        m_context = new PlatformContextImpl();
+        m_context.setConfiguration( m_configuration );
+        m_context.setSystemPackages( "javax.swing" );
+        m_context.setExecutionEnvironment( "J2SE-1.5" );
+        final List<BundleReference> bundles = new ArrayList<BundleReference>();
+        bundles.add( new BundleReferenceBean( new File( m_workDir, "bundle1.jar" ).toURI().toURL() ) );
+        m_context.setBundles( bundles );
+    }
+
+    @After
+    public void tearDown()
+    {
+        FileUtils.delete( m_workDir );
+    }
+
+    // test that a saved fingerprint is unchanged as long as the bundles do not change
+    @Test
+    public void saveAndCompare()
+        throws Exception
+    {
+        final FrameworkFingerprint fingerprint = FrameworkFingerprint.create( m_workDir, m_context, "felix 1.0" );
+        assertFalse( "Unchanged before save", fingerprint.isUnchanged() );
+        fingerprint.save();
+        assertTrue( "Unchanged", FrameworkFingerprint.create( m_workDir, m_context, "felix 1.0" ).isUnchanged() );
+        assertFalse(
+            "Other framework", FrameworkFingerprint.create( m_workDir, m_context, "equinox 1.0" ).isUnchanged()
+        );
+
+        m_context.getBundles().add( new BundleReferenceBean( new File( m_workDir, "bundle2.jar" ).toURI().toURL() ) );
+        assertFalse( "Bundle added", FrameworkFingerprint.create( m_workDir, m_context, "felix 1.0" ).isUnchanged() );
+        verify( m_configuration );
+    }
+
+}
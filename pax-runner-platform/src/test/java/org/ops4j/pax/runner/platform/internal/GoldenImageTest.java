@@ -0,0 +1,92 @@
+/*
+ * Copyright 2026 OPS4J.
+ *
+ * Licensed  under the  Apache License,  Version 2.0  (the "License");
+ * you may not use  this file  except in  compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed  under the  License is distributed on an "AS IS" BASIS,
+ * WITHOUT  WARRANTIES OR CONDITIONS  OF ANY KIND, either  express  or
+ * implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.runner.platform.internal;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import org.junit.After;
+import static org.junit.Assert.*;
+import org.junit.Before;
+import org.junit.Test;
+import org.ops4j.io.FileUtils;
+
+public class GoldenImageTest
+{
+
+    private File m_dir;
+
+    @Before
+    public void setUp()
+        throws IOException
+    {
+        m_dir = File.createTempFile( "runner", "" );
+        m_dir.delete();
+        m_dir.mkdirs();
+    }
+
+    @After
+    public void tearDown()
+    {
+        FileUtils.delete( m_dir );
+    }
+
+    // test that a captured working directory is cloned with the same content and modification times
+    @Test
+    public void captureAndClone()
+        throws Exception
+    {
+        final File workDir = new File( m_dir, "work" );
+        final File bundle = createFile( new File( workDir, "bundles/bundle_1.0.0.jar" ) );
+        final File cache = createFile( new File( workDir, "felix/cache/runner/bundle1/bundle.jar" ) );
+        createFile( new File( workDir, "bundles/bundle_2.0.0.jar.part" ) );
+        final GoldenImage image = new GoldenImage( new File( workDir, "golden" ) );
+        assertFalse( "Image exists before capture", image.exists() );
+        image.capture( workDir );
+        assertTrue( "Image exists after capture", image.exists() );
+
+        final File clone = new File( m_dir, "clone" );
+        image.cloneTo( clone );
+        final File clonedBundle = new File( clone, "bundles/bundle_1.0.0.jar" );
+        assertEquals( "Bundle size", bundle.length(), clonedBundle.length() );
+        assertEquals( "Bundle modified", bundle.lastModified(), clonedBundle.lastModified() );
+        final File clonedCache = new File( clone, "felix/cache/runner/bundle1/bundle.jar" );
+        assertEquals( "Cache modified", cache.lastModified(), clonedCache.lastModified() );
+        assertFalse( "Partial download", new File( clone, "bundles/bundle_2.0.0.jar.part" ).exists() );
+        assertFalse( "Image in clone", new File( clone, "golden" ).exists() );
+        assertFalse( "Marker in clone", new File( clone, GoldenImage.MARKER_FILE ).exists() );
+    }
+
+    private static File createFile( final File file )
+        throws IOException
+    {
+        file.getParentFile().mkdirs();
+        final FileOutputStream os = new FileOutputStream( file );
+        try
+        {
+            os.write( file.getName().getBytes( "UTF-8" ) );
+        }
+        finally
+        {
+            os.close();
+        }
+        file.setLastModified( file.lastModified() - 100000 );
+        return file;
+    }
+
+}
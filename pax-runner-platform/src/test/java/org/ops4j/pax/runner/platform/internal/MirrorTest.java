@@ -0,0 +1,192 @@
+/*
+ * Copyright 2026 OPS4J.
+ *
+ * Licensed  under the  Apache License,  Version 2.0  (the "License");
+ * you may not use  this file  except in  compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed  under the  License is distributed on an "AS IS" BASIS,
+ * WITHOUT  WARRANTIES OR CONDITIONS  OF ANY KIND, either  express  or
+ * implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.runner.platform.internal;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FileReader;
+import java.io.IOException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.jar.Attributes;
+import java.util.jar.JarOutputStream;
+import java.util.jar.Manifest;
+import org.junit.After;
+import static org.junit.Assert.*;
+import org.junit.Before;
+import org.junit.Test;
+import org.ops4j.io.FileUtils;
+import org.ops4j.pax.runner.platform.BundleReference;
+import org.ops4j.pax.runner.platform.BundleReferenceBean;
+import org.ops4j.pax.runner.platform.LocalSystemFile;
+import org.ops4j.pax.runner.platform.SystemFileReferenceBean;
+import org.ops4j.util.property.PropertyResolver;
+
+public class MirrorTest
+{
+
+    private File m_dir;
+
+    @Before
+    public void setUp()
+        throws IOException
+    {
+        m_dir = File.createTempFile( "runner", "" );
+        m_dir.delete();
+        m_dir.mkdirs();
+    }
+
+    @After
+    public void tearDown()
+    {
+        FileUtils.delete( m_dir );
+    }
+
+    // test that all files are mirrored and launch descriptor refers only mirrored files
+    @Test
+    public void export()
+        throws Exception
+    {
+        final File workDir = new File( m_dir, "work" );
+        final File systemFile = createFile( new File( workDir, "bundles/felix.jar" ) );
+        final File handlerFile = createFile( new File( workDir, "bundles/handler.jar" ) );
+        final File platformFile = createFile( new File( workDir, "bundles/shell.jar" ) );
+        final File userFile = createFile( new File( workDir, "bundles/user.jar" ) );
+        // same name as platform bundle but different file
+        final File otherFile = createFile( new File( workDir, "other/shell.jar" ) );
+
+        final Map<String, String> options = new HashMap<String, String>();
+        options.put( "platform", "felix" );
+        options.put( "version", "1.6.0" );
+        options.put( "org.ops4j.pax.runner.platform.systemPackages", "javax.swing" );
+        final PlatformContextImpl context = new PlatformContextImpl();
+        context.setConfiguration(
+            new ConfigurationImpl(
+                new PropertyResolver()
+                {
+                    public String get( final String name )
+                    {
+                        return options.get( name );
+                    }
+                }
+            )
+        );
+        final Properties properties = new Properties();
+        properties.setProperty( "felix.log.level", "4" );
+        context.setProperties( properties );
+
+        final List<LocalSystemFile> systemFiles = new ArrayList<LocalSystemFile>();
+        systemFiles.add(
+            new LocalSystemFileImpl(
+                new SystemFileReferenceBean( "handler", handlerFile.toURI().toURL(), false ), handlerFile
+            )
+        );
+        final List<BundleReference> platformBundles = new ArrayList<BundleReference>();
+        platformBundles.add(
+            new LocalBundleReference(
+                new BundleReferenceBean( "shell", new URL( "http://repository/shell.jar" ), 3, true, false ),
+                platformFile
+            )
+        );
+        final List<BundleReference> userBundles = new ArrayList<BundleReference>();
+        userBundles.add(
+            new LocalBundleReference(
+                new BundleReferenceBean( "user", new URL( "http://repository/user.jar" ), 5, false, true ), userFile
+            )
+        );
+        userBundles.add(
+            new LocalBundleReference(
+                new BundleReferenceBean( "other", new URL( "http://repository/other.jar" ), null, true, false ),
+                otherFile
+            )
+        );
+
+        final File mirrorDir = new File( m_dir, "mirror" );
+        new Mirror( mirrorDir ).export(
+            context, "Felix 1.6.0", "org.osgi.framework", "tui", systemFile, systemFiles, platformBundles, userBundles
+        );
+
+        for( String name : new String[]{ "felix.jar", "handler.jar", "shell.jar", "user.jar", "1-shell.jar" } )
+        {
+            assertTrue( "Mirrored " + name, new File( mirrorDir, Mirror.REPOSITORY_DIRECTORY + "/" + name ).isFile() );
+        }
+
+        final List<String> args = readLines( new File( mirrorDir, Mirror.ARGS_FILE ) );
+        assertTrue( "Platform", args.contains( "--platform=felix" ) );
+        assertTrue( "Version", args.contains( "--version=1.6.0" ) );
+        assertTrue( "Definition", args.contains( "--definitionURL=file:platform.xml" ) );
+        assertTrue( "System packages", args.contains( "--systemPackages=javax.swing" ) );
+        assertTrue( "Handler", args.contains( "--bcp/a=file:repository/handler.jar" ) );
+        assertTrue( "Properties", args.contains( "scan-file:file:properties.txt" ) );
+        assertTrue( "User bundle", args.contains( "scan-bundle:file:repository/user.jar@5@nostart@update" ) );
+        assertTrue( "Other bundle", args.contains( "scan-bundle:file:repository/1-shell.jar" ) );
+        assertEquals(
+            "Properties file",
+            Arrays.asList( "-Dfelix.log.level=4" ),
+            readLines( new File( mirrorDir, Mirror.PROPERTIES_FILE ) )
+        );
+
+        final PlatformDefinitionImpl definition =
+            new PlatformDefinitionImpl( new FileInputStream( new File( mirrorDir, Mirror.DEFINITION_FILE ) ), 1 );
+        assertEquals( "System package", "file:repository/felix.jar", definition.getSystemPackage().toExternalForm() );
+        assertEquals( "Packages", "org.osgi.framework", definition.getPackages() );
+        final List<BundleReference> bundles = definition.getPlatformBundles( "tui" );
+        assertEquals( "Platform bundles", 1, bundles.size() );
+        assertEquals( "Platform bundle", "file:repository/shell.jar", bundles.get( 0 ).getURL().toExternalForm() );
+        assertEquals( "Platform bundle start level", Integer.valueOf( 3 ), bundles.get( 0 ).getStartLevel() );
+    }
+
+    private static File createFile( final File file )
+        throws IOException
+    {
+        file.getParentFile().mkdirs();
+        final Manifest manifest = new Manifest();
+        manifest.getMainAttributes().put( Attributes.Name.MANIFEST_VERSION, "1.0" );
+        manifest.getMainAttributes().putValue( "Bundle-SymbolicName", file.getPath() );
+        new JarOutputStream( new FileOutputStream( file ), manifest ).close();
+        return file;
+    }
+
+    private static List<String> readLines( final File file )
+        throws IOException
+    {
+        final List<String> lines = new ArrayList<String>();
+        final BufferedReader reader = new BufferedReader( new FileReader( file ) );
+        try
+        {
+            String line;
+            while( ( line = reader.readLine() ) != null )
+            {
+                lines.add( line );
+            }
+        }
+        finally
+        {
+            reader.close();
+        }
+        return lines;
+    }
+
+}
@@ -273,4 +273,57 @@ public class PlatformDefinitionImplTest
         assertEquals( "Bundle 4 @start TRUE from default profile", true, references.get( 3 ).shouldStart());
         assertEquals( "Bundle 4 @update FALSE from default profile", false, references.get( 3 ).shouldUpdate());
     }
+    // test that profiles extending each other do not loop forever
+    @Test
+    public void getPlatformBundlesWithCyclicInheritance()
+        throws IOException, ParserConfigurationException, SAXException
+    {
+        PlatformDefinition definition = new PlatformDefinitionImpl(
+            new ByteArrayInputStream(
+                ( "<platform><system>file:system.jar</system>"
+                  + "<profile name=\"a\" extends=\"b\"><bundle><url>file:bundle1.jar</url></bundle></profile>"
+                  + "<profile name=\"b\" extends=\"a\"><bundle><url>file:bundle2.jar</url></bundle></profile>"
+                  + "</platform>" ).getBytes()
+            ),
+            10
+        );
+        List<BundleReference> references = definition.getPlatformBundles( "a" );
+        assertEquals( "Number of bundle references", 2, references.size() );
+        assertEquals( "Bundle 2 url", new URL( "file:bundle2.jar" ), references.get( 0 ).getURL() );
+        assertEquals( "Bundle 1 url", new URL( "file:bundle1.jar" ), references.get( 1 ).getURL() );
+        // resolved once more from remembered bundles
+        assertEquals( "Number of bundle references", 2, definition.getPlatformBundles( "a" ).size() );
+    }
+
+    // test that a bundle without url is reported as invalid syntax
+    @Test( expected = IOException.class )
+    public void constructorWithBundleWithoutURL()
+        throws IOException, ParserConfigurationException, SAXException
+    {
+        new PlatformDefinitionImpl(
+            new ByteArrayInputStream(
+                ( "<platform><system>file:system.jar</system>"
+                  + "<profile name=\"a\"><bundle><name>Bundle 1</name></bundle></profile>"
+                  + "</platform>" ).getBytes()
+            ),
+            10
+        );
+    }
+
+    // test that an invalid bundle url is reported while parsing, even if the profile is not used
+    @Test( expected = IOException.class )
+    public void constructorWithInvalidBundleURL()
+        throws IOException, ParserConfigurationException, SAXException
+    {
+        new PlatformDefinitionImpl(
+            new ByteArrayInputStream(
+                ( "<platform><system>file:system.jar</system>"
+                  + "<profile name=\"a\"><bundle><url>file:bundle1.jar</url></bundle></profile>"
+                  + "<profile name=\"b\"><bundle><url>unknown:bundle2.jar</url></bundle></profile>"
+                  + "</platform>" ).getBytes()
+            ),
+            10
+        );
+    }
+
 }
@@ -92,6 +92,18 @@ public class PlatformImplTest
         start( bundles );
     }
 
+    // test that bundles are downloaded in parallel
+    @Test
+    public void startWithBundlesAndMoreDownloadThreads()
+        throws Exception
+    {
+        List<BundleReference> bundles = new ArrayList<BundleReference>();
+        bundles.add( new BundleReferenceBean( FileUtils.getFileFromClasspath( "platform/bundle1.jar" ).toURL() ) );
+        bundles.add( new BundleReferenceBean( FileUtils.getFileFromClasspath( "platform/bundle2.jar" ).toURL() ) );
+        bundles.add( new BundleReferenceBean( FileUtils.getFileFromClasspath( "platform/bundle1.jar" ).toURL() ) );
+        start( bundles, FileUtils.getFileFromClasspath( "platform/system.jar" ).toURL(), 4 );
+    }
+
     // test that platform starts even without bundles to be installed
     @Test
     public void startWithoutBundles()
@@ -137,6 +149,12 @@ public class PlatformImplTest
 
     public void start( final List<BundleReference> bundles, URL systemBundleURL )
         throws Exception
+    {
+        start( bundles, systemBundleURL, 1 );
+    }
+
+    public void start( final List<BundleReference> bundles, URL systemBundleURL, int downloadThreads )
+        throws Exception
     {
         final JavaRunner javaRunner = createMock( JavaRunner.class );
         javaRunner.exec( (String[]) notNull(), (String[]) notNull(), (String) notNull(), (String[]) notNull(),
@@ -150,12 +168,20 @@ public class PlatformImplTest
         expect( m_config.getWorkingDirectory() ).andReturn( m_workDir );
         m_context.setWorkingDirectory( new File( m_workDir ) );
         expect( m_config.useAbsoluteFilePaths() ).andReturn( false );
+        expect( m_config.getGoldenImage() ).andReturn( null );
         m_context.setFilePathStrategy( (FilePathStrategy) notNull() );
         expect( m_config.isOverwrite() ).andReturn( true );
         expect( m_config.isOverwriteUserBundles() ).andReturn( false );
         expect( m_config.isOverwriteSystemBundles() ).andReturn( false );
         expect( m_config.isDownloadFeedback() ).andReturn( false );
+        expect( m_config.getDownloadThreads() ).andReturn( downloadThreads );
+        expect( m_config.getBundleStore() ).andReturn( null );
         expect( m_config.isAutoWrap() ).andReturn( false );
+        expect( m_config.pruneSystemPackages() ).andReturn( false );
+        expect( m_config.isSmartClean() ).andReturn( false );
+        expect( m_config.useClassDataSharing() ).andReturn( false );
+        expect( m_config.getMirror() ).andReturn( null );
+        expect( m_config.isPrefetch() ).andReturn( false );
         expect( m_config.keepOriginalUrls() ).andReturn( false ).anyTimes();
         expect( m_config.getJavaHome() ).andReturn( "javaHome" );
         expect( m_definition.getSystemPackage() ).andReturn( systemBundleURL );
@@ -192,15 +218,15 @@ public class PlatformImplTest
         verify( m_builder, m_definition, m_config, m_context, m_bundleContext, m_bundle, javaRunner, filePathStrategy );
     }
 
-    @Test( expected = PlatformException.class )
-    public void validateBundleWithNoManifestAndCheckAttributes()
+    @Test
+    public void createIndexEntryWithNoManifest()
         throws Exception
     {
         replay( m_builder, m_bundleContext, m_config );
         PlatformImpl platform = new PlatformImpl( m_builder );
         File file = FileUtils.getFileFromClasspath( "platform/withoutManifest.jar" );
-        URL url = file.toURL();
-        platform.validateBundle( url, file );
+        assertFalse( "Valid", platform.createIndexEntry( file ).isValid() );
+        verify( m_builder, m_bundleContext, m_config );
     }
 
     @Test
@@ -217,15 +243,15 @@ public class PlatformImplTest
         verify( m_builder, m_bundleContext, m_config );
     }
 
-    @Test( expected = PlatformException.class )
-    public void validateBundleWithInvalidFile()
+    @Test
+    public void createIndexEntryWithInvalidFile()
         throws Exception
     {
         replay( m_builder, m_bundleContext, m_config );
         PlatformImpl platform = new PlatformImpl( m_builder );
         File file = FileUtils.getFileFromClasspath( "platform/invalid.jar" );
-        URL url = file.toURL();
-        platform.validateBundle( url, file );
+        assertFalse( "Valid", platform.createIndexEntry( file ).isValid() );
+        verify( m_builder, m_bundleContext, m_config );
     }
 
     @Test
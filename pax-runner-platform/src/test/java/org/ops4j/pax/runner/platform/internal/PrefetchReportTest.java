@@ -0,0 +1,146 @@
+/*
+ * Copyright 2026 OPS4J.
+ *
+ * Licensed  under the  Apache License,  Version 2.0  (the "License");
+ * you may not use  this file  except in  compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed  under the  License is distributed on an "AS IS" BASIS,
+ * WITHOUT  WARRANTIES OR CONDITIONS  OF ANY KIND, either  express  or
+ * implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.runner.platform.internal;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Properties;
+import org.junit.After;
+import static org.junit.Assert.*;
+import org.junit.Before;
+import org.junit.Test;
+import org.ops4j.io.FileUtils;
+
+public class PrefetchReportTest
+{
+
+    private File m_dir;
+
+    @Before
+    public void setUp()
+        throws IOException
+    {
+        m_dir = File.createTempFile( "runner", "" );
+        m_dir.delete();
+        m_dir.mkdirs();
+    }
+
+    @After
+    public void tearDown()
+    {
+        FileUtils.delete( m_dir );
+    }
+
+    // test that totals and per url details are saved and cache hits are verified against the recorded digest
+    @Test
+    public void verifyAndSave()
+        throws Exception
+    {
+        final File downloaded = createFile( new File( m_dir, "bundles/a.jar" ), "downloaded" );
+        final File cached = createFile( new File( m_dir, "bundles/b.jar" ), "cached" );
+        final File changed = createFile( new File( m_dir, "bundles/c.jar" ), "changed" );
+        final List<DownloadRegistry.Download> downloads = new ArrayList<DownloadRegistry.Download>();
+        downloads.add( new DownloadRegistry.Download(
+            new URL( "http://repo.example.org/c.jar" ), changed, true, "0000", true, false, 1
+        ) );
+        downloads.add( new DownloadRegistry.Download(
+            new URL( "http://repo.example.org/a.jar" ),
+            downloaded,
+            true,
+            BundleStore.digest( downloaded ),
+            false,
+            true,
+            20
+        ) );
+        downloads.add( new DownloadRegistry.Download(
+            new URL( "http://repo.example.org/b.jar" ), cached, true, BundleStore.digest( cached ), true, false, 3
+        ) );
+        final PrefetchReport report = new PrefetchReport( downloads, 25 );
+
+        assertEquals( "Corrupted", Arrays.asList( "http://repo.example.org/c.jar" ), report.verify() );
+        final File file = report.save( m_dir );
+        assertEquals( "Report file", new File( m_dir, PrefetchReport.REPORT_FILE ), file );
+
+        final Properties properties = load( file );
+        assertEquals( "Artifacts", "3", properties.getProperty( "prefetch.artifacts" ) );
+        assertEquals( "Downloads", "1", properties.getProperty( "prefetch.downloads" ) );
+        assertEquals( "Cache hits", "2", properties.getProperty( "prefetch.cacheHits" ) );
+        assertEquals( "Verified", "2", properties.getProperty( "prefetch.verified" ) );
+        assertEquals(
+            "Bytes",
+            String.valueOf( downloaded.length() + cached.length() + changed.length() ),
+            properties.getProperty( "prefetch.bytes" )
+        );
+        assertEquals(
+            "Downloaded bytes",
+            String.valueOf( downloaded.length() ),
+            properties.getProperty( "prefetch.downloadedBytes" )
+        );
+        assertEquals( "Millis", "25", properties.getProperty( "prefetch.millis" ) );
+        // artifacts are sorted by url
+        assertEquals( "Url 1", "http://repo.example.org/a.jar", properties.getProperty( "artifact.1.url" ) );
+        assertEquals( "Cache hit 1", "false", properties.getProperty( "artifact.1.cacheHit" ) );
+        assertEquals( "Millis 1", "20", properties.getProperty( "artifact.1.millis" ) );
+        assertEquals( "Checksum 1",
+            PrefetchReport.CHECKSUM_PUBLISHED, properties.getProperty( "artifact.1.checksum" ) );
+        assertEquals( "File 2", cached.getAbsolutePath(), properties.getProperty( "artifact.2.file" ) );
+        assertEquals( "Checksum 2", PrefetchReport.CHECKSUM_CACHE, properties.getProperty( "artifact.2.checksum" ) );
+        assertEquals( "Checksum 3", PrefetchReport.CHECKSUM_MISMATCH, properties.getProperty( "artifact.3.checksum" ) );
+        assertNull( "Artifact 4", properties.getProperty( "artifact.4.url" ) );
+    }
+
+    private static File createFile( final File file, final String content )
+        throws IOException
+    {
+        file.getParentFile().mkdirs();
+        final FileOutputStream os = new FileOutputStream( file );
+        try
+        {
+            os.write( content.getBytes( "UTF-8" ) );
+        }
+        finally
+        {
+            os.close();
+        }
+        return file;
+    }
+
+    private static Properties load( final File file )
+        throws IOException
+    {
+        final Properties properties = new Properties();
+        final InputStream in = new FileInputStream( file );
+        try
+        {
+            properties.load( in );
+        }
+        finally
+        {
+            in.close();
+        }
+        return properties;
+    }
+
+}
@@ -0,0 +1,375 @@
+/*
+ * Copyright 2026 OPS4J.
+ *
+ * Licensed  under the  Apache License,  Version 2.0  (the "License");
+ * you may not use  this file  except in  compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed  under the  License is distributed on an "AS IS" BASIS,
+ * WITHOUT  WARRANTIES OR CONDITIONS  OF ANY KIND, either  express  or
+ * implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.runner.platform.internal;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.URL;
+import java.net.URLConnection;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import org.junit.After;
+import static org.junit.Assert.*;
+import org.junit.Before;
+import org.junit.Test;
+
+public class StreamUtilsTest
+{
+
+    private static final String ETAG = "\"v1\"";
+    private static final String CONTENT = "bundle content";
+    private static final String ABC_SHA1 = "a9993e364706816aba3e25717850c26c9cd0d89d";
+
+    private ServerSocket m_serverSocket;
+    private List<String> m_requests;
+
+    @Before
+    public void setUp()
+        throws IOException
+    {
+        m_requests = Collections.synchronizedList( new ArrayList<String>() );
+        m_serverSocket = new ServerSocket( 0 );
+        final Thread server = new Thread( "Test HTTP server" )
+        {
+            @Override
+            public void run()
+            {
+                while( !m_serverSocket.isClosed() )
+                {
+                    try
+                    {
+                        serve( m_serverSocket.accept() );
+                    }
+                    catch( IOException ignore )
+                    {
+                        // server socket closed
+                    }
+                }
+            }
+        };
+        server.setDaemon( true );
+        server.start();
+    }
+
+    @After
+    public void tearDown()
+        throws IOException
+    {
+        m_serverSocket.close();
+    }
+
+    // a minimal http server that answers with 304 when the request has the current etag and supports ranges
+    private void serve( final Socket socket )
+        throws IOException
+    {
+        try
+        {
+            final BufferedReader reader = new BufferedReader( new InputStreamReader( socket.getInputStream() ) );
+            String ifNoneMatch = null;
+            String ifRange = null;
+            Integer rangeStart = null;
+            String line;
+            while( ( line = reader.readLine() ) != null && line.length() > 0 )
+            {
+                if( line.toLowerCase().startsWith( "if-none-match:" ) )
+                {
+                    ifNoneMatch = line.substring( "if-none-match:".length() ).trim();
+                }
+                if( line.toLowerCase().startsWith( "if-range:" ) )
+                {
+                    ifRange = line.substring( "if-range:".length() ).trim();
+                }
+                if( line.toLowerCase().startsWith( "range: bytes=" ) )
+                {
+                    final String range = line.substring( "range: bytes=".length() ).trim();
+                    rangeStart = Integer.valueOf( range.substring( 0, range.indexOf( '-' ) ) );
+                }
+            }
+            final StringBuilder response = new StringBuilder();
+            if( rangeStart != null && ETAG.equals( ifRange ) && rangeStart >= CONTENT.length() )
+            {
+                m_requests.add( "416" );
+                response.append( "HTTP/1.1 416 Range Not Satisfiable\r\n" );
+                response.append( "Content-Range: bytes */" ).append( CONTENT.length() ).append( "\r\n" );
+                response.append( "Content-Length: 0\r\n" );
+                response.append( "Connection: close\r\n\r\n" );
+            }
+            else if( rangeStart != null && ETAG.equals( ifRange ) )
+            {
+                m_requests.add( "206" );
+                response.append( "HTTP/1.1 206 Partial Content\r\n" );
+                response.append( "ETag: " ).append( ETAG ).append( "\r\n" );
+                response.append( "Content-Length: " ).append( CONTENT.length() - rangeStart ).append( "\r\n" );
+                response.append( "Connection: close\r\n\r\n" );
+                response.append( CONTENT.substring( rangeStart ) );
+            }
+            else if( ETAG.equals( ifNoneMatch ) )
+            {
+                m_requests.add( "304" );
+                response.append( "HTTP/1.1 304 Not Modified\r\n" );
+                response.append( "ETag: " ).append( ETAG ).append( "\r\n" );
+                response.append( "Connection: close\r\n\r\n" );
+            }
+            else
+            {
+                m_requests.add( "200" );
+                response.append( "HTTP/1.1 200 OK\r\n" );
+                response.append( "ETag: " ).append( ETAG ).append( "\r\n" );
+                response.append( "Content-Length: " ).append( CONTENT.length() ).append( "\r\n" );
+                response.append( "Connection: close\r\n\r\n" );
+                response.append( CONTENT );
+            }
+            final OutputStream os = socket.getOutputStream();
+            os.write( response.toString().getBytes( "ISO-8859-1" ) );
+            os.flush();
+        }
+        finally
+        {
+            socket.close();
+        }
+    }
+
+    private URL getUrl()
+        throws IOException
+    {
+        return new URL( "http://localhost:" + m_serverSocket.getLocalPort() + "/bundle.jar" );
+    }
+
+    // test that an unconditional request gets the content and validators
+    @Test
+    public void openConnectionWithoutValidators()
+        throws Exception
+    {
+        final URLConnection connection = StreamUtils.openConnection( getUrl(), null, null );
+        assertFalse( "Not modified", StreamUtils.isNotModified( connection ) );
+        assertEquals( "ETag", ETAG, connection.getHeaderField( "ETag" ) );
+        assertEquals( "Content length", Long.valueOf( CONTENT.length() ), StreamUtils.getContentLength( connection ) );
+        connection.getInputStream().close();
+        assertEquals( "Requests", Collections.singletonList( "200" ), m_requests );
+    }
+
+    // test that a conditional request with current etag is answered with not modified
+    @Test
+    public void openConnectionWithCurrentETag()
+        throws Exception
+    {
+        final URLConnection connection = StreamUtils.openConnection( getUrl(), ETAG, null );
+        assertTrue( "Not modified", StreamUtils.isNotModified( connection ) );
+        assertEquals( "Requests", Collections.singletonList( "304" ), m_requests );
+    }
+
+    // test that a conditional request with an outdated etag gets the content
+    @Test
+    public void openConnectionWithOutdatedETag()
+        throws Exception
+    {
+        final URLConnection connection = StreamUtils.openConnection( getUrl(), "\"v0\"", 1000L );
+        assertFalse( "Not modified", StreamUtils.isNotModified( connection ) );
+        connection.getInputStream().close();
+        assertEquals( "Requests", Collections.singletonList( "200" ), m_requests );
+    }
+
+    // test that non http connections are never not modified
+    @Test
+    public void isNotModifiedForFileUrl()
+        throws Exception
+    {
+        final URLConnection connection = StreamUtils.openConnection( new URL( "file:bundle.jar" ), ETAG, 1000L );
+        assertFalse( "Not modified", StreamUtils.isNotModified( connection ) );
+    }
+
+    // test that a range request with current validator gets only the rest of the content
+    @Test
+    public void openConnectionWithRange()
+        throws Exception
+    {
+        final URLConnection connection = StreamUtils.openConnection( getUrl(), null, null, 7, ETAG );
+        assertTrue( "Partial content", StreamUtils.isPartialContent( connection ) );
+        assertEquals( "Content", CONTENT.substring( 7 ), read( connection.getInputStream() ) );
+        assertEquals( "Range validator", ETAG, StreamUtils.getRangeValidator( connection ) );
+    }
+
+    // test that a range request with an outdated validator gets the whole content
+    @Test
+    public void openConnectionWithOutdatedRange()
+        throws Exception
+    {
+        final URLConnection connection = StreamUtils.openConnection( getUrl(), null, null, 7, "\"v0\"" );
+        assertFalse( "Partial content", StreamUtils.isPartialContent( connection ) );
+        assertEquals( "Content", CONTENT, read( connection.getInputStream() ) );
+    }
+
+    // test that a range request for a partial download that already has the whole content gets the whole content
+    @Test
+    public void openConnectionWithUnsatisfiableRange()
+        throws Exception
+    {
+        final URLConnection connection = StreamUtils.openConnection( getUrl(), null, null, CONTENT.length(), ETAG );
+        assertFalse( "Partial content", StreamUtils.isPartialContent( connection ) );
+        assertEquals( "Content", CONTENT, read( connection.getInputStream() ) );
+        assertEquals( "Requests", Arrays.asList( "416", "200" ), m_requests );
+    }
+
+    // test that content bigger than the copy buffer is copied and progress is reported
+    @Test
+    public void streamCopy()
+        throws Exception
+    {
+        final byte[] content = new byte[1024 * 1024 + 17];
+        for( int i = 0; i < content.length; i++ )
+        {
+            content[ i ] = (byte) i;
+        }
+        final File file = File.createTempFile( "runner", ".jar" );
+        final long[] progress = new long[2];
+        final FileOutputStream os = new FileOutputStream( file );
+        try
+        {
+            final long copied = StreamUtils.streamCopy(
+                new ByteArrayInputStream( content ),
+                os.getChannel(),
+                new StreamUtils.ProgressBar()
+                {
+                    public void increment( final long bytes, final long kbps )
+                    {
+                        progress[ 0 ] = bytes;
+                    }
+
+                    public void stop()
+                    {
+                        progress[ 1 ]++;
+                    }
+                }
+            );
+            assertEquals( "Copied bytes", content.length, copied );
+        }
+        finally
+        {
+            os.close();
+        }
+        assertEquals( "File length", content.length, file.length() );
+        assertEquals( "Reported bytes", content.length, progress[ 0 ] );
+        assertEquals( "Stop calls", 1, progress[ 1 ] );
+        file.delete();
+    }
+
+    // test that content is appended to a destination opened for append (resumed downloads)
+    @Test
+    public void streamCopyAppends()
+        throws Exception
+    {
+        final File file = File.createTempFile( "runner", ".jar.part" );
+        FileOutputStream os = new FileOutputStream( file );
+        try
+        {
+            StreamUtils.streamCopy( new ByteArrayInputStream( "bundle ".getBytes( "UTF-8" ) ), os.getChannel(), null );
+        }
+        finally
+        {
+            os.close();
+        }
+        os = new FileOutputStream( file, true );
+        try
+        {
+            StreamUtils.streamCopy( new ByteArrayInputStream( "content".getBytes( "UTF-8" ) ), os.getChannel(), null );
+        }
+        finally
+        {
+            os.close();
+        }
+        assertEquals( "Content", CONTENT, read( new FileInputStream( file ) ) );
+        file.delete();
+    }
+
+    // test that digests are calculated while copying
+    @Test
+    public void streamCopyWithDigest()
+        throws Exception
+    {
+        final File file = File.createTempFile( "runner", ".jar" );
+        final MessageDigest digest = MessageDigest.getInstance( "SHA-1" );
+        final FileOutputStream os = new FileOutputStream( file );
+        try
+        {
+            final InputStream in = new ByteArrayInputStream( "abc".getBytes( "UTF-8" ) );
+            StreamUtils.streamCopy( in, os.getChannel(), null, digest );
+        }
+        finally
+        {
+            os.close();
+        }
+        assertEquals( "SHA-1", ABC_SHA1, BundleStore.toHex( digest.digest() ) );
+
+        final MessageDigest fileDigest = MessageDigest.getInstance( "SHA-1" );
+        StreamUtils.digest( file, fileDigest );
+        assertEquals( "File SHA-1", ABC_SHA1, BundleStore.toHex( fileDigest.digest() ) );
+        file.delete();
+    }
+
+    // test that a maven style checksum file (checksum followed by file name) can be read
+    @Test
+    public void readChecksum()
+        throws Exception
+    {
+        final File file = File.createTempFile( "runner", ".jar.sha1" );
+        final OutputStream os = new FileOutputStream( file );
+        try
+        {
+            os.write( "A9993E364706816ABA3E25717850C26C9CD0D89D  bundle.jar\n".getBytes( "UTF-8" ) );
+        }
+        finally
+        {
+            os.close();
+        }
+        assertEquals( "Checksum", ABC_SHA1, StreamUtils.readChecksum( file.toURL() ) );
+        file.delete();
+        assertNull( "Checksum of missing file", StreamUtils.readChecksum( file.toURL() ) );
+    }
+
+    private static String read( final InputStream in )
+        throws IOException
+    {
+        try
+        {
+            final StringBuilder content = new StringBuilder();
+            int read;
+            while( ( read = in.read() ) != -1 )
+            {
+                content.append( (char) read );
+            }
+            return content.toString();
+        }
+        finally
+        {
+            in.close();
+        }
+    }
+
+}
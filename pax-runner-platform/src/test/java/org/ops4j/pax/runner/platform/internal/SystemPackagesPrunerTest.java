@@ -0,0 +1,99 @@
+/*
+ * Copyright 2026 OPS4J.
+ *
+ * Licensed  under the  Apache License,  Version 2.0  (the "License");
+ * you may not use  this file  except in  compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed  under the  License is distributed on an "AS IS" BASIS,
+ * WITHOUT  WARRANTIES OR CONDITIONS  OF ANY KIND, either  express  or
+ * implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.runner.platform.internal;
+
+import java.util.Arrays;
+import java.util.jar.Attributes;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+public class SystemPackagesPrunerTest
+{
+
+    // test that only imported packages are kept
+    @Test
+    public void prune()
+    {
+        final SystemPackagesPruner pruner = new SystemPackagesPruner();
+        pruner.addBundle(
+            createAttributes(
+                "Import-Package", "javax.swing;version=\"[1.0,2.0)\",javax.xml.parsers;resolution:=optional"
+            )
+        );
+        pruner.addBundle( createAttributes( "DynamicImport-Package", "org.w3c.*" ) );
+        assertEquals(
+            "Packages",
+            "javax.xml.parsers,org.w3c.dom",
+            pruner.prune( "javax.naming,javax.xml.parsers,org.w3c.dom,org.osgi.framework; version=1.5.0" )
+        );
+        assertEquals(
+            "Removed", Arrays.asList( "javax.naming", "org.osgi.framework; version=1.5.0" ), pruner.getRemoved()
+        );
+        assertNull( "Null packages", pruner.prune( null ) );
+    }
+
+    // test that all packages are kept when a bundle requires the system bundle
+    @Test
+    public void pruneWithRequiredSystemBundle()
+    {
+        final SystemPackagesPruner pruner = new SystemPackagesPruner();
+        pruner.addBundle( createAttributes( "Require-Bundle", "system.bundle;bundle-version=1.0" ) );
+        assertEquals( "Packages", "javax.naming,org.w3c.dom", pruner.prune( "javax.naming,org.w3c.dom" ) );
+        assertTrue( "Removed", pruner.getRemoved().isEmpty() );
+    }
+
+    // test that all packages are kept when a bundle requires the system bundle by the framework symbolic name
+    @Test
+    public void pruneWithRequiredFrameworkSymbolicName()
+    {
+        final SystemPackagesPruner pruner = new SystemPackagesPruner( "org.eclipse.osgi; singleton:=true" );
+        pruner.addBundle( createAttributes( "Require-Bundle", "org.foo,org.eclipse.osgi;bundle-version=\"3.5.0\"" ) );
+        assertEquals( "Packages", "javax.naming,org.w3c.dom", pruner.prune( "javax.naming,org.w3c.dom" ) );
+        assertTrue( "Removed", pruner.getRemoved().isEmpty() );
+    }
+
+    // test that requiring other bundles does not keep all packages
+    @Test
+    public void pruneWithRequiredOtherBundle()
+    {
+        final SystemPackagesPruner pruner = new SystemPackagesPruner( "org.apache.felix.framework" );
+        pruner.addBundle( createAttributes( "Require-Bundle", "org.eclipse.osgi" ) );
+        assertEquals( "Packages", "", pruner.prune( "javax.naming,org.w3c.dom" ) );
+        assertEquals( "Removed", Arrays.asList( "javax.naming", "org.w3c.dom" ), pruner.getRemoved() );
+    }
+
+    // test splitting headers with quoted values
+    @Test
+    public void splitClauses()
+    {
+        assertEquals(
+            "Clauses",
+            Arrays.asList( "a;version=\"[1,2)\"", "b", "c" ),
+            SystemPackagesPruner.splitClauses( "a;version=\"[1,2)\", b,,\n c " )
+        );
+        assertTrue( "No clauses", SystemPackagesPruner.splitClauses( null ).isEmpty() );
+    }
+
+    private static Attributes createAttributes( final String name, final String value )
+    {
+        final Attributes attributes = new Attributes();
+        attributes.putValue( name, value );
+        return attributes;
+    }
+
+}
@@ -46,6 +46,10 @@ public class AuditedProperties
      * Default properties to be used.
      */
     final Properties m_defaults;
+    /**
+     * Properties set by the current thread while deferring. Null if current thread is not deferring.
+     */
+    private final ThreadLocal<Properties> m_deferred;
 
     /**
      * Creates an empty property list with the specified defaults.
@@ -56,6 +60,7 @@ public class AuditedProperties
     {
         super();
         m_defaults = defaults != null ? defaults : new Properties();
+        m_deferred = new ThreadLocal<Properties>();
     }
 
     /**
@@ -77,7 +82,12 @@ public class AuditedProperties
     @Override
     public String getProperty( String key, String defaultValue )
     {
-        String value = super.getProperty( key );
+        final Properties deferred = m_deferred.get();
+        String value = deferred == null ? null : deferred.getProperty( key );
+        if( value == null )
+        {
+            value = super.getProperty( key );
+        }
         if( value == null )
         {
             value = m_defaults.getProperty( key, defaultValue );
@@ -89,10 +99,53 @@ public class AuditedProperties
     public synchronized Object setProperty( String key, String value )
     {
         final String replaced = replacePlaceholders( value );
+        final Properties deferred = m_deferred.get();
+        if( deferred != null )
+        {
+            LOGGER.trace( "Deferring system property [" + key + "=" + replaced + "]" );
+            final Object previous = deferred.setProperty( key, replaced );
+            return previous != null ? previous : super.getProperty( key );
+        }
         LOGGER.trace( "Setting system property [" + key + "=" + replaced + "]" );
         return super.setProperty( key, replaced );
     }
 
+    /**
+     * Starts deferring properties set by the current thread. Until deferring is stopped, properties set by the current
+     * thread are visible only to the current thread.
+     */
+    void startDeferring()
+    {
+        m_deferred.set( new Properties() );
+    }
+
+    /**
+     * Stops deferring properties set by the current thread.
+     *
+     * @return properties set by current thread since deferring started (already having the placeholders replaced) or
+     *         null if the current thread was not deferring
+     */
+    Properties stopDeferring()
+    {
+        final Properties deferred = m_deferred.get();
+        m_deferred.remove();
+        return deferred;
+    }
+
+    /**
+     * Sets properties that were deferred (see {@link #stopDeferring()}).
+     *
+     * @param deferred deferred properties
+     */
+    synchronized void setDeferred( final Properties deferred )
+    {
+        for( Map.Entry<Object, Object> entry : deferred.entrySet() )
+        {
+            LOGGER.trace( "Setting system property [" + entry.getKey() + "=" + entry.getValue() + "]" );
+            super.put( entry.getKey(), entry.getValue() );
+        }
+    }
+
 
 
     /**
@@ -18,6 +18,7 @@
 package org.ops4j.pax.runner;
 
 import java.util.List;
+import java.util.Map;
 
 /**
  * Abstracts accesss to command line arguments.
@@ -77,7 +78,8 @@ public interface CommandLine
      */
     static final String OPTION_BOOT_CP_APPEND = "bcp/a";
     /**
-     * Profiles option.
+     * Profiles option. Profiles without a version are resolved to the latest version out of the profiles repositories
+     * metadata (see metadataUpdatePolicy).
      */
     static final String OPTION_PROFILES = "profiles";
     /**
@@ -108,6 +110,10 @@ public interface CommandLine
      * Daemon Timeout option.
      */
     static final String OPTION_DAEMON_TIMEOUT = "daemonTimeout";
+    /**
+     * Launch plan option.
+     */
+    static final String OPTION_LAUNCH_PLAN = "launchPlan";
 
     /**
      * Returns the value of an option by key. If option is not defined returns null.
@@ -134,4 +140,11 @@ public interface CommandLine
      */
     List<String> getArguments();
 
+    /**
+     * Returns all options, including the ones read from arguments files.
+     *
+     * @return map of option key to option values; if there are no options returns an empty map
+     */
+    Map<String, List<String>> getOptions();
+
 }
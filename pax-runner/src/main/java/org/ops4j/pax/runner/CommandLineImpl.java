@@ -228,6 +228,14 @@ public class CommandLineImpl implements CommandLine
         return m_arguments;
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    public Map<String, List<String>> getOptions()
+    {
+        return Collections.unmodifiableMap( m_options );
+    }
+
     /**
      * {@inheritDoc}
      */
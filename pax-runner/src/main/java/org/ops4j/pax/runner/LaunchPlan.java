@@ -0,0 +1,704 @@
+/*
+ * Copyright 2026 OPS4J.
+ *
+ * Licensed  under the  Apache License,  Version 2.0  (the "License");
+ * you may not use  this file  except in  compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed  under the  License is distributed on an "AS IS" BASIS,
+ * WITHOUT  WARRANTIES OR CONDITIONS  OF ANY KIND, either  express  or
+ * implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.runner;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.URI;
+import java.net.URL;
+import java.security.CodeSource;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.TreeMap;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.ops4j.lang.NullArgumentException;
+import org.ops4j.pax.runner.platform.DefaultJavaRunner;
+import org.ops4j.pax.runner.platform.JavaRunner;
+import org.ops4j.pax.runner.platform.PlatformException;
+import org.ops4j.pax.runner.platform.WaitingJavaRunner;
+
+/**
+ * Snapshot of the final outcome of a runner start (what is passed to the java runner), recorded in the working
+ * directory together with a digest of all start inputs. When a following start has the same inputs digest and the
+ * files used by the recorded start (classpath and downloaded bundles) did not change, the recorded plan is executed
+ * right away, without installing handlers, scanners and platform.
+ * Inputs are the command line options and arguments (including the ones from args files), the local files referenced
+ * by options and arguments (e.g. scanned files, configuration, platform definition), the local files referenced from
+ * scanned provision files (e.g. bundles listed in a .bundles file or specs listed in a .composite file) and the runner
+ * itself (that includes the default configuration and platform definitions). Remote content (e.g. mvn: or http: urls,
+ * profiles, pom or features descriptors) cannot be checked without resolving it, so the launch plan is not used when
+ * any of the provisioning specs references remote content.
+ * A start that records a class data sharing archive (-XX:ArchiveClassesAtExit) is not saved as a plan, as replaying
+ * it would record the archive again on each start instead of using it; the following start, that uses the archive,
+ * is saved instead.
+ *
+ * @since 1.9.1, October 18, 2026
+ */
+class LaunchPlan
+{
+
+    /**
+     * Logger.
+     */
+    private static final Log LOGGER = LogFactory.getLog( LaunchPlan.class );
+    /**
+     * Name of the launch plan file, relative to working directory.
+     */
+    static final String PLAN_FILE = "launch.plan";
+    /**
+     * Prefix of scanners provisioning specs (e.g. scan-file:).
+     */
+    private static final String SCANNER_PREFIX = "scan-";
+    /**
+     * Vm option that records a class data sharing archive.
+     */
+    private static final String ARCHIVE_CLASSES_AT_EXIT = "-XX:ArchiveClassesAtExit=";
+    /**
+     * Vm option that uses a class data sharing archive.
+     */
+    private static final String SHARED_ARCHIVE_FILE = "-XX:SharedArchiveFile=";
+
+    private static final String DIGEST = "digest";
+    private static final String VM_OPTIONS = "vmOptions";
+    private static final String CLASSPATH = "classpath";
+    private static final String MAIN_CLASS = "mainClass";
+    private static final String PROGRAM_OPTIONS = "programOptions";
+    private static final String JAVA_HOME = "javaHome";
+    private static final String WORKING_DIR = "workingDir";
+    private static final String ENV_OPTIONS = "envOptions";
+    private static final String FILES = "files";
+
+    /**
+     * Launch plan file. Cannot be null.
+     */
+    private final File m_file;
+    /**
+     * Digest of start inputs. Cannot be null.
+     */
+    private final String m_digest;
+    /**
+     * Recorded plan. Null if not loaded.
+     */
+    private Properties m_plan;
+
+    /**
+     * Creates a new launch plan.
+     *
+     * @param file   launch plan file; mandatory
+     * @param digest digest of start inputs; mandatory
+     */
+    LaunchPlan( final File file, final String digest )
+    {
+        NullArgumentException.validateNotNull( file, "Launch plan file" );
+        NullArgumentException.validateNotEmpty( digest, "Digest" );
+        m_file = file;
+        m_digest = digest;
+    }
+
+    /**
+     * Calculates the digest of start inputs.
+     *
+     * @param commandLine command line
+     *
+     * @return hex encoded digest or null if provisioning specs reference content that cannot be checked locally
+     */
+    static String digest( final CommandLine commandLine )
+    {
+        NullArgumentException.validateNotNull( commandLine, "Command line" );
+        final MessageDigest digest = createMessageDigest();
+        final List<String> values = new ArrayList<String>();
+        // options are sorted so the order they are specified in does not matter
+        for( Map.Entry<String, List<String>> option
+            : new TreeMap<String, List<String>>( commandLine.getOptions() ).entrySet() )
+        {
+            update( digest, "option", option.getKey(), String.valueOf( option.getValue() ) );
+            values.addAll( option.getValue() );
+        }
+        for( String value : values )
+        {
+            final File file = toLocalFile( value );
+            if( file != null )
+            {
+                updateWithFile( digest, file );
+            }
+        }
+        final Set<File> visited = new HashSet<File>();
+        for( String argument : commandLine.getArguments() )
+        {
+            update( digest, "argument", argument );
+            if( !updateWithProvisionSpec( digest, argument, visited ) )
+            {
+                LOGGER.debug( "Launch plan not used as [" + argument + "] references remote content" );
+                return null;
+            }
+        }
+        final File runner = getCodeLocation( LaunchPlan.class );
+        if( runner != null )
+        {
+            updateWithFile( digest, runner );
+        }
+        return toHex( digest.digest() );
+    }
+
+    /**
+     * Loads the recorded plan.
+     *
+     * @return true if there is a recorded plan for the same inputs and the files it uses did not change
+     */
+    boolean load()
+    {
+        if( !m_file.isFile() )
+        {
+            return false;
+        }
+        final Properties plan = new Properties();
+        InputStream in = null;
+        try
+        {
+            in = new FileInputStream( m_file );
+            plan.load( in );
+        }
+        catch( IOException e )
+        {
+            LOGGER.debug( "Cannot read launch plan " + m_file + " due to: " + e.getMessage() );
+            return false;
+        }
+        finally
+        {
+            close( in );
+        }
+        if( !m_digest.equals( plan.getProperty( DIGEST ) ) )
+        {
+            LOGGER.debug( "Launch plan " + m_file + " was recorded for other inputs" );
+            return false;
+        }
+        for( String entry : getArray( plan, FILES ) )
+        {
+            final int separator = entry.lastIndexOf( '|' );
+            if( separator < 0
+                || !entry.substring( separator + 1 ).equals( fileState( new File( entry.substring( 0, separator ) ) ) )
+            )
+            {
+                LOGGER.debug( "Launch plan " + m_file + " is outdated as [" + entry + "] changed" );
+                return false;
+            }
+        }
+        m_plan = plan;
+        return true;
+    }
+
+    /**
+     * Executes the loaded plan.
+     *
+     * @param runner java runner to be used; if null the default java runner is used
+     *
+     * @throws PlatformException re-thrown from java runner
+     */
+    void exec( final JavaRunner runner )
+        throws PlatformException
+    {
+        if( m_plan == null )
+        {
+            throw new IllegalStateException( "Launch plan was not loaded" );
+        }
+        final JavaRunner javaRunner = runner == null ? new DefaultJavaRunner() : runner;
+        final String javaHome = m_plan.getProperty( JAVA_HOME );
+        final String workingDir = m_plan.getProperty( WORKING_DIR );
+        javaRunner.exec(
+            getArray( m_plan, VM_OPTIONS ),
+            getArray( m_plan, CLASSPATH ),
+            m_plan.getProperty( MAIN_CLASS ),
+            getArray( m_plan, PROGRAM_OPTIONS ),
+            javaHome,
+            workingDir == null ? null : new File( workingDir ),
+            m_plan.containsKey( ENV_OPTIONS + ".length" ) ? getArray( m_plan, ENV_OPTIONS ) : null
+        );
+    }
+
+    /**
+     * Returns a java runner that records the plan when executed and then delegates to the provided java runner. The
+     * returned runner waits for exit if the provided java runner does.
+     *
+     * @param runner java runner to delegate to; if null the default java runner is used
+     *
+     * @return recording java runner
+     */
+    JavaRunner record( final JavaRunner runner )
+    {
+        final JavaRunner javaRunner = runner == null ? new DefaultJavaRunner() : runner;
+        return new WaitingJavaRunner()
+        {
+            public boolean waitsForExit()
+            {
+                return javaRunner instanceof WaitingJavaRunner && ( (WaitingJavaRunner) javaRunner ).waitsForExit();
+            }
+
+            public void exec( final String[] vmOptions,
+                              final String[] classpath,
+                              final String mainClass,
+                              final String[] programOptions,
+                              final String javaHome,
+                              final File workingDir,
+                              final String[] environmentVariables )
+                throws PlatformException
+            {
+                save( vmOptions, classpath, mainClass, programOptions, javaHome, workingDir, environmentVariables );
+                javaRunner.exec(
+                    vmOptions, classpath, mainClass, programOptions, javaHome, workingDir, environmentVariables
+                );
+            }
+
+            public void exec( final String[] vmOptions,
+                              final String[] classpath,
+                              final String mainClass,
+                              final String[] programOptions,
+                              final String javaHome,
+                              final File workingDir )
+                throws PlatformException
+            {
+                save( vmOptions, classpath, mainClass, programOptions, javaHome, workingDir, null );
+                javaRunner.exec( vmOptions, classpath, mainClass, programOptions, javaHome, workingDir );
+            }
+        };
+    }
+
+    /**
+     * Saves the plan. Failing to save the plan does not fail the start, as the plan is only an optimization.
+     */
+    private void save( final String[] vmOptions,
+                       final String[] classpath,
+                       final String mainClass,
+                       final String[] programOptions,
+                       final String javaHome,
+                       final File workingDir,
+                       final String[] environmentVariables )
+    {
+        // files the plan relies on: classpath entries, class data sharing archive and downloaded bundles
+        final List<String> files = new ArrayList<String>();
+        if( vmOptions != null )
+        {
+            for( String vmOption : vmOptions )
+            {
+                if( vmOption.startsWith( ARCHIVE_CLASSES_AT_EXIT ) )
+                {
+                    LOGGER.debug( "Launch plan not saved while recording class data sharing archive" );
+                    m_file.delete();
+                    return;
+                }
+                if( vmOption.startsWith( SHARED_ARCHIVE_FILE ) )
+                {
+                    final File archive = new File( vmOption.substring( SHARED_ARCHIVE_FILE.length() ) );
+                    files.add( archive.getAbsolutePath() + "|" + fileState( archive ) );
+                }
+            }
+        }
+        final Properties plan = new Properties();
+        plan.setProperty( DIGEST, m_digest );
+        setArray( plan, VM_OPTIONS, vmOptions );
+        setArray( plan, CLASSPATH, classpath );
+        plan.setProperty( MAIN_CLASS, mainClass );
+        setArray( plan, PROGRAM_OPTIONS, programOptions );
+        if( javaHome != null )
+        {
+            plan.setProperty( JAVA_HOME, javaHome );
+        }
+        if( workingDir != null )
+        {
+            plan.setProperty( WORKING_DIR, workingDir.getAbsolutePath() );
+        }
+        if( environmentVariables != null )
+        {
+            setArray( plan, ENV_OPTIONS, environmentVariables );
+        }
+        if( classpath != null )
+        {
+            for( String entry : classpath )
+            {
+                File file = new File( entry );
+                if( !file.isAbsolute() && workingDir != null )
+                {
+                    file = new File( workingDir, entry );
+                }
+                files.add( file.getAbsolutePath() + "|" + fileState( file ) );
+            }
+        }
+        if( workingDir != null )
+        {
+            final File[] bundles = new File( workingDir, "bundles" ).listFiles();
+            if( bundles != null )
+            {
+                Arrays.sort( bundles );
+                for( File bundle : bundles )
+                {
+                    if( bundle.isFile() )
+                    {
+                        files.add( bundle.getAbsolutePath() + "|" + fileState( bundle ) );
+                    }
+                }
+            }
+        }
+        setArray( plan, FILES, files.toArray( new String[files.size()] ) );
+
+        OutputStream os = null;
+        File temp = null;
+        try
+        {
+            m_file.getAbsoluteFile().getParentFile().mkdirs();
+            temp = File.createTempFile( m_file.getName(), ".tmp", m_file.getAbsoluteFile().getParentFile() );
+            os = new FileOutputStream( temp );
+            plan.store( os, "Pax Runner launch plan" );
+            os.close();
+            os = null;
+            m_file.delete();
+            if( !temp.renameTo( m_file ) )
+            {
+                throw new IOException( "Cannot rename " + temp + " to " + m_file );
+            }
+            temp = null;
+            LOGGER.debug( "Launch plan saved to " + m_file );
+        }
+        catch( IOException e )
+        {
+            LOGGER.warn( "Cannot save launch plan " + m_file + " due to: " + e.getMessage() );
+        }
+        finally
+        {
+            close( os );
+            if( temp != null )
+            {
+                temp.delete();
+            }
+        }
+    }
+
+    /**
+     * Deletes the recorded plan (if any).
+     */
+    void delete()
+    {
+        m_file.delete();
+    }
+
+    /**
+     * Tries to find a local file referenced by an option value or argument (e.g. file:/x.bundles,
+     * scan-dir:/bundles@5, /bundles/x.jar).
+     *
+     * @param value option value or argument
+     *
+     * @return referenced file or null if value does not reference an existing local file
+     */
+    static File toLocalFile( final String value )
+    {
+        if( value == null || value.trim().length() == 0 )
+        {
+            return null;
+        }
+        String candidate = value.trim();
+        if( candidate.startsWith( SCANNER_PREFIX ) && candidate.indexOf( ':' ) > 0 )
+        {
+            candidate = candidate.substring( candidate.indexOf( ':' ) + 1 );
+        }
+        // provisioning options (e.g. @5@nostart)
+        final int optionsStart = candidate.indexOf( '@' );
+        if( optionsStart > 0 )
+        {
+            candidate = candidate.substring( 0, optionsStart );
+        }
+        File file = null;
+        if( candidate.startsWith( "file:" ) )
+        {
+            try
+            {
+                file = new File( new URI( new URL( candidate ).toExternalForm().replace( " ", "%20" ) ) );
+            }
+            catch( Exception ignore )
+            {
+                file = new File( candidate.substring( "file:".length() ) );
+            }
+        }
+        else if( candidate.indexOf( ':' ) < 0 || File.separatorChar == '\\' )
+        {
+            file = new File( candidate );
+        }
+        if( file != null && file.exists() )
+        {
+            return file;
+        }
+        return null;
+    }
+
+    /**
+     * Returns the location (jar or directory) a class was loaded from.
+     *
+     * @param clazz class
+     *
+     * @return location or null if it cannot be determined
+     */
+    private static File getCodeLocation( final Class<?> clazz )
+    {
+        try
+        {
+            final CodeSource codeSource = clazz.getProtectionDomain().getCodeSource();
+            if( codeSource != null && codeSource.getLocation() != null )
+            {
+                return toLocalFile( codeSource.getLocation().toExternalForm() );
+            }
+        }
+        catch( SecurityException ignore )
+        {
+            // ignore, will not be part of digest
+        }
+        return null;
+    }
+
+    /**
+     * Updates the digest with the state (path, size, last modification) of a file or, for directories, of all files
+     * in the directory.
+     */
+    private static void updateWithFile( final MessageDigest digest, final File file )
+    {
+        update( digest, "file", file.getAbsolutePath(), fileState( file ) );
+        if( file.isDirectory() )
+        {
+            final File[] children = file.listFiles();
+            if( children != null )
+            {
+                Arrays.sort( children );
+                for( File child : children )
+                {
+                    updateWithFile( digest, child );
+                }
+            }
+        }
+    }
+
+    /**
+     * Updates the digest with the state of the local file referenced by a provisioning spec and, for provision files
+     * (e.g. .bundles or .composite files), with the state of the local files referenced by each provisioning spec
+     * listed in the file.
+     *
+     * @param digest  digest to update
+     * @param spec    provisioning spec
+     * @param visited already visited provision files, used to not follow cyclic references
+     *
+     * @return false if the spec references content that cannot be checked locally (e.g. mvn: urls or pom files)
+     */
+    private static boolean updateWithProvisionSpec( final MessageDigest digest,
+                                                    final String spec,
+                                                    final Set<File> visited )
+    {
+        final File file = toLocalFile( spec );
+        if( file == null )
+        {
+            return false;
+        }
+        updateWithFile( digest, file );
+        if( file.isDirectory() || !visited.add( file.getAbsoluteFile() ) )
+        {
+            return true;
+        }
+        final List<String> lines;
+        try
+        {
+            lines = readProvisionFile( file );
+        }
+        catch( IOException e )
+        {
+            LOGGER.debug( "Cannot read provision file " + file + " due to: " + e.getMessage() );
+            return false;
+        }
+        if( lines == null )
+        {
+            // a bundle or an archive, the file state is enough
+            return true;
+        }
+        for( String line : lines )
+        {
+            // empty lines, comments and system properties do not reference content
+            if( line.length() > 0 && !line.startsWith( "#" ) && !line.startsWith( "-D" ) )
+            {
+                if( line.startsWith( "<" ) || !updateWithProvisionSpec( digest, line, visited ) )
+                {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Reads the trimmed lines of a provision file.
+     *
+     * @param file file to read
+     *
+     * @return lines or null if the file is a zip (e.g. a bundle)
+     *
+     * @throws IOException re-thrown from reading the file
+     */
+    private static List<String> readProvisionFile( final File file )
+        throws IOException
+    {
+        final InputStream in = new FileInputStream( file );
+        try
+        {
+            final byte[] magic = new byte[2];
+            if( in.read( magic ) == 2 && magic[0] == 'P' && magic[1] == 'K' )
+            {
+                return null;
+            }
+        }
+        finally
+        {
+            close( in );
+        }
+        final List<String> lines = new ArrayList<String>();
+        final BufferedReader reader =
+            new BufferedReader( new InputStreamReader( new FileInputStream( file ), "UTF-8" ) );
+        try
+        {
+            String line;
+            while( ( line = reader.readLine() ) != null )
+            {
+                lines.add( line.trim() );
+            }
+        }
+        finally
+        {
+            reader.close();
+        }
+        return lines;
+    }
+
+    private static String fileState( final File file )
+    {
+        if( !file.exists() )
+        {
+            return "missing";
+        }
+        return file.isDirectory() ? "dir:" + file.lastModified() : file.length() + ":" + file.lastModified();
+    }
+
+    private static void update( final MessageDigest digest, final String... values )
+    {
+        for( String value : values )
+        {
+            try
+            {
+                digest.update( String.valueOf( value ).getBytes( "UTF-8" ) );
+            }
+            catch( IOException e )
+            {
+                // should not happen as UTF-8 is always supported
+                throw new IllegalStateException( e );
+            }
+            // separator, so ("ab","c") and ("a","bc") result in different digests
+            digest.update( (byte) 0 );
+        }
+    }
+
+    private static MessageDigest createMessageDigest()
+    {
+        try
+        {
+            return MessageDigest.getInstance( "SHA-256" );
+        }
+        catch( NoSuchAlgorithmException e )
+        {
+            // should not happen as jvms must support SHA-256
+            throw new IllegalStateException( e );
+        }
+    }
+
+    private static String toHex( final byte[] bytes )
+    {
+        final StringBuilder hex = new StringBuilder();
+        for( byte b : bytes )
+        {
+            hex.append( Character.forDigit( ( b >> 4 ) & 0x0f, 16 ) ).append( Character.forDigit( b & 0x0f, 16 ) );
+        }
+        return hex.toString();
+    }
+
+    private static void setArray( final Properties properties, final String key, final String[] values )
+    {
+        final String[] array = values == null ? new String[0] : values;
+        properties.setProperty( key + ".length", String.valueOf( array.length ) );
+        for( int i = 0; i < array.length; i++ )
+        {
+            properties.setProperty( key + "." + i, array[ i ] );
+        }
+    }
+
+    private static String[] getArray( final Properties properties, final String key )
+    {
+        final int length;
+        try
+        {
+            length = Integer.parseInt( properties.getProperty( key + ".length", "0" ) );
+        }
+        catch( NumberFormatException ignore )
+        {
+            return new String[0];
+        }
+        final String[] array = new String[length];
+        for( int i = 0; i < length; i++ )
+        {
+            array[ i ] = properties.getProperty( key + "." + i, "" );
+        }
+        return array;
+    }
+
+    private static void close( final java.io.Closeable stream )
+    {
+        try
+        {
+            if( stream != null )
+            {
+                stream.close();
+            }
+        }
+        catch( IOException ignore )
+        {
+            // just ignore as this is less probably to happen.
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String toString()
+    {
+        return "LaunchPlan{" + m_file + "}";
+    }
+
+}
@@ -0,0 +1,138 @@
+/*
+ * Copyright 2026 OPS4J.
+ *
+ * Licensed  under the  Apache License,  Version 2.0  (the "License");
+ * you may not use  this file  except in  compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed  under the  License is distributed on an "AS IS" BASIS,
+ * WITHOUT  WARRANTIES OR CONDITIONS  OF ANY KIND, either  express  or
+ * implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.runner;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.osgi.framework.BundleContext;
+import org.osgi.framework.InvalidSyntaxException;
+import org.osgi.framework.ServiceReference;
+
+/**
+ * An activator (handler or scanner) that is created and started only when first used, via one of the stubs
+ * registered on its behalf (see LazyURLStreamHandlerService and LazyScanner).
+ *
+ * @since 1.9.1, October 18, 2026
+ */
+class LazyActivator
+{
+
+    /**
+     * Logger.
+     */
+    private static final Log LOGGER = LogFactory.getLog( LazyActivator.class );
+
+    /**
+     * Runner used to create the activator.
+     */
+    private final Run m_run;
+    /**
+     * Name of activator configuration entry (e.g. handler.mvn).
+     */
+    private final String m_name;
+    /**
+     * Activator class name.
+     */
+    private final String m_activatorClazz;
+    /**
+     * The running context.
+     */
+    private final Context m_context;
+    /**
+     * Bundle context of started activator. Null till activator is started.
+     */
+    private BundleContext m_bundleContext;
+
+    /**
+     * Constructor.
+     *
+     * @param run            runner used to create the activator
+     * @param name           name of activator configuration entry
+     * @param activatorClazz activator class name
+     * @param context        the running context
+     */
+    LazyActivator( final Run run, final String name, final String activatorClazz, final Context context )
+    {
+        m_run = run;
+        m_name = name;
+        m_activatorClazz = activatorClazz;
+        m_context = context;
+    }
+
+    /**
+     * Returns the name of activator configuration entry.
+     *
+     * @return name
+     */
+    String getName()
+    {
+        return m_name;
+    }
+
+    /**
+     * Finds a service registered by the activator, starting the activator if not already started.
+     *
+     * @param clazz  service class name
+     * @param filter service filter
+     * @param stub   stub registered with the same class and filter, to be skipped
+     *
+     * @return found service
+     *
+     * @throws IllegalStateException if the activator did not register such a service
+     */
+    Object getService( final String clazz, final String filter, final Object stub )
+    {
+        final BundleContext bundleContext = start();
+        try
+        {
+            final ServiceReference[] references = bundleContext.getServiceReferences( clazz, filter );
+            if( references != null )
+            {
+                for( ServiceReference reference : references )
+                {
+                    final Object service = bundleContext.getService( reference );
+                    if( service != null && service != stub )
+                    {
+                        return service;
+                    }
+                }
+            }
+        }
+        catch( InvalidSyntaxException e )
+        {
+            throw new IllegalStateException( "Invalid filter [" + filter + "]", e );
+        }
+        throw new IllegalStateException( "[" + m_name + "] did not register a service matching " + filter );
+    }
+
+    /**
+     * Creates and starts the activator, if not already started.
+     *
+     * @return bundle context of started activator
+     */
+    private synchronized BundleContext start()
+    {
+        if( m_bundleContext == null )
+        {
+            LOGGER.debug( "Starting [" + m_name + "] on first use" );
+            m_bundleContext = m_run.createActivator( m_name, m_activatorClazz, m_context );
+        }
+        return m_bundleContext;
+    }
+
+}
@@ -0,0 +1,90 @@
+/*
+ * Copyright 2026 OPS4J.
+ *
+ * Licensed  under the  Apache License,  Version 2.0  (the "License");
+ * you may not use  this file  except in  compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed  under the  License is distributed on an "AS IS" BASIS,
+ * WITHOUT  WARRANTIES OR CONDITIONS  OF ANY KIND, either  express  or
+ * implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.runner;
+
+import java.util.List;
+import org.ops4j.pax.scanner.MalformedSpecificationException;
+import org.ops4j.pax.scanner.ProvisionSpec;
+import org.ops4j.pax.scanner.ScannedBundle;
+import org.ops4j.pax.scanner.Scanner;
+import org.ops4j.pax.scanner.ScannerException;
+
+/**
+ * Stub of a scanner for one schema. It is registered in place of the scanner, so the provision service knows about
+ * the schema, and starts the scanner activator when the schema is first scanned, delegating afterwards to the scanner
+ * service registered by the scanner.
+ *
+ * @since 1.9.1, October 18, 2026
+ */
+class LazyScanner
+    implements Scanner
+{
+
+    /**
+     * Scanner activator.
+     */
+    private final LazyActivator m_activator;
+    /**
+     * Scanned schema.
+     */
+    private final String m_schema;
+    /**
+     * Scanner service registered by the scanner. Null till the scanner is started.
+     */
+    private volatile Scanner m_delegate;
+
+    /**
+     * Constructor.
+     *
+     * @param activator scanner activator
+     * @param schema    scanned schema
+     */
+    LazyScanner( final LazyActivator activator, final String schema )
+    {
+        m_activator = activator;
+        m_schema = schema;
+    }
+
+    /**
+     * Starts the scanner if not already started and delegates to the scanner service registered by the scanner.
+     *
+     * @see Scanner#scan(ProvisionSpec)
+     */
+    public List<ScannedBundle> scan( final ProvisionSpec provisionSpec )
+        throws MalformedSpecificationException, ScannerException
+    {
+        Scanner delegate = m_delegate;
+        if( delegate == null )
+        {
+            delegate = (Scanner) m_activator.getService(
+                Scanner.class.getName(),
+                "(" + Scanner.SCHEMA_PROPERTY + "=" + m_schema + ")",
+                this
+            );
+            m_delegate = delegate;
+        }
+        return delegate.scan( provisionSpec );
+    }
+
+    @Override
+    public String toString()
+    {
+        return "Lazy scanner [" + m_activator.getName() + "] for schema [" + m_schema + "]";
+    }
+
+}
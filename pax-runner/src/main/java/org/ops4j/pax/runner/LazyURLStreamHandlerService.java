@@ -0,0 +1,137 @@
+/*
+ * Copyright 2026 OPS4J.
+ *
+ * Licensed  under the  Apache License,  Version 2.0  (the "License");
+ * you may not use  this file  except in  compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed  under the  License is distributed on an "AS IS" BASIS,
+ * WITHOUT  WARRANTIES OR CONDITIONS  OF ANY KIND, either  express  or
+ * implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.runner;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.URL;
+import java.net.URLConnection;
+import org.osgi.service.url.URLConstants;
+import org.osgi.service.url.URLStreamHandlerService;
+import org.osgi.service.url.URLStreamHandlerSetter;
+
+/**
+ * Stub of an url handler for one protocol. It is registered in place of the handler, so the url stream handler
+ * extender knows about the protocol, and starts the handler activator when the protocol is first used, delegating
+ * afterwards to the url stream handler service registered by the handler.
+ *
+ * @since 1.9.1, October 18, 2026
+ */
+class LazyURLStreamHandlerService
+    implements URLStreamHandlerService
+{
+
+    /**
+     * Handler activator.
+     */
+    private final LazyActivator m_activator;
+    /**
+     * Handled protocol.
+     */
+    private final String m_protocol;
+    /**
+     * Url stream handler service registered by the handler. Null till the handler is started.
+     */
+    private volatile URLStreamHandlerService m_delegate;
+
+    /**
+     * Constructor.
+     *
+     * @param activator handler activator
+     * @param protocol  handled protocol
+     */
+    LazyURLStreamHandlerService( final LazyActivator activator, final String protocol )
+    {
+        m_activator = activator;
+        m_protocol = protocol;
+    }
+
+    /**
+     * Returns the url stream handler service registered by the handler, starting the handler if not already started.
+     *
+     * @return url stream handler service
+     */
+    private URLStreamHandlerService getDelegate()
+    {
+        URLStreamHandlerService delegate = m_delegate;
+        if( delegate == null )
+        {
+            delegate = (URLStreamHandlerService) m_activator.getService(
+                URLStreamHandlerService.class.getName(),
+                "(" + URLConstants.URL_HANDLER_PROTOCOL + "=" + m_protocol + ")",
+                this
+            );
+            m_delegate = delegate;
+        }
+        return delegate;
+    }
+
+    public URLConnection openConnection( final URL url )
+        throws IOException
+    {
+        return getDelegate().openConnection( url );
+    }
+
+    public void parseURL( final URLStreamHandlerSetter setter, final URL url, final String spec, final int start,
+                          final int limit )
+    {
+        getDelegate().parseURL( setter, url, spec, start, limit );
+    }
+
+    public String toExternalForm( final URL url )
+    {
+        return getDelegate().toExternalForm( url );
+    }
+
+    public boolean equals( final URL first, final URL second )
+    {
+        return getDelegate().equals( first, second );
+    }
+
+    public int getDefaultPort()
+    {
+        return getDelegate().getDefaultPort();
+    }
+
+    public InetAddress getHostAddress( final URL url )
+    {
+        return getDelegate().getHostAddress( url );
+    }
+
+    public int hashCode( final URL url )
+    {
+        return getDelegate().hashCode( url );
+    }
+
+    public boolean hostsEqual( final URL first, final URL second )
+    {
+        return getDelegate().hostsEqual( first, second );
+    }
+
+    public boolean sameFile( final URL first, final URL second )
+    {
+        return getDelegate().sameFile( first, second );
+    }
+
+    @Override
+    public String toString()
+    {
+        return "Lazy handler [" + m_activator.getName() + "] for protocol [" + m_protocol + "]";
+    }
+
+}
@@ -28,6 +28,7 @@ import org.apache.felix.framework.util.EventDispatcher;
 import org.ops4j.io.FileUtils;
 import org.ops4j.lang.NullArgumentException;
 import org.ops4j.pax.runner.commons.Info;
+import org.ops4j.pax.runner.commons.metadata.MetadataCache;
 import org.ops4j.pax.runner.osgi.RunnerBundle;
 import org.ops4j.pax.runner.osgi.RunnerBundleContext;
 import org.ops4j.pax.runner.osgi.RunnerStartLevel;
@@ -35,12 +36,18 @@ import org.ops4j.pax.runner.platform.*;
 import org.ops4j.pax.runner.platform.BundleReference;
 import org.ops4j.pax.scanner.*;
 import org.osgi.framework.*;
+import org.osgi.service.url.URLConstants;
+import org.osgi.service.url.URLStreamHandlerService;
 
 import java.io.File;
 import java.io.InputStream;
 import java.net.MalformedURLException;
 import java.net.URL;
 import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
 
 import static org.ops4j.pax.runner.CommandLine.*;
 
@@ -81,6 +88,14 @@ public class Run
      * Handler URLs to support keepOriginalUrls option configuration property name.
      */
     private static final String KEEP_ORIGINAL_HANDLER_URLS = "keep.original.handler.urls";
+    /**
+     * Suffix of handler configuration property listing handler protocols. If set, handler is started on first use.
+     */
+    private static final String HANDLER_PROTOCOLS = ".protocols";
+    /**
+     * Suffix of scanner configuration property with scanner schema. If set, scanner is started on first use.
+     */
+    private static final String SCANNER_SCHEMA = ".schema";
 
     /**
      * Creates a new runner.
@@ -196,16 +211,109 @@ public class Run
         LOGGER.info( commandLine );
         // cleanup if requested
         cleanup( resolver );
+        // if inputs did not change since last start use the recorded launch plan
+        final LaunchPlan launchPlan = createLaunchPlan( context );
+        if( launchPlan != null && launchPlan.load() )
+        {
+            LOGGER.info( "Using launch plan from previous start" );
+            EventDispatcher.shutdown();
+            try
+            {
+                launchPlan.exec( runner == null ? createJavaRunner( resolver ) : runner );
+            }
+            catch( PlatformException e )
+            {
+                throw new RuntimeException( e );
+            }
+            return;
+        }
         // install aditional services
         installServices( context );
         // install aditional handlers
         installHandlers( context );
-        // install provisioning and bundles
-        installBundles( installScanners( context ), new ExtensionBasedProvisionSchemaResolver(), context );
+        // install platform while scanners are installed, as platform does not depend on provisioned bundles
+        final Future<Platform> platform = startStage(
+            "Platform",
+            new Callable<Platform>()
+            {
+                public Platform call()
+                {
+                    return installPlatform( context );
+                }
+            }
+        );
+        final ProvisionService provisionService;
+        try
+        {
+            // install provisioning
+            provisionService = installScanners( context );
+        }
+        catch( RuntimeException e )
+        {
+            platform.cancel( true );
+            throw e;
+        }
+        // installing bundles replaces system properties till bundles are installed, so the platform (that reads
+        // system properties) has to be installed before
+        final Platform installedPlatform = waitForStage( platform );
+        installBundles( provisionService, new ExtensionBasedProvisionSchemaResolver(), context );
         // stop the dispatcher as there are no longer events around
         EventDispatcher.shutdown();
-        // install platform and start it up
-        startPlatform( installPlatform( context ), context, runner == null ? createJavaRunner( resolver ) : runner );
+        // start up the platform
+        final JavaRunner javaRunner = runner == null ? createJavaRunner( resolver ) : runner;
+        startPlatform( installedPlatform, context,
+                       launchPlan == null ? javaRunner : launchPlan.record( javaRunner )
+        );
+    }
+
+    /**
+     * Starts a launch stage that runs concurrently with the calling thread.
+     *
+     * @param name  stage name
+     * @param stage stage to run
+     *
+     * @return stage result
+     */
+    <T> Future<T> startStage( final String name, final Callable<T> stage )
+    {
+        final FutureTask<T> task = new FutureTask<T>( stage );
+        final Thread thread = new Thread( task, "Pax Runner " + name );
+        thread.setDaemon( true );
+        thread.start();
+        return task;
+    }
+
+    /**
+     * Waits for a launch stage to finish. Failures of the stage are re-thrown.
+     *
+     * @param stage stage to wait for
+     *
+     * @return stage result
+     */
+    private static <T> T waitForStage( final Future<T> stage )
+    {
+        try
+        {
+            return stage.get();
+        }
+        catch( InterruptedException e )
+        {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException( "Interrupted while starting", e );
+        }
+        catch( ExecutionException e )
+        {
+            final Throwable cause = e.getCause();
+            if( cause instanceof RuntimeException )
+            {
+                throw (RuntimeException) cause;
+            }
+            if( cause instanceof Error )
+            {
+                throw (Error) cause;
+            }
+            throw new RuntimeException( cause );
+        }
     }
 
     /**
@@ -224,6 +332,47 @@ public class Run
         }
     }
 
+    /**
+     * Creates the launch plan if launch plan option is set. Launch plan is not used if any of the overwrite options is
+     * set, as those options require that remote content is downloaded again, or if the start provisions profiles or
+     * other remote content, as the recorded plan cannot tell when the remote content changed.
+     *
+     * @param context the running context
+     *
+     * @return launch plan or null if launch plan should not be used
+     */
+    LaunchPlan createLaunchPlan( final Context context )
+    {
+        final OptionResolver resolver = context.getOptionResolver();
+        if( !Boolean.valueOf( resolver.get( OPTION_LAUNCH_PLAN ) ) )
+        {
+            return null;
+        }
+        for( String overwrite : new String[]{
+            org.ops4j.pax.runner.platform.ServiceConstants.CONFIG_OVERWRITE,
+            org.ops4j.pax.runner.platform.ServiceConstants.CONFIG_OVERWRITE_USER_BUNDLES,
+            org.ops4j.pax.runner.platform.ServiceConstants.CONFIG_OVERWRITE_SYSTEM_BUNDLES
+        } )
+        {
+            if( Boolean.valueOf( resolver.get( overwrite ) ) )
+            {
+                LOGGER.debug( "Launch plan not used as [" + overwrite + "] is set" );
+                return null;
+            }
+        }
+        if( resolver.get( OPTION_PROFILES ) != null )
+        {
+            LOGGER.debug( "Launch plan not used as [" + OPTION_PROFILES + "] is set" );
+            return null;
+        }
+        final String digest = LaunchPlan.digest( context.getCommandLine() );
+        if( digest == null )
+        {
+            return null;
+        }
+        return new LaunchPlan( new File( resolver.getMandatory( WORKING_DIRECTORY ), LaunchPlan.PLAN_FILE ), digest );
+    }
+
     /**
      * Creates and initialize the context.
      *
@@ -351,7 +500,15 @@ public class Run
                 {
                     throw new ConfigurationException( "Handler [" + segment + "] is not supported" );
                 }
-                createActivator( segment, activatorName, context );
+                final String protocols = config.getProperty( segment + HANDLER_PROTOCOLS );
+                if( protocols == null || protocols.trim().length() == 0 )
+                {
+                    createActivator( segment, activatorName, context );
+                }
+                else
+                {
+                    installLazyHandler( segment, activatorName, protocols.split( "," ), context );
+                }
             }
             // then install the handler service
             // maintain this order as in this way the bundle context will be easier to respond to getServiceListeners
@@ -388,7 +545,15 @@ public class Run
             {
                 throw new ConfigurationException( "Scanner [" + segment + "] is not supported" );
             }
-            createActivator( segment, activatorName, context );
+            final String schema = context.getConfiguration().getProperty( segment + SCANNER_SCHEMA );
+            if( schema == null || schema.trim().length() == 0 )
+            {
+                createActivator( segment, activatorName, context );
+            }
+            else
+            {
+                installLazyScanner( segment, activatorName, schema.trim(), context );
+            }
         }
         // then install the provisioning service
         // maintain this order as in this way the bundle context will be easier to respond to getServiceListeners
@@ -411,6 +576,60 @@ public class Run
         return (ProvisionService) bundleContext.getService( reference );
     }
 
+    /**
+     * Registers url handler stubs for the protocols of a handler, so the handler is started only when one of the
+     * protocols is first used.
+     *
+     * @param handlerName   handler name
+     * @param activatorName handler activator class name
+     * @param protocols     handler protocols
+     * @param context       the running context
+     */
+    void installLazyHandler( final String handlerName,
+                             final String activatorName,
+                             final String[] protocols,
+                             final Context context )
+    {
+        LOGGER.debug( "Handler [" + handlerName + "] will be started on first use of " + Arrays.toString( protocols ) );
+        final LazyActivator activator = new LazyActivator( this, handlerName, activatorName, context );
+        final BundleContext bundleContext = new RunnerBundleContext( context );
+        for( String protocol : protocols )
+        {
+            final Dictionary<String, Object> properties = new Hashtable<String, Object>();
+            properties.put( URLConstants.URL_HANDLER_PROTOCOL, new String[]{ protocol.trim() } );
+            bundleContext.registerService(
+                URLStreamHandlerService.class.getName(),
+                new LazyURLStreamHandlerService( activator, protocol.trim() ),
+                properties
+            );
+        }
+    }
+
+    /**
+     * Registers a scanner stub for the schema of a scanner, so the scanner is started only when the schema is first
+     * scanned.
+     *
+     * @param scannerName   scanner name
+     * @param activatorName scanner activator class name
+     * @param schema        scanner schema
+     * @param context       the running context
+     */
+    void installLazyScanner( final String scannerName,
+                             final String activatorName,
+                             final String schema,
+                             final Context context )
+    {
+        LOGGER.debug( "Scanner [" + scannerName + "] will be started on first use of [" + schema + "]" );
+        final LazyActivator activator = new LazyActivator( this, scannerName, activatorName, context );
+        final Dictionary<String, Object> properties = new Hashtable<String, Object>();
+        properties.put( org.ops4j.pax.scanner.Scanner.SCHEMA_PROPERTY, schema );
+        new RunnerBundleContext( context ).registerService(
+            org.ops4j.pax.scanner.Scanner.class.getName(),
+            new LazyScanner( activator, schema ),
+            properties
+        );
+    }
+
     /**
      * Installs additional services.
      *
@@ -460,67 +679,133 @@ public class Run
 
         // backup properties and replace them with audited properties
         final Properties sysPropsBackup = System.getProperties();
+        final List<Future<ScanResult>> scans = new ArrayList<Future<ScanResult>>();
         try
         {
-            context.setSystemProperties( new AuditedProperties( sysPropsBackup ) );
-            System.setProperties( context.getSystemProperties() );
+            final AuditedProperties systemProperties = new AuditedProperties( sysPropsBackup );
+            context.setSystemProperties( systemProperties );
+            System.setProperties( systemProperties );
 
-            final Set<ScannedBundle> scannedBundles = new HashSet<ScannedBundle>();
-            // then scan those url's
-            for( String provisionSpec : provisionSpecs )
+            // scan all specs concurrently, as scanning (e.g. resolving profiles) could be slow. System properties set
+            // while scanning are deferred and set when the results are merged, in provisioning specs order
+            for( final String provisionSpec : provisionSpecs )
             {
-                try
-                {
-                    try
-                    {
-                        provisionService.wrap(
-                            filterUnique( scannedBundles, provisionService.scan( provisionSpec ) )
-                        ).install();
-                    }
-                    catch( UnsupportedSchemaException e )
-                    {
-                        final String resolvedProvisionURL = schemaResolver.resolve( provisionSpec );
-                        if( resolvedProvisionURL != null && !resolvedProvisionURL.equals( provisionSpec ) )
+                scans.add(
+                    startStage(
+                        "Scan " + provisionSpec,
+                        new Callable<ScanResult>()
                         {
-                            provisionService.wrap(
-                                filterUnique( scannedBundles, provisionService.scan( resolvedProvisionURL ) )
-                            ).install();
-                        }
-                        else
-                        {
-                            throw e;
+                            public ScanResult call()
+                                throws Exception
+                            {
+                                systemProperties.startDeferring();
+                                try
+                                {
+                                    final List<ScannedBundle> scanned =
+                                        scan( provisionService, schemaResolver, provisionSpec );
+                                    return new ScanResult( scanned, systemProperties.stopDeferring() );
+                                }
+                                finally
+                                {
+                                    // does nothing if already stopped
+                                    systemProperties.stopDeferring();
+                                }
+                            }
                         }
-                    }
-                }
-                catch( MalformedSpecificationException e )
-                {
-                    throw new RuntimeException( e );
-                }
-                catch( ScannerException e )
+                    )
+                );
+            }
+            // then install the scanned bundles in provisioning specs order
+            final Set<ScannedBundle> scannedBundles = new HashSet<ScannedBundle>();
+            boolean propertiesChanged = false;
+            for( int i = 0; i < provisionSpecs.size(); i++ )
+            {
+                final List<ScannedBundle> scanned;
+                if( propertiesChanged )
                 {
-                    throw new RuntimeException( e );
+                    // previous specs did set system properties that could change the outcome of scanning, so scan
+                    // again, as it would have been scanned without concurrency
+                    scans.get( i ).cancel( true );
+                    scanned = scan( provisionService, schemaResolver, provisionSpecs.get( i ) );
                 }
-                catch( BundleException e )
+                else
                 {
-                    throw new RuntimeException( e );
+                    final ScanResult result = waitForStage( scans.get( i ) );
+                    scanned = result.m_scanned;
+                    if( result.m_properties != null && !result.m_properties.isEmpty() )
+                    {
+                        systemProperties.setDeferred( result.m_properties );
+                        propertiesChanged = true;
+                    }
                 }
+                provisionService.wrap( filterUnique( scannedBundles, scanned ) ).install();
             }
         }
+        catch( MalformedSpecificationException e )
+        {
+            throw new RuntimeException( e );
+        }
+        catch( ScannerException e )
+        {
+            throw new RuntimeException( e );
+        }
+        catch( BundleException e )
+        {
+            throw new RuntimeException( e );
+        }
         finally
         {
+            for( Future<ScanResult> scan : scans )
+            {
+                scan.cancel( true );
+            }
             // restore the backup-ed properties
             System.setProperties( sysPropsBackup );
         }
     }
 
     /**
-     * Transforms requested profiles (--profiles option) to provisioning specs (scan-composite).
+     * Scans a provisioning spec. If the spec schema is not supported, it scans the spec as resolved by the provision
+     * schema resolver.
+     *
+     * @param provisionService installed provision service
+     * @param schemaResolver   a provision schema resolver
+     * @param provisionSpec    provisioning spec to scan
+     *
+     * @return scanned bundles
+     *
+     * @throws MalformedSpecificationException re-thrown from provision service
+     * @throws ScannerException                re-thrown from provision service
+     */
+    private List<ScannedBundle> scan( final ProvisionService provisionService,
+                                      final ProvisionSchemaResolver schemaResolver,
+                                      final String provisionSpec )
+        throws MalformedSpecificationException, ScannerException
+    {
+        try
+        {
+            return provisionService.scan( provisionSpec );
+        }
+        catch( UnsupportedSchemaException e )
+        {
+            final String resolvedProvisionURL = schemaResolver.resolve( provisionSpec );
+            if( resolvedProvisionURL != null && !resolvedProvisionURL.equals( provisionSpec ) )
+            {
+                return provisionService.scan( resolvedProvisionURL );
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Transforms requested profiles (--profiles option) to provisioning specs (scan-composite). Profiles without a
+     * version are resolved to a version out of cached repositories metadata (see {@link MavenMetadataResolver}).
      *
      * @param context runner context
      *
      * @return list of transformed provisioning specs or an empty list if there are no profiles.
      */
-    private List<String> transformProfilesToProvisionSpecs( final Context context )
+    List<String> transformProfilesToProvisionSpecs( final Context context )
     {
         final List<String> provisionSpecs = new ArrayList<String>();
 
@@ -529,6 +814,7 @@ public class Run
         {
             final String profilesGroup = context.getOptionResolver().get( OPTION_PROFILES_GROUPID );
             final String[] profiles = profilesOption.split( ":" );
+            MavenMetadataResolver metadataResolver = null;
             for( String profile : profiles )
             {
                 // TODO Maybe a nice/safe parsing of profile name into group/artifact/version ?
@@ -539,7 +825,20 @@ public class Run
                     options = profile.substring( startOfOptions );
                     profile = profile.substring( 0, startOfOptions );
                 }
-                final String[] parts = profile.split( "/" );
+                String[] parts = profile.split( "/" );
+                if( parts.length == 1 && profilesGroup != null )
+                {
+                    if( metadataResolver == null )
+                    {
+                        metadataResolver = createMetadataResolver( context );
+                    }
+                    final String version = metadataResolver.resolveVersion( profilesGroup, profile );
+                    if( version != null )
+                    {
+                        profile = profile + "/" + version;
+                        parts = profile.split( "/" );
+                    }
+                }
                 provisionSpecs.add(
                     new StringBuilder()
                         .append( org.ops4j.pax.scanner.composite.ServiceConstants.SCHEMA )
@@ -558,6 +857,44 @@ public class Run
         return provisionSpecs;
     }
 
+    /**
+     * Creates a maven metadata resolver for the repositories and local repository used by mvn handler. Profiles
+     * repositories are used as well unless mvn handler repositories replace the default ones (do not start with "+").
+     *
+     * @param context runner context
+     *
+     * @return metadata resolver
+     */
+    MavenMetadataResolver createMetadataResolver( final Context context )
+    {
+        final OptionResolver optionResolver = context.getOptionResolver();
+        final String pid = org.ops4j.pax.url.mvn.ServiceConstants.PID + ".";
+        final String localRepository =
+            optionResolver.get( pid + org.ops4j.pax.url.mvn.ServiceConstants.PROPERTY_LOCAL_REPOSITORY );
+        String repositories = optionResolver.get( pid + org.ops4j.pax.url.mvn.ServiceConstants.PROPERTY_REPOSITORIES );
+        final String profilesRepositories = optionResolver.get( OPTION_PROFILES_REPO );
+        if( profilesRepositories != null && profilesRepositories.trim().length() > 0 )
+        {
+            if( repositories == null || repositories.trim().length() == 0 )
+            {
+                repositories = profilesRepositories;
+            }
+            else if( repositories.trim().startsWith( "+" ) && !repositories.contains( profilesRepositories ) )
+            {
+                repositories = repositories + "," + profilesRepositories;
+            }
+        }
+        return new MavenMetadataResolver(
+            new MetadataCache(
+                optionResolver.get( org.ops4j.pax.runner.platform.ServiceConstants.CONFIG_METADATA_UPDATE_POLICY )
+            ),
+            repositories,
+            localRepository != null
+            ? new File( localRepository )
+            : new File( System.getProperty( "user.home" ), ".m2/repository" )
+        );
+    }
+
     /**
      * Filter all scanned bundles that already exists in the provided set and add the unique ones to the set.
      *
@@ -913,4 +1250,28 @@ public class Run
             LOGGER = LogFactory.getLog( Run.class );
         }
     }
+
+    /**
+     * Outcome of scanning a provisioning spec.
+     */
+    private static class ScanResult
+    {
+
+        /**
+         * Scanned bundles.
+         */
+        private final List<ScannedBundle> m_scanned;
+        /**
+         * System properties set while scanning. Null if there are none.
+         */
+        private final Properties m_properties;
+
+        ScanResult( final List<ScannedBundle> scanned, final Properties properties )
+        {
+            m_scanned = scanned;
+            m_properties = properties;
+        }
+
+    }
+
 }
@@ -128,4 +128,35 @@ public class AuditedPropertiesTest
         assertEquals( "Filtered property value", "${value", audited.getProperty( "filtered" ) );
     }
 
+    /**
+     * Test that properties set while deferring are visible only to the deferring thread until set.
+     */
+    @Test
+    public void deferredProperty()
+        throws Exception
+    {
+        Properties defaults = new Properties();
+        defaults.setProperty( "holder", "value" );
+        final AuditedProperties audited = new AuditedProperties( defaults );
+        final Properties[] deferred = new Properties[1];
+        final String[] seen = new String[1];
+        Thread thread = new Thread()
+        {
+            @Override
+            public void run()
+            {
+                audited.startDeferring();
+                audited.setProperty( "filtered", "${holder}" );
+                seen[ 0 ] = audited.getProperty( "filtered" );
+                deferred[ 0 ] = audited.stopDeferring();
+            }
+        };
+        thread.start();
+        thread.join();
+        assertEquals( "Value seen by deferring thread", "value", seen[ 0 ] );
+        assertNull( "Value before setting deferred", audited.getProperty( "filtered" ) );
+        audited.setDeferred( deferred[ 0 ] );
+        assertEquals( "Value after setting deferred", "value", audited.getProperty( "filtered" ) );
+    }
+
 }
@@ -0,0 +1,265 @@
+/*
+ * Copyright 2026 OPS4J.
+ *
+ * Licensed  under the  Apache License,  Version 2.0  (the "License");
+ * you may not use  this file  except in  compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed  under the  License is distributed on an "AS IS" BASIS,
+ * WITHOUT  WARRANTIES OR CONDITIONS  OF ANY KIND, either  express  or
+ * implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.runner;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import org.junit.After;
+import static org.junit.Assert.*;
+import org.junit.Before;
+import org.junit.Test;
+import org.ops4j.io.FileUtils;
+import org.ops4j.pax.runner.platform.DefaultJavaRunner;
+import org.ops4j.pax.runner.platform.JavaRunner;
+import org.ops4j.pax.runner.platform.WaitingJavaRunner;
+
+public class LaunchPlanTest
+{
+
+    private File m_workDir;
+
+    @Before
+    public void setUp()
+        throws IOException
+    {
+        m_workDir = File.createTempFile( "runner", "" );
+        m_workDir.delete();
+        m_workDir.mkdirs();
+    }
+
+    @After
+    public void tearDown()
+    {
+        FileUtils.delete( m_workDir );
+    }
+
+    // test that a recorded plan is executed with the same arguments as the recorded start
+    @Test
+    public void recordAndExec()
+        throws Exception
+    {
+        final File bundle = createFile( "bundles/bundle.jar" );
+        final RecordingJavaRunner recorded = new RecordingJavaRunner();
+        new LaunchPlan( new File( m_workDir, LaunchPlan.PLAN_FILE ), "digest" ).record( recorded ).exec(
+            new String[]{ "-Xmx128m" },
+            new String[]{ "bundles/bundle.jar" },
+            "org.example.Main",
+            new String[]{ "-console" },
+            "/java",
+            m_workDir
+        );
+        assertNotNull( "Delegate not called", recorded.m_args );
+
+        final LaunchPlan launchPlan = new LaunchPlan( new File( m_workDir, LaunchPlan.PLAN_FILE ), "digest" );
+        assertTrue( "Plan not loaded", launchPlan.load() );
+        final RecordingJavaRunner executed = new RecordingJavaRunner();
+        launchPlan.exec( executed );
+        assertEquals( "Executed arguments", Arrays.asList( recorded.m_args ), Arrays.asList( executed.m_args ) );
+
+        assertTrue( "Bundle", bundle.setLastModified( bundle.lastModified() - 10000 ) );
+        assertFalse( "Plan loaded after bundle change", launchPlan.load() );
+    }
+
+    // test that a start recording a class data sharing archive is not saved and one using the archive is
+    @Test
+    public void recordWithClassDataSharing()
+        throws Exception
+    {
+        final File archive = new File( m_workDir, "cds/runner.jsa" );
+        final LaunchPlan launchPlan = new LaunchPlan( new File( m_workDir, LaunchPlan.PLAN_FILE ), "digest" );
+        launchPlan.record( new RecordingJavaRunner() ).exec(
+            new String[]{ "-XX:ArchiveClassesAtExit=" + archive.getAbsolutePath() },
+            new String[0],
+            "org.example.Main",
+            new String[0],
+            null,
+            m_workDir
+        );
+        assertFalse( "Plan loaded while recording archive", launchPlan.load() );
+
+        createFile( "cds/runner.jsa" );
+        launchPlan.record( new RecordingJavaRunner() ).exec(
+            new String[]{ "-XX:SharedArchiveFile=" + archive.getAbsolutePath() },
+            new String[0],
+            "org.example.Main",
+            new String[0],
+            null,
+            m_workDir
+        );
+        assertTrue( "Plan not loaded when using archive", launchPlan.load() );
+        assertTrue( "Archive", archive.delete() );
+        assertFalse( "Plan loaded after archive change", launchPlan.load() );
+    }
+
+    // test that the recording runner waits for exit only if the runner it delegates to does
+    @Test
+    public void recordWaitsForExit()
+    {
+        final LaunchPlan launchPlan = new LaunchPlan( new File( m_workDir, LaunchPlan.PLAN_FILE ), "digest" );
+        assertTrue( "Default runner", ( (WaitingJavaRunner) launchPlan.record( null ) ).waitsForExit() );
+        assertFalse(
+            "Not waiting runner",
+            ( (WaitingJavaRunner) launchPlan.record( new DefaultJavaRunner( false ) ) ).waitsForExit()
+        );
+        assertFalse(
+            "Other runner", ( (WaitingJavaRunner) launchPlan.record( new RecordingJavaRunner() ) ).waitsForExit()
+        );
+    }
+
+    // test that a plan recorded for other inputs is not loaded
+    @Test
+    public void loadWithOtherDigest()
+        throws Exception
+    {
+        new LaunchPlan( new File( m_workDir, LaunchPlan.PLAN_FILE ), "digest" ).record( new RecordingJavaRunner() )
+            .exec( new String[0], new String[0], "org.example.Main", new String[0], null, m_workDir );
+        assertFalse(
+            "Plan loaded",
+            new LaunchPlan( new File( m_workDir, LaunchPlan.PLAN_FILE ), "other" ).load()
+        );
+    }
+
+    // test that changes of local files referenced from command line change the digest
+    @Test
+    public void digestWithLocalFile()
+        throws Exception
+    {
+        final File file = createFile( "felix.bundles", "# bundles" );
+        final String spec = "scan-file:" + file.toURI().toURL().toExternalForm() + "@5";
+        final String digest = LaunchPlan.digest( new CommandLineImpl( "--launchPlan", spec ) );
+        assertEquals( "Same inputs", digest, LaunchPlan.digest( new CommandLineImpl( "--launchPlan", spec ) ) );
+        assertTrue( "File", file.setLastModified( file.lastModified() - 10000 ) );
+        assertFalse(
+            "Changed file",
+            digest.equals( LaunchPlan.digest( new CommandLineImpl( "--launchPlan", spec ) ) )
+        );
+    }
+
+    // test that changes of local files referenced from scanned provision files change the digest
+    @Test
+    public void digestWithReferencedLocalFile()
+        throws Exception
+    {
+        // zip magic, so it is not read as a provision file
+        final File bundle = createFile( "bundle.jar", "PK" );
+        final File bundles = createFile( "felix.bundles", "-Dfoo=bar\n" + bundle.toURI() + "@5\n" );
+        final File composite = createFile( "felix.composite", "scan-file:" + bundles.toURI() + "\n" );
+        final String spec = "scan-composite:" + composite.toURI();
+        final String digest = LaunchPlan.digest( new CommandLineImpl( "--launchPlan", spec ) );
+        assertNotNull( "Digest", digest );
+        assertTrue( "Bundle", bundle.setLastModified( bundle.lastModified() - 10000 ) );
+        assertFalse(
+            "Changed bundle",
+            digest.equals( LaunchPlan.digest( new CommandLineImpl( "--launchPlan", spec ) ) )
+        );
+    }
+
+    // test that there is no digest when provisioning specs reference remote content
+    @Test
+    public void digestWithRemoteContent()
+        throws Exception
+    {
+        assertNull(
+            "Remote spec",
+            LaunchPlan.digest( new CommandLineImpl( "--launchPlan", "mvn:org.example/bundle/1.0" ) )
+        );
+        final File bundles = createFile( "felix.bundles", "mvn:org.example/bundle/1.0\n" );
+        final File composite = createFile( "felix.composite", "scan-file:" + bundles.toURI() + "\n" );
+        assertNull(
+            "Remote spec in composite",
+            LaunchPlan.digest( new CommandLineImpl( "--launchPlan", "scan-composite:" + composite.toURI() ) )
+        );
+        final File pom = createFile( "pom.xml", "<project/>" );
+        assertNull(
+            "Pom",
+            LaunchPlan.digest( new CommandLineImpl( "--launchPlan", "scan-pom:" + pom.toURI() ) )
+        );
+    }
+
+    // test finding local files referenced by provisioning specs
+    @Test
+    public void toLocalFile()
+        throws Exception
+    {
+        final File file = createFile( "bundle.jar" );
+        assertEquals( "Path", file, LaunchPlan.toLocalFile( file.getPath() ) );
+        assertEquals(
+            "Url",
+            file.getCanonicalFile(),
+            LaunchPlan.toLocalFile( file.toURI().toString() ).getCanonicalFile()
+        );
+        assertEquals(
+            "Scanner spec",
+            file.getCanonicalFile(),
+            LaunchPlan.toLocalFile( "scan-bundle:" + file.toURI() + "@5@nostart" ).getCanonicalFile()
+        );
+        assertNull( "Remote", LaunchPlan.toLocalFile( "mvn:org.example/bundle/1.0" ) );
+        assertNull( "Missing", LaunchPlan.toLocalFile( new File( m_workDir, "missing.jar" ).getPath() ) );
+    }
+
+    private File createFile( final String path )
+        throws IOException
+    {
+        return createFile( path, path );
+    }
+
+    private File createFile( final String path, final String content )
+        throws IOException
+    {
+        final File file = new File( m_workDir, path );
+        file.getParentFile().mkdirs();
+        final FileOutputStream os = new FileOutputStream( file );
+        try
+        {
+            os.write( content.getBytes( "UTF-8" ) );
+        }
+        finally
+        {
+            os.close();
+        }
+        return file;
+    }
+
+    private static class RecordingJavaRunner
+        implements JavaRunner
+    {
+
+        private Object[] m_args;
+
+        public void exec( final String[] vmOptions, final String[] classpath, final String mainClass,
+                          final String[] programOptions, final String javaHome, final File workingDir,
+                          final String[] environmentVariables )
+        {
+            m_args = new Object[]{
+                Arrays.asList( vmOptions ), Arrays.asList( classpath ), mainClass, Arrays.asList( programOptions ),
+                javaHome, workingDir.getAbsolutePath(),
+                environmentVariables == null ? null : Arrays.asList( environmentVariables )
+            };
+        }
+
+        public void exec( final String[] vmOptions, final String[] classpath, final String mainClass,
+                          final String[] programOptions, final String javaHome, final File workingDir )
+        {
+            exec( vmOptions, classpath, mainClass, programOptions, javaHome, workingDir, null );
+        }
+
+    }
+
+}
@@ -18,8 +18,14 @@
 package org.ops4j.pax.runner;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.Dictionary;
+import java.util.Hashtable;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
 import static org.easymock.EasyMock.*;
 import static org.junit.Assert.*;
 import org.junit.Before;
@@ -27,14 +33,19 @@ import org.junit.Test;
 import org.osgi.framework.BundleContext;
 import org.osgi.framework.BundleException;
 import org.osgi.framework.ServiceReference;
+import org.osgi.service.url.URLConstants;
+import org.osgi.service.url.URLStreamHandlerService;
 import static org.ops4j.pax.runner.CommandLine.*;
+import org.ops4j.pax.runner.osgi.RunnerBundleContext;
 import org.ops4j.pax.runner.platform.JavaRunner;
 import org.ops4j.pax.runner.platform.Platform;
 import org.ops4j.pax.runner.platform.SystemFileReference;
 import org.ops4j.pax.scanner.InstallableBundles;
 import org.ops4j.pax.scanner.MalformedSpecificationException;
 import org.ops4j.pax.scanner.ProvisionService;
+import org.ops4j.pax.scanner.ProvisionSpec;
 import org.ops4j.pax.scanner.ScannedBundle;
+import org.ops4j.pax.scanner.Scanner;
 import org.ops4j.pax.scanner.ScannerException;
 import org.ops4j.pax.scanner.UnsupportedSchemaException;
 
@@ -84,6 +95,7 @@ public class RunTest
     public void startFlow()
     {
         m_recorder.record( "cleanup()" );
+        m_recorder.record( "createLaunchPlan()" );
         m_recorder.record( "installServices()" );
         m_recorder.record( "installHandlers()" );
         m_recorder.record( "installScanners()" );
@@ -92,7 +104,7 @@ public class RunTest
         m_recorder.record( "installPlatform()" );
         m_recorder.record( "determineSystemFiles()" );
         replay( m_commandLine, m_config, m_recorder, m_resolver, m_bundleContext );
-        new Run()
+        new SerialRun()
         {
             @Override
             void cleanup( final OptionResolver resolver )
@@ -100,6 +112,13 @@ public class RunTest
                 m_recorder.record( "cleanup()" );
             }
 
+            @Override
+            LaunchPlan createLaunchPlan( final Context context )
+            {
+                m_recorder.record( "createLaunchPlan()" );
+                return null;
+            }
+
             @Override
             void installHandlers( final Context context )
             {
@@ -150,6 +169,79 @@ public class RunTest
         verify( m_commandLine, m_config, m_recorder, m_resolver, m_bundleContext );
     }
 
+    // test that platform is installed before bundles are installed, as installing bundles replaces system properties
+    @Test
+    public void startInstallsPlatformBeforeBundles()
+    {
+        final List<String> installed = Collections.synchronizedList( new ArrayList<String>() );
+        replay( m_commandLine, m_config, m_resolver );
+        new Run()
+        {
+            @Override
+            void cleanup( final OptionResolver resolver )
+            {
+            }
+
+            @Override
+            LaunchPlan createLaunchPlan( final Context context )
+            {
+                return null;
+            }
+
+            @Override
+            void installServices( final Context context )
+            {
+            }
+
+            @Override
+            void installHandlers( final Context context )
+            {
+            }
+
+            @Override
+            ProvisionService installScanners( final Context context )
+            {
+                return m_provisionService;
+            }
+
+            @Override
+            Platform installPlatform( final Context context )
+            {
+                try
+                {
+                    Thread.sleep( 100 );
+                }
+                catch( InterruptedException ignore )
+                {
+                    // just ignore
+                }
+                installed.add( "platform" );
+                return m_platform;
+            }
+
+            @Override
+            void installBundles( final ProvisionService provisionService, final ProvisionSchemaResolver schemaResolver,
+                                 final Context context )
+            {
+                installed.add( "bundles" );
+            }
+
+            @Override
+            JavaRunner createJavaRunner( final OptionResolver resolver )
+            {
+                return null;
+            }
+
+            @Override
+            List<SystemFileReference> determineSystemFiles( Context context )
+            {
+                return Collections.emptyList();
+            }
+        }.start( m_commandLine, m_config, m_resolver, null );
+        assertEquals( "Installation order", Arrays.asList( "platform", "bundles" ), installed );
+        verify( m_commandLine, m_config, m_resolver );
+    }
+
     // if there are no handlers just go one as one may choose to use only the default ones from JVM
     @Test
     public void startWithNoHandlers()
@@ -191,7 +283,9 @@ public class RunTest
         expect( m_resolver.get( "handlers" ) ).andReturn( "handler.1,handler.2" );
         expect( m_config.getProperty( "handler.service" ) ).andReturn( "handler.service.Activator" );
         expect( m_config.getProperty( "handler.1" ) ).andReturn( "handler.1.Activator" );
+        expect( m_config.getProperty( "handler.1.protocols" ) ).andReturn( null );
         expect( m_config.getProperty( "handler.2" ) ).andReturn( "handler.2.Activator" );
+        expect( m_config.getProperty( "handler.2.protocols" ) ).andReturn( null );
 
         m_recorder.record( "handler.service.Activator" );
         m_recorder.record( "handler.1.Activator" );
@@ -206,6 +300,7 @@ public class RunTest
     public void startWithInvalidHandlers()
     {
         expect( m_resolver.get( "clean" ) ).andReturn( null );
+        expect( m_resolver.get( "launchPlan" ) ).andReturn( null );
         expect( m_resolver.get( "executor" ) ).andReturn( null );
         expect( m_resolver.get( "services" ) ).andReturn( null );
         expect( m_resolver.get( "handlers" ) ).andReturn( "handler.1" );
@@ -243,6 +338,7 @@ public class RunTest
 
         expect( m_resolver.get( "handlers" ) ).andReturn( "handler.1" );
         expect( m_config.getProperty( "handler.1" ) ).andReturn( "handler.1.Activator" );
+        expect( m_config.getProperty( "handler.1.protocols" ) ).andReturn( null );
         expect( m_config.getProperty( "handler.service" ) ).andReturn( null );
 
         m_recorder.record( "handler.1.Activator" );
@@ -252,6 +348,49 @@ public class RunTest
         verify( m_commandLine, m_config, m_resolver, m_bundleContext );
     }
 
+    // test that a handler with protocols is started only when one of its protocols is first used
+    @Test
+    public void startWithLazyHandlers()
+    {
+        final URLStreamHandlerService handler = createMock( URLStreamHandlerService.class );
+        final List<String> started = new ArrayList<String>();
+        Run run = new Run()
+        {
+            @Override
+            BundleContext createActivator( final String handlerName, final String activatorName, final Context context )
+            {
+                started.add( activatorName );
+                final BundleContext bundleContext = new RunnerBundleContext( context );
+                if( "handler.1.Activator".equals( activatorName ) )
+                {
+                    final Dictionary<String, Object> properties = new Hashtable<String, Object>();
+                    properties.put( URLConstants.URL_HANDLER_PROTOCOL, new String[]{ "p1" } );
+                    bundleContext.registerService( URLStreamHandlerService.class.getName(), handler, properties );
+                }
+                return bundleContext;
+            }
+        };
+        Context context = run.createContext( m_commandLine, m_config, m_resolver );
+
+        expect( m_resolver.get( "handlers" ) ).andReturn( "handler.1" );
+        expect( m_config.getProperty( "handler.service" ) ).andReturn( "handler.service.Activator" );
+        expect( m_config.getProperty( "handler.1" ) ).andReturn( "handler.1.Activator" );
+        expect( m_config.getProperty( "handler.1.protocols" ) ).andReturn( "p1" );
+        expect( handler.getDefaultPort() ).andReturn( 42 );
+
+        replay( m_commandLine, m_config, m_resolver, handler );
+        run.installHandlers( context );
+        assertEquals( "Started before use", Arrays.asList( "handler.service.Activator" ), started );
+
+        final BundleContext bundleContext = new RunnerBundleContext( context );
+        final URLStreamHandlerService stub = (URLStreamHandlerService) bundleContext.getService(
+            bundleContext.getServiceReference( URLStreamHandlerService.class.getName() )
+        );
+        assertEquals( "Default port", 42, stub.getDefaultPort() );
+        assertEquals( "Started on use", Arrays.asList( "handler.service.Activator", "handler.1.Activator" ), started );
+        verify( m_commandLine, m_config, m_resolver, handler );
+    }
+
     // verify that if there are no scanners we should just crash with an MissingOptionException
     @Test( expected = MissingOptionException.class )
     public void startWithNoScanners()
@@ -290,6 +429,7 @@ public class RunTest
 
         expect( m_resolver.getMandatory( "scanners" ) ).andReturn( "scanner.1" );
         expect( m_config.getProperty( "scanner.1" ) ).andReturn( "scanner.1.Activator" );
+        expect( m_config.getProperty( "scanner.1.schema" ) ).andReturn( null );
         expect( m_config.getProperty( "provision.service" ) ).andReturn( null );
 
         m_recorder.record( "scanner.1.Activator" );
@@ -339,7 +479,9 @@ public class RunTest
         expect( m_resolver.getMandatory( "scanners" ) ).andReturn( "scanner.1,scanner.2" );
         expect( m_config.getProperty( "provision.service" ) ).andReturn( "provision.service.Activator" );
         expect( m_config.getProperty( "scanner.1" ) ).andReturn( "scanner.1.Activator" );
+        expect( m_config.getProperty( "scanner.1.schema" ) ).andReturn( null );
         expect( m_config.getProperty( "scanner.2" ) ).andReturn( "scanner.2.Activator" );
+        expect( m_config.getProperty( "scanner.2.schema" ) ).andReturn( null );
         expect( m_bundleContext.getServiceReference( ProvisionService.class.getName() ) ).andReturn(
             createMock( ServiceReference.class )
         );
@@ -354,6 +496,61 @@ public class RunTest
         verify( m_commandLine, m_config, m_resolver, m_recorder, m_bundleContext );
     }
 
+    // test that a scanner with a schema is started only when its schema is first scanned
+    @Test
+    public void startWithLazyScanners()
+        throws Exception
+    {
+        final Scanner scanner = createMock( Scanner.class );
+        final List<String> started = new ArrayList<String>();
+        Run run = new Run()
+        {
+            @Override
+            BundleContext createActivator( final String handlerName, final String activatorName, final Context context )
+            {
+                started.add( activatorName );
+                final BundleContext bundleContext = new RunnerBundleContext( context );
+                if( "scanner.1.Activator".equals( activatorName ) )
+                {
+                    final Dictionary<String, Object> properties = new Hashtable<String, Object>();
+                    properties.put( Scanner.SCHEMA_PROPERTY, "scan-1" );
+                    bundleContext.registerService( Scanner.class.getName(), scanner, properties );
+                }
+                if( "provision.service.Activator".equals( activatorName ) )
+                {
+                    bundleContext.registerService(
+                        ProvisionService.class.getName(), m_provisionService, new Hashtable<String, Object>()
+                    );
+                }
+                return bundleContext;
+            }
+        };
+        Context context = run.createContext( m_commandLine, m_config, m_resolver );
+
+        expect( m_resolver.getMandatory( "scanners" ) ).andReturn( "scanner.1" );
+        expect( m_config.getProperty( "provision.service" ) ).andReturn( "provision.service.Activator" );
+        expect( m_config.getProperty( "scanner.1" ) ).andReturn( "scanner.1.Activator" );
+        expect( m_config.getProperty( "scanner.1.schema" ) ).andReturn( "scan-1" );
+        final List<ScannedBundle> scanned = new ArrayList<ScannedBundle>();
+        expect( scanner.scan( (ProvisionSpec) notNull() ) ).andReturn( scanned );
+
+        replay( m_commandLine, m_config, m_resolver, scanner );
+        assertEquals( "Provision service", m_provisionService, run.installScanners( context ) );
+        assertEquals( "Started before use", Arrays.asList( "provision.service.Activator" ), started );
+
+        final BundleContext bundleContext = new RunnerBundleContext( context );
+        final ServiceReference[] references = bundleContext.getServiceReferences(
+            Scanner.class.getName(), "(" + Scanner.SCHEMA_PROPERTY + "=scan-1)"
+        );
+        assertEquals( "Scanner stubs", 1, references.length );
+        final Scanner stub = (Scanner) bundleContext.getService( references[ 0 ] );
+        assertEquals( "Scanned", scanned, stub.scan( new ProvisionSpec( "scan-1:file" ) ) );
+        assertEquals(
+            "Started on use", Arrays.asList( "provision.service.Activator", "scanner.1.Activator" ), started
+        );
+        verify( m_commandLine, m_config, m_resolver, scanner );
+    }
+
     // test that we getOption a runtime exception not a NullPointerException
     @Test( expected = RuntimeException.class )
     public void installBundlesWithNullProvisionService()
@@ -371,7 +568,7 @@ public class RunTest
     public void installBundlesFromArguments()
         throws ScannerException, MalformedSpecificationException, BundleException
     {
-        Run run = new Run();
+        Run run = new SerialRun();
         Context context = run.createContext( m_commandLine, m_config, m_resolver );
 
         ProvisionService provisionService = createMock( ProvisionService.class );
@@ -404,7 +601,7 @@ public class RunTest
     public void installBundlesWithNoSchema()
         throws ScannerException, MalformedSpecificationException, BundleException
     {
-        Run run = new Run();
+        Run run = new SerialRun();
         Context context = run.createContext( m_commandLine, m_config, m_resolver );
 
         ProvisionService provisionService = createMock( ProvisionService.class );
@@ -435,7 +632,7 @@ public class RunTest
     // expected to just pass and do nothing
     public void installBundlesWithNoArgumentsAndNoDefault()
     {
-        Run run = new Run();
+        Run run = new SerialRun();
         Context context = run.createContext( m_commandLine, m_config, m_resolver );
 
         ProvisionService provisionService = createMock( ProvisionService.class );
@@ -448,4 +645,56 @@ public class RunTest
         verify( m_commandLine, m_config, m_resolver, m_recorder, m_bundleContext, provisionService );
     }
 
+    // test that profiles are transformed to composite specs, resolving the version of profiles without one
+    @Test
+    public void transformProfilesToProvisionSpecs()
+    {
+        Run run = new Run()
+        {
+            @Override
+            MavenMetadataResolver createMetadataResolver( final Context context )
+            {
+                return new MavenMetadataResolver( null, null, null )
+                {
+                    @Override
+                    String resolveVersion( final String groupId, final String artifactId )
+                    {
+                        return "log".equals( artifactId ) ? "1.0" : null;
+                    }
+                };
+            }
+        };
+        Context context = run.createContext( m_commandLine, m_config, m_resolver );
+
+        expect( m_resolver.get( "profiles" ) ).andReturn( "log:web/1.2:config@5:org.foo/bar/2.0" );
+        expect( m_resolver.get( "profilesGroupId" ) ).andReturn( "org.ops4j.pax.runner.profiles" );
+
+        replay( m_commandLine, m_config, m_resolver );
+        assertEquals(
+            "Provision specs",
+            Arrays.asList(
+                "scan-composite:mvn:org.ops4j.pax.runner.profiles/log/1.0/composite",
+                "scan-composite:mvn:org.ops4j.pax.runner.profiles/web/1.2/composite",
+                "scan-composite:mvn:org.ops4j.pax.runner.profiles/config//composite@5",
+                "scan-composite:mvn:org.foo/bar/2.0/composite"
+            ),
+            run.transformProfilesToProvisionSpecs( context )
+        );
+        verify( m_commandLine, m_config, m_resolver );
+    }
+
+    // runs stages in the test thread as mocks are not thread safe
+    private static class SerialRun extends Run
+    {
+
+        @Override
+        <T> Future<T> startStage( final String name, final Callable<T> stage )
+        {
+            final FutureTask<T> task = new FutureTask<T>( stage );
+            task.run();
+            return task;
+        }
+
+    }
+
 }